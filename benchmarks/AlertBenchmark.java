@@ -0,0 +1,145 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+// Measures the alert system's hot operations at several dataset sizes, so performance
+// changes can be compared and regressions caught. Each operation is warmed up, then
+// timed repeatedly for a fixed period; results can be saved as CSV and later runs
+// compared against them.
+//
+// Build and run from the repository root:
+//   javac -encoding UTF-8 -d out "java project"/*.java benchmarks/*.java
+//   java -Xmx8g -cp out AlertBenchmark [options]
+//
+// Options:
+//   --sizes 1000,10000,...   dataset sizes (default 1000,10000,100000,1000000)
+//   --ops name,...           operations to run (default all, see AlertWorkload.OPERATIONS)
+//   --category-skew 1.0      Zipf exponents for categories, urgencies and locations
+//   --urgency-skew 0.5
+//   --location-skew 1.0
+//   --locations 1000         distinct locations
+//   --warmup 1 --measure 2   seconds per operation
+//   --save results.csv       write results
+//   --baseline results.csv   compare with earlier results; exits with status 1 when an
+//   --tolerance 0.25         operation is slower than the baseline by more than this
+public class AlertBenchmark {
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "1000,10000,100000,1000000").split(","))
+                            .mapToInt(Integer::parseInt).toArray();
+        List<String> ops = options.containsKey("ops")
+            ? Arrays.asList(options.get("ops").split(",")) : AlertWorkload.OPERATIONS;
+        for (String op : ops) {
+            if (!AlertWorkload.OPERATIONS.contains(op)) {
+                throw new IllegalArgumentException("Unknown operation: " + op);
+            }
+        }
+        long warmupNanos = (long) (Double.parseDouble(options.getOrDefault("warmup", "1")) * 1e9);
+        long measureNanos = (long) (Double.parseDouble(options.getOrDefault("measure", "2")) * 1e9);
+
+        Map<String, Double> results = new LinkedHashMap<>();
+        System.out.printf("%-10s %-18s %8s %14s %14s%n", "size", "operation", "runs", "avg us/op", "median us/op");
+        int locations = Integer.parseInt(options.getOrDefault("locations", "1000"));
+        double categorySkew = Double.parseDouble(options.getOrDefault("category-skew", "1.0"));
+        double urgencySkew = Double.parseDouble(options.getOrDefault("urgency-skew", "0.5"));
+        double locationSkew = Double.parseDouble(options.getOrDefault("location-skew", "1.0"));
+        for (int size : sizes) {
+            // A fresh dataset per operation, so no operation sees another's changes
+            for (String op : ops) {
+                try (AlertWorkload workload = new AlertWorkload(op, size, locations, categorySkew,
+                                                                urgencySkew, locationSkew)) {
+                    measure(size, op, workload, warmupNanos, measureNanos, results);
+                }
+            }
+        }
+
+        if (options.containsKey("save")) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(options.get("save")))) {
+                writer.println("size,operation,avg_us");
+                results.forEach((key, avg) -> writer.println(key + "," + avg));
+            }
+        }
+        // Consume the results so the JIT cannot discard the measured work
+        if (sink == 42) {
+            System.out.println();
+        }
+        if (options.containsKey("baseline")) {
+            double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "0.25"));
+            if (!compare(results, readResults(options.get("baseline")), tolerance)) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static void measure(int size, String name, LongSupplier operation, long warmupNanos,
+                                long measureNanos, Map<String, Double> results) {
+        long end = System.nanoTime() + warmupNanos;
+        do {
+            sink += operation.getAsLong();
+        } while (System.nanoTime() < end);
+
+        long[] samples = new long[1024];
+        int runs = 0;
+        end = System.nanoTime() + measureNanos;
+        // At least three runs, so even multi-second operations get a median
+        do {
+            long start = System.nanoTime();
+            sink += operation.getAsLong();
+            long elapsed = System.nanoTime() - start;
+            if (runs == samples.length) {
+                samples = Arrays.copyOf(samples, runs * 2);
+            }
+            samples[runs++] = elapsed;
+        } while (System.nanoTime() < end || runs < 3);
+
+        long total = 0;
+        for (int i = 0; i < runs; i++) {
+            total += samples[i];
+        }
+        Arrays.sort(samples, 0, runs);
+        double avg = total / 1000.0 / runs;
+        System.out.printf("%-10d %-18s %8d %14.2f %14.2f%n", size, name, runs, avg, samples[runs / 2] / 1000.0);
+        results.put(size + "," + name, avg);
+    }
+
+    private static boolean compare(Map<String, Double> results, Map<String, Double> baseline,
+                                   double tolerance) {
+        boolean ok = true;
+        System.out.println();
+        for (Map.Entry<String, Double> entry : results.entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            double change = entry.getValue() / before - 1;
+            boolean regressed = change > tolerance;
+            ok &= !regressed;
+            System.out.printf("%-30s %+7.1f%%%s%n", entry.getKey(), change * 100, regressed ? "  REGRESSION" : "");
+        }
+        return ok;
+    }
+
+    private static Map<String, Double> readResults(String file) throws IOException {
+        Map<String, Double> results = new HashMap<>();
+        List<String> lines = Files.readAllLines(Paths.get(file));
+        for (String line : lines.subList(1, lines.size())) {
+            int split = line.lastIndexOf(',');
+            results.put(line.substring(0, split), Double.parseDouble(line.substring(split + 1)));
+        }
+        return results;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.*;
+
+// Synthetic alerts for benchmarks. Categories, urgencies and locations follow Zipf
+// distributions whose exponents set the skew: 0 is uniform, 1 is typical of real
+// reports where a few streets and issue types dominate. Text comes from small pools,
+// so millions of alerts share strings much as interned input would.
+class AlertGenerator {
+    private static final String[] STREETS = {
+        "Main Street", "Oak Avenue", "Maple Drive", "Park Road", "River Lane", "Hill Street",
+        "Station Road", "Church Lane", "Mill Road", "Elm Court", "Cedar Way", "Lake View"
+    };
+    private static final String[] ISSUES = {
+        "Burst pipe", "Deep pothole", "Missing dog", "No power", "Broken light", "Overflowing bins",
+        "Loud music", "Fallen tree", "Blocked drain", "Graffiti", "Damaged sign", "Flooding"
+    };
+    private static final String[] DETAILS = {
+        "Reported by several neighbours this morning.",
+        "Getting worse since the storm last night.",
+        "Children walk past here on the way to school.",
+        "Has been like this for over a week now.",
+        "Traffic is backing up around the corner.",
+        "Please send someone as soon as possible."
+    };
+    private static final String[] REPORTERS = {
+        "alex", "sam", "jordan", "taylor", "morgan", "casey", "riley", "jamie"
+    };
+
+    private final Random random;
+    private final String[] locations;
+    private final String[] titles;
+    private final double[] categoryWeights;
+    private final double[] urgencyWeights;
+    private final double[] locationWeights;
+    private final AlertCategory[] categories = AlertCategory.values();
+    private final Urgency[] urgencies = Urgency.values();
+
+    public AlertGenerator(long seed, int locationCount, double categorySkew,
+                          double urgencySkew, double locationSkew) {
+        this.random = new Random(seed);
+        this.locations = new String[locationCount];
+        for (int i = 0; i < locationCount; i++) {
+            locations[i] = (i + 1) + " " + STREETS[i % STREETS.length];
+        }
+        this.titles = new String[ISSUES.length * STREETS.length];
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = ISSUES[i % ISSUES.length] + " near " + STREETS[i / ISSUES.length];
+        }
+        this.categoryWeights = zipf(categories.length, categorySkew);
+        this.urgencyWeights = zipf(urgencies.length, urgencySkew);
+        this.locationWeights = zipf(locationCount, locationSkew);
+    }
+
+    public Alert next() {
+        return new Alert(titles[random.nextInt(titles.length)],
+                         DETAILS[random.nextInt(DETAILS.length)],
+                         categories[sample(categoryWeights)],
+                         urgencies[sample(urgencyWeights)],
+                         locations[sample(locationWeights)],
+                         REPORTERS[random.nextInt(REPORTERS.length)]);
+    }
+
+    public List<Alert> next(int count) {
+        List<Alert> alerts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            alerts.add(next());
+        }
+        return alerts;
+    }
+
+    // A location drawn with the same skew as generated alerts, for search queries
+    public String location() {
+        return locations[sample(locationWeights)];
+    }
+
+    public AlertCategory category() {
+        return categories[sample(categoryWeights)];
+    }
+
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    // Cumulative Zipf weights: item i has weight 1 / (i + 1)^exponent
+    private static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= total;
+        }
+        return cumulative;
+    }
+
+    private int sample(double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(cumulative.length - 1, index < 0 ? -index - 1 : index);
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Measures the heap retained per alert when alerts are created from input, each with its
+// own string copies as from the console, HTTP, an import or log replay, and when they are
+// loaded from a binary snapshot. Indexes are not included.
+//
+// Build and run from the repository root:
+//   javac -encoding UTF-8 -d out "java project"/*.java benchmarks/*.java
+//   java -Xmx4g -cp out AlertMemoryBenchmark [count]     (default 1000000)
+public class AlertMemoryBenchmark {
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path directory = Files.createTempDirectory("alert-memory");
+        File snapshot = new File(directory.toFile(), "alerts.bin");
+        try {
+            List<Alert> generated = new AlertGenerator(42, 1000, 1.0, 0.5, 1.0).next(count);
+            BinaryAlertFormat.write(snapshot, generated, Alert.peekNextId());
+            System.out.printf("%-10s %12s %16s%n", "source", "alerts", "bytes/alert");
+            report("input", count, () -> copies(generated));
+            generated.clear();
+            report("snapshot", count, () -> BinaryAlertFormat.read(snapshot));
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // Alerts with their own copies of every string, as parsed input would have
+    private static List<Alert> copies(List<Alert> source) {
+        List<Alert> alerts = new ArrayList<>(source.size());
+        for (Alert alert : source) {
+            alerts.add(new Alert(copy(alert.getTitle()), copy(alert.getDescription()),
+                                 alert.getCategory(), alert.getUrgency(),
+                                 copy(alert.getLocation()), copy(alert.getReportedBy())));
+        }
+        return alerts;
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private interface Loader {
+        List<Alert> load() throws Exception;
+    }
+
+    private static void report(String source, int count, Loader loader) throws Exception {
+        long before = usedHeap();
+        List<Alert> alerts = loader.load();
+        long after = usedHeap();
+        System.out.printf("%-10s %12d %16.1f%n", source, alerts.size(), (after - before) / (double) count);
+        // Keep the alerts reachable until measured
+        if (alerts.hashCode() == 42) {
+            System.out.println();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
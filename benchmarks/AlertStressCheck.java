@@ -0,0 +1,217 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Checks the alert service under contention: reporters submit concurrently while admins
+// claim and resolve alerts off the dispatch queue and readers list, sort and count.
+// Afterwards it verifies that no submission or status change was lost, no ID was handed
+// out twice, no alert was claimed twice, the indexes agree with a full scan, and a
+// restart recovers the same state from disk. Exits with status 1 on any violation.
+//
+// Build and run from the repository root:
+//   javac -encoding UTF-8 -d out "java project"/*.java benchmarks/*.java
+//   java -cp out AlertStressCheck [options]
+//
+// Options:
+//   --reporters 8     threads submitting alerts
+//   --alerts 20000    alerts per reporter
+//   --admins 4        threads claiming and resolving
+//   --readers 2       threads listing and counting meanwhile
+public class AlertStressCheck {
+    private static final List<String> failures = new CopyOnWriteArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        int reporters = Integer.parseInt(options.getOrDefault("reporters", "8"));
+        int perReporter = Integer.parseInt(options.getOrDefault("alerts", "20000"));
+        int admins = Integer.parseInt(options.getOrDefault("admins", "4"));
+        int readers = Integer.parseInt(options.getOrDefault("readers", "2"));
+
+        Path directory = Files.createTempDirectory("alert-stress");
+        try {
+            run(directory.toFile(), reporters, perReporter, admins, readers);
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("PASS");
+        } else {
+            for (String failure : failures) {
+                System.out.println("FAIL: " + failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    private static void run(File directory, int reporters, int perReporter, int admins, int readers)
+            throws Exception {
+        AlertService service = new AlertService(directory);
+        // Daemon threads, so a check that fails midway cannot keep the JVM running
+        ExecutorService pool = Executors.newFixedThreadPool(reporters + admins + readers, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean reporting = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+
+        List<Future<int[]>> submitted = new ArrayList<>();
+        for (int r = 0; r < reporters; r++) {
+            int reporter = r;
+            submitted.add(pool.submit(() -> {
+                Random random = new Random(reporter);
+                int[] ids = new int[perReporter];
+                start.await();
+                int count = 0;
+                try {
+                    while (count < perReporter) {
+                        ids[count] = service.submit(new Alert(
+                            "Report " + count, "Stress check",
+                            AlertCategory.values()[random.nextInt(AlertCategory.values().length)],
+                            Urgency.values()[random.nextInt(Urgency.values().length)],
+                            "Street " + random.nextInt(500), "reporter-" + reporter)).getId();
+                        count++;
+                    }
+                } catch (RuntimeException e) {
+                    failures.add("Submission rejected: " + e.getMessage());
+                }
+                return Arrays.copyOf(ids, count);
+            }));
+        }
+
+        // Each admin keeps claiming until reporting is over and the queue is drained
+        List<Future<List<Integer>>> claimed = new ArrayList<>();
+        for (int a = 0; a < admins; a++) {
+            String actor = "admin-" + a;
+            claimed.add(pool.submit(() -> {
+                List<Integer> ids = new ArrayList<>();
+                start.await();
+                while (true) {
+                    Alert alert = service.claimNext(actor);
+                    if (alert == null) {
+                        if (!reporting.get() && service.dispatchQueue().getWaitingCount() == 0) {
+                            return ids;
+                        }
+                        Thread.yield();
+                        continue;
+                    }
+                    ids.add(alert.getId());
+                    if (service.updateStatus(alert.getId(), AlertStatus.RESOLVED, actor) == null) {
+                        failures.add("Claimed alert " + alert.getId() + " disappeared");
+                    }
+                }
+            }));
+        }
+
+        List<Future<?>> reading = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            reading.add(pool.submit(() -> {
+                start.await();
+                long lastTotal = 0;
+                while (reporting.get()) {
+                    long total = service.statistics().getTotal();
+                    if (total < lastTotal) {
+                        failures.add("Alert count went back from " + lastTotal + " to " + total);
+                    }
+                    lastTotal = total;
+                    AlertService.page(service.byUrgency(), 0, 50);
+                    AlertService.page(service.byLocation(), 0, 50);
+                    service.all().count();
+                    reads.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        Set<Integer> ids = new HashSet<>();
+        int submissions = 0;
+        try {
+            for (Future<int[]> future : submitted) {
+                for (int id : future.get()) {
+                    submissions++;
+                    if (!ids.add(id)) {
+                        failures.add("ID handed out twice: " + id);
+                    }
+                }
+            }
+        } finally {
+            reporting.set(false);
+        }
+        Set<Integer> resolved = new HashSet<>();
+        for (Future<List<Integer>> future : claimed) {
+            for (int id : future.get()) {
+                if (!resolved.add(id)) {
+                    failures.add("Alert claimed twice: " + id);
+                }
+            }
+        }
+        for (Future<?> future : reading) {
+            future.get();
+        }
+        pool.shutdown();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%d submissions, %d claims and %d read rounds in %.2f s%n",
+                          submissions, resolved.size(), reads.get(), seconds);
+
+        check(service, ids, resolved, "after the run");
+        service.close();
+
+        // A restart must recover every alert and status from the snapshot and log
+        AlertService reopened = new AlertService(directory);
+        check(reopened, ids, resolved, "after a restart");
+        reopened.close();
+    }
+
+    private static void check(AlertService service, Set<Integer> ids, Set<Integer> resolved, String when) {
+        if (service.size() != ids.size()) {
+            failures.add(when + ": store holds " + service.size() + " alerts, " + ids.size() + " were submitted");
+        }
+        if (resolved.size() != ids.size()) {
+            failures.add(when + ": " + resolved.size() + " of " + ids.size() + " alerts were claimed");
+        }
+        long scannedResolved = 0;
+        for (int id : ids) {
+            Alert alert = service.findById(id);
+            if (alert == null) {
+                failures.add(when + ": alert " + id + " is missing");
+                continue;
+            }
+            AlertStatus expected = resolved.contains(id) ? AlertStatus.RESOLVED : AlertStatus.OPEN;
+            if (alert.getAlertStatus() != expected) {
+                failures.add(when + ": alert " + id + " is " + alert.getAlertStatus() + ", expected " + expected);
+            }
+            if (alert.getAlertStatus() == AlertStatus.RESOLVED) {
+                scannedResolved++;
+            }
+        }
+        long counted = service.statistics().getStatusCounts().getOrDefault(AlertStatus.RESOLVED, 0L);
+        if (counted != scannedResolved) {
+            failures.add(when + ": statistics count " + counted + " RESOLVED, a scan finds " + scannedResolved);
+        }
+        long indexed = service.byStatus(AlertStatus.RESOLVED).count();
+        if (indexed != scannedResolved) {
+            failures.add(when + ": status index holds " + indexed + " RESOLVED, a scan finds " + scannedResolved);
+        }
+        if (service.byUrgency().count() != ids.size()) {
+            failures.add(when + ": urgency index holds " + service.byUrgency().count() + " alerts");
+        }
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Checks AlertSubscriptions routing: every subscriber receives exactly the events its
+// filter matches, compared with Filter.matches over random filters and locations, and
+// no subscriber goes missing while others whose terms share its first trigram subscribe
+// and unsubscribe concurrently. Exits with status 1 on any difference.
+//
+// Build and run from the repository root:
+//   javac -encoding UTF-8 -d out "java project"/*.java benchmarks/*.java
+//   java -cp out AlertSubscriptionsCheck [rounds]     (default 200)
+public class AlertSubscriptionsCheck {
+    // Short alphabet and words, so terms often occur in locations and share trigrams
+    private static final String[] WORDS = {"main", "maint", "mainz", "maid", "mail", "oak", "oa", "k", "st", "ave"};
+    private static final String[] FAMILY = {"mai", "main", "maint", "mainz", "maid", "mail", "main st"};
+    private static final List<String> failures = new CopyOnWriteArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Random random = new Random(42);
+        for (int round = 0; round < rounds; round++) {
+            compare("round " + round, random);
+        }
+        churn(4, 20_000);
+
+        if (failures.isEmpty()) {
+            System.out.println("PASS");
+        } else {
+            for (String failure : failures.subList(0, Math.min(20, failures.size()))) {
+                System.out.println("FAIL: " + failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    // Random subscribers, some unsubscribed again, then random alerts; each remaining
+    // subscriber must have received the matching ones in order and nothing else
+    private static void compare(String name, Random random) {
+        AlertSubscriptions subscriptions = new AlertSubscriptions();
+        List<AlertSubscriptions.Subscription> active = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            List<AlertCategory> categories = new ArrayList<>();
+            for (AlertCategory category : AlertCategory.values()) {
+                if (random.nextInt(4) == 0) {
+                    categories.add(category);
+                }
+            }
+            Urgency minUrgency = random.nextBoolean() ? null : Urgency.values()[random.nextInt(Urgency.values().length)];
+            String term = random.nextInt(5) == 0 ? null : location(random, 1 + random.nextInt(2));
+            if (term != null && random.nextBoolean()) {
+                term = term.substring(random.nextInt(term.length()));
+            }
+            AlertSubscriptions.Subscription subscription = subscriptions.subscribe(
+                new AlertSubscriptions.Filter(categories, minUrgency, term), 1000, AlertSubscriptions.Overflow.DROP_NEWEST);
+            if (random.nextInt(5) == 0) {
+                subscriptions.unsubscribe(subscription);
+            } else {
+                active.add(subscription);
+            }
+        }
+
+        List<Alert> alerts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Alert alert = new Alert("Check", "Routing check",
+                                    AlertCategory.values()[random.nextInt(AlertCategory.values().length)],
+                                    Urgency.values()[random.nextInt(Urgency.values().length)],
+                                    location(random, 1 + random.nextInt(4)).toUpperCase(Locale.ROOT), "check");
+            alerts.add(alert);
+            subscriptions.alertAdded(alert);
+        }
+
+        if (subscriptions.size() != active.size()) {
+            failures.add(name + ": size is " + subscriptions.size() + ", expected " + active.size());
+        }
+        for (AlertSubscriptions.Subscription subscription : active) {
+            List<Integer> expected = new ArrayList<>();
+            for (Alert alert : alerts) {
+                if (subscription.getFilter().matches(alert)) {
+                    expected.add(alert.getId());
+                }
+            }
+            List<Integer> actual = new ArrayList<>();
+            for (AlertSubscriptions.Event event : subscription.drain()) {
+                actual.add(event.alert.getId());
+            }
+            if (!actual.equals(expected)) {
+                failures.add(name + ": " + subscription.getFilter() + " received " + actual.size()
+                             + " events, expected " + expected.size());
+            }
+        }
+    }
+
+    // Threads subscribe and unsubscribe terms sharing a first trigram, keeping every
+    // hundredth subscription; afterwards each kept one must still receive its events
+    private static void churn(int threads, int iterations) throws Exception {
+        AlertSubscriptions subscriptions = new AlertSubscriptions();
+        // Each subscription kept, with its term
+        Map<AlertSubscriptions.Subscription, String> kept = new ConcurrentHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            tasks.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < iterations; i++) {
+                    String term = FAMILY[random.nextInt(FAMILY.length)];
+                    AlertSubscriptions.Subscription subscription = subscriptions.subscribe(
+                        new AlertSubscriptions.Filter(null, null, term), 16, AlertSubscriptions.Overflow.DROP_OLDEST);
+                    if (i % 100 == 0) {
+                        kept.put(subscription, term);
+                    } else {
+                        subscriptions.unsubscribe(subscription);
+                    }
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        pool.shutdown();
+
+        if (subscriptions.size() != kept.size()) {
+            failures.add("churn: size is " + subscriptions.size() + ", expected " + kept.size());
+        }
+        Map<String, Integer> alertIds = new HashMap<>();
+        for (String term : FAMILY) {
+            Alert alert = new Alert("Check", "Routing check", AlertCategory.OTHER, Urgency.LOW, term, "check");
+            alertIds.put(term, alert.getId());
+            subscriptions.alertAdded(alert);
+        }
+        int lost = 0;
+        for (Map.Entry<AlertSubscriptions.Subscription, String> entry : kept.entrySet()) {
+            int expected = alertIds.get(entry.getValue());
+            boolean received = false;
+            for (AlertSubscriptions.Event event : entry.getKey().drain()) {
+                received |= event.alert.getId() == expected;
+            }
+            if (!received) {
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            failures.add("churn: " + lost + " of " + kept.size() + " subscribers kept missed their event");
+        }
+    }
+
+    private static String location(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
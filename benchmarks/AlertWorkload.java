@@ -0,0 +1,144 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+// One of the alert system's hot operations over a synthetic dataset, shared by
+// AlertBenchmark and the JMH suite so both measure exactly the same work. The dataset
+// is saved as a snapshot and started from, as a restarted system would; each call runs
+// the operation once and returns a value derived from its result. close() stops the
+// service and deletes the files.
+public class AlertWorkload implements LongSupplier, Closeable {
+    static final List<String> OPERATIONS = Arrays.asList(
+        "submit", "findById", "sortByUrgency", "sortByLocation", "filterByCategory",
+        "searchByLocation", "searchText", "compoundQuery", "facetCounts", "showStatistics", "trends",
+        "resolutionTimes", "claimNext", "bulkImport", "saveAlerts", "loadAlerts");
+
+    private interface Operation {
+        long run() throws IOException;
+    }
+
+    // Records per bulkImport run
+    private static final int IMPORT_BATCH = 10_000;
+
+    private final Path directory;
+    private final AlertService service;
+    private final Operation operation;
+
+    public AlertWorkload(String operation, int size, int locations, double categorySkew,
+                         double urgencySkew, double locationSkew) throws IOException {
+        if (!OPERATIONS.contains(operation)) {
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+        AlertGenerator generator = new AlertGenerator(42, locations, categorySkew, urgencySkew, locationSkew);
+        List<Alert> dataset = generator.next(size);
+        int firstId = dataset.get(0).getId();
+        directory = Files.createTempDirectory("alert-bench");
+        BinaryAlertFormat.write(new File(directory.toFile(), AlertService.DATA_FILE), dataset, Alert.peekNextId());
+
+        // Loading needs the files to itself, so it runs without a service of its own
+        if (operation.equals("loadAlerts")) {
+            service = null;
+            this.operation = () -> {
+                AlertService loaded = new AlertService(directory.toFile());
+                loaded.close();
+                return loaded.size();
+            };
+        } else {
+            service = new AlertService(directory.toFile());
+            this.operation = create(operation, service, generator, size, firstId);
+        }
+    }
+
+    private static Operation create(String name, AlertService service, AlertGenerator generator,
+                                    int size, int firstId) throws IOException {
+        switch (name) {
+            case "submit":
+                return () -> {
+                    service.submit(generator.next());
+                    return 1;
+                };
+            case "findById":
+                return () -> service.findById(firstId + generator.nextInt(size)).getId();
+            case "sortByUrgency":
+                return () -> service.byUrgency().mapToLong(Alert::getId).sum();
+            case "sortByLocation":
+                return () -> service.byLocation().mapToLong(Alert::getId).sum();
+            case "filterByCategory":
+                return () -> service.byCategory(generator.category()).count();
+            case "searchByLocation":
+                return () -> service.searchLocation(generator.location()).size();
+            case "searchText":
+                return () -> service.searchText("pothole oak").size();
+            case "compoundQuery":
+                return () -> service.query(
+                    AlertQuery.and(AlertQuery.category(generator.category()),
+                                   AlertQuery.urgencyBetween(Urgency.HIGH, Urgency.CRITICAL),
+                                   AlertQuery.status(AlertStatus.OPEN)),
+                    AlertQueryPlanner.Sort.URGENCY, 20).count();
+            case "facetCounts":
+                return () -> service.facets(
+                    AlertQuery.and(AlertQuery.category(generator.category()),
+                                   AlertQuery.urgencyBetween(Urgency.CRITICAL, Urgency.CRITICAL),
+                                   AlertQuery.status(AlertStatus.OPEN))).getTotal();
+            case "showStatistics":
+                return () -> service.statistics().getCategoryCounts().size()
+                    + service.statistics().getUrgencyCounts().size() + service.statistics().getStatusCounts().size();
+            case "trends":
+                return () -> service.trends().count(generator.category(), null, AlertTrends.HOURS)
+                    + service.trends().hotspots(3, AlertTrends.HOURS - 3, 10).size();
+            case "resolutionTimes":
+                return () -> service.history().resolutionTimes(generator.category(), null)
+                    .getPercentileNanos(0.9) + service.history().of(firstId + generator.nextInt(size)).size();
+            case "claimNext":
+                // Claim and reopen, so the queue keeps its size; a dataset with no OPEN
+                // alert leaves nothing to claim
+                return () -> {
+                    Alert claimed = service.claimNext();
+                    if (claimed == null) {
+                        return 0;
+                    }
+                    service.updateStatus(claimed.getId(), AlertStatus.OPEN);
+                    return claimed.getId();
+                };
+            case "bulkImport":
+                ByteArrayOutputStream feed = new ByteArrayOutputStream();
+                new AlertExporter(AlertExporter.Format.CSV, null, false).write(feed, generator.next(IMPORT_BATCH));
+                byte[] feedBytes = feed.toByteArray();
+                AlertImporter importer = new AlertImporter(AlertExporter.Format.CSV, AlertImporter.DEFAULT_BATCH_SIZE);
+                return () -> service.importAlerts(importer, new ByteArrayInputStream(feedBytes)).getImported();
+            case "saveAlerts":
+                return () -> {
+                    service.save();
+                    return 1;
+                };
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + name);
+        }
+    }
+
+    @Override
+    public long getAsLong() {
+        try {
+            return operation.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (service != null) {
+            service.close();
+        }
+        // Deepest first, so each directory is empty by the time it is deleted
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.*;
+
+// Compares AlertGeoIndex radius, bounding-box and k-nearest queries against a brute-force
+// scan over the same alerts, checking that both return the same results.
+//
+// Build and run from the repository root:
+//   javac -encoding UTF-8 -d out "java project"/*.java benchmarks/GeoIndexBenchmark.java
+//   java -cp out GeoIndexBenchmark [alerts] [queries]
+public class GeoIndexBenchmark {
+    public static void main(String[] args) {
+        int alertCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Random random = new Random(42);
+
+        // Alerts clustered around a handful of cities, as real reports would be
+        double[][] cities = {
+            {40.7128, -74.0060}, {51.5074, -0.1278}, {35.6762, 139.6503},
+            {-33.8688, 151.2093}, {19.0760, 72.8777}, {-23.5505, -46.6333}
+        };
+        List<Alert> alerts = new ArrayList<>(alertCount);
+        for (int i = 0; i < alertCount; i++) {
+            double[] city = cities[random.nextInt(cities.length)];
+            alerts.add(new Alert("Alert " + i, "", AlertCategory.OTHER, Urgency.LOW,
+                                 "Somewhere", "bench",
+                                 city[0] + random.nextGaussian() * 0.5,
+                                 city[1] + random.nextGaussian() * 0.5));
+        }
+
+        long start = System.nanoTime();
+        AlertGeoIndex index = new AlertGeoIndex();
+        index.alertsLoaded(alerts);
+        System.out.printf("Indexed %,d alerts in %d ms%n", alertCount, (System.nanoTime() - start) / 1_000_000);
+
+        double[][] points = new double[queryCount][];
+        for (int i = 0; i < queryCount; i++) {
+            double[] city = cities[random.nextInt(cities.length)];
+            points[i] = new double[] {city[0] + random.nextGaussian() * 0.5,
+                                      city[1] + random.nextGaussian() * 0.5};
+        }
+
+        // Radius: 2 km around each point
+        long indexed = 0;
+        long scanned = 0;
+        for (double[] p : points) {
+            long t0 = System.nanoTime();
+            List<Alert> fast = index.withinRadius(p[0], p[1], 2_000);
+            long t1 = System.nanoTime();
+            List<Alert> slow = new ArrayList<>();
+            for (Alert alert : alerts) {
+                if (AlertGeoIndex.distanceMeters(p[0], p[1], alert.getLatitude(), alert.getLongitude()) <= 2_000) {
+                    slow.add(alert);
+                }
+            }
+            long t2 = System.nanoTime();
+            check("radius", new HashSet<>(fast).equals(new HashSet<>(slow)));
+            indexed += t1 - t0;
+            scanned += t2 - t1;
+        }
+        report("radius 2 km", queryCount, indexed, scanned);
+
+        // Bounding box: 0.05 degrees on a side
+        indexed = 0;
+        scanned = 0;
+        for (double[] p : points) {
+            long t0 = System.nanoTime();
+            List<Alert> fast = index.withinBox(p[0], p[1], p[0] + 0.05, p[1] + 0.05);
+            long t1 = System.nanoTime();
+            List<Alert> slow = new ArrayList<>();
+            for (Alert alert : alerts) {
+                if (alert.getLatitude() >= p[0] && alert.getLatitude() <= p[0] + 0.05
+                        && alert.getLongitude() >= p[1] && alert.getLongitude() <= p[1] + 0.05) {
+                    slow.add(alert);
+                }
+            }
+            long t2 = System.nanoTime();
+            check("box", new HashSet<>(fast).equals(new HashSet<>(slow)));
+            indexed += t1 - t0;
+            scanned += t2 - t1;
+        }
+        report("box 0.05 deg", queryCount, indexed, scanned);
+
+        // Ten nearest alerts
+        indexed = 0;
+        scanned = 0;
+        for (double[] p : points) {
+            long t0 = System.nanoTime();
+            List<Alert> fast = index.nearest(p[0], p[1], 10);
+            long t1 = System.nanoTime();
+            double[] distances = new double[alerts.size()];
+            for (int i = 0; i < distances.length; i++) {
+                Alert alert = alerts.get(i);
+                distances[i] = AlertGeoIndex.distanceMeters(p[0], p[1], alert.getLatitude(), alert.getLongitude());
+            }
+            Arrays.sort(distances);
+            long t2 = System.nanoTime();
+            Alert last = fast.get(fast.size() - 1);
+            check("nearest", fast.size() == 10 && AlertGeoIndex.distanceMeters(
+                p[0], p[1], last.getLatitude(), last.getLongitude()) == distances[9]);
+            indexed += t1 - t0;
+            scanned += t2 - t1;
+        }
+        report("nearest 10", queryCount, indexed, scanned);
+    }
+
+    private static void check(String query, boolean same) {
+        if (!same) {
+            throw new IllegalStateException(query + " results differ from a full scan");
+        }
+    }
+
+    private static void report(String query, int queries, long indexedNanos, long scannedNanos) {
+        System.out.printf("%-14s index %9.1f us/query   scan %9.1f us/query   %6.0fx%n", query,
+                          indexedNanos / 1000.0 / queries, scannedNanos / 1000.0 / queries,
+                          (double) scannedNanos / indexedNanos);
+    }
+}
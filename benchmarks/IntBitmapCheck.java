@@ -0,0 +1,137 @@
+import java.util.*;
+
+// Checks IntBitmap against java.util.BitSet: intersections, their cardinality, unions,
+// membership and iteration, over bitmaps whose chunks are sparse arrays, dense bitmaps,
+// and bitmaps shrunk by removals below the array limit, which keep their words until
+// they fall under half of it. Exits with status 1 on any difference.
+//
+// Build and run from the repository root:
+//   javac -encoding UTF-8 -d out "java project"/*.java benchmarks/*.java
+//   java -cp out IntBitmapCheck [rounds]     (default 300)
+public class IntBitmapCheck {
+    private static final List<String> failures = new ArrayList<>();
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+
+        // A bitmap chunk shrunk to 2100 values intersected with an array chunk that
+        // holds those 2100 and 1000 more
+        IntBitmap a = new IntBitmap();
+        IntBitmap b = new IntBitmap();
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        for (int i = 0; i < 5000; i++) {
+            add(b, expectedB, i * 2);
+        }
+        for (int i = 2100; i < 5000; i++) {
+            remove(b, expectedB, i * 2);
+        }
+        for (int i = 0; i < 2100; i++) {
+            add(a, expectedA, i * 2);
+        }
+        for (int i = 0; i < 1000; i++) {
+            add(a, expectedA, 20_001 + i * 2);
+        }
+        compare("shrunk bitmap and array", a, expectedA, b, expectedB);
+
+        Random random = new Random(42);
+        for (int round = 0; round < rounds; round++) {
+            a = new IntBitmap();
+            b = new IntBitmap();
+            expectedA = new BitSet();
+            expectedB = new BitSet();
+            fill(random, a, expectedA);
+            fill(random, b, expectedB);
+            compare("round " + round, a, expectedA, b, expectedB);
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("PASS");
+        } else {
+            for (String failure : failures.subList(0, Math.min(20, failures.size()))) {
+                System.out.println("FAIL: " + failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    // Values over a few chunks, each chunk drawn as sparse, dense, or dense then thinned
+    // out to between half the array limit and the limit
+    private static void fill(Random random, IntBitmap bitmap, BitSet expected) {
+        for (int chunk = 0; chunk < 3; chunk++) {
+            if (random.nextInt(4) == 0) {
+                continue;
+            }
+            int base = chunk << 16;
+            int span = 1 << (10 + random.nextInt(7));
+            int offset = random.nextInt((1 << 16) - span + 1);
+            switch (random.nextInt(3)) {
+                case 0:
+                    for (int i = random.nextInt(4000); i > 0; i--) {
+                        add(bitmap, expected, base + offset + random.nextInt(span));
+                    }
+                    break;
+                case 1:
+                    for (int i = 4097 + random.nextInt(20_000); i > 0; i--) {
+                        add(bitmap, expected, base + random.nextInt(1 << 16));
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < 6000; i++) {
+                        add(bitmap, expected, base + offset % 4096 + i * 3);
+                    }
+                    int keep = 2100 + random.nextInt(1900);
+                    int[] values = expected.stream().filter(v -> v >>> 16 == (base >>> 16)).toArray();
+                    for (int i = values.length - 1; i >= keep; i--) {
+                        remove(bitmap, expected, values[i]);
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static void add(IntBitmap bitmap, BitSet expected, int value) {
+        bitmap.add(value);
+        expected.set(value);
+    }
+
+    private static void remove(IntBitmap bitmap, BitSet expected, int value) {
+        bitmap.remove(value);
+        expected.clear(value);
+    }
+
+    private static void compare(String name, IntBitmap a, BitSet expectedA, IntBitmap b, BitSet expectedB) {
+        BitSet and = (BitSet) expectedA.clone();
+        and.and(expectedB);
+        BitSet or = (BitSet) expectedA.clone();
+        or.or(expectedB);
+        try {
+            check(name + ": a", a, expectedA);
+            check(name + ": b", b, expectedB);
+            check(name + ": a and b", IntBitmap.and(a, b), and);
+            check(name + ": b and a", IntBitmap.and(b, a), and);
+            check(name + ": a or b", IntBitmap.or(a, b), or);
+            if (IntBitmap.andCardinality(a, b) != and.cardinality()) {
+                failures.add(name + ": andCardinality is " + IntBitmap.andCardinality(a, b)
+                             + ", expected " + and.cardinality());
+            }
+        } catch (RuntimeException e) {
+            failures.add(name + ": " + e);
+        }
+    }
+
+    private static void check(String name, IntBitmap actual, BitSet expected) {
+        if (actual.cardinality() != expected.cardinality()) {
+            failures.add(name + ": cardinality is " + actual.cardinality() + ", expected " + expected.cardinality());
+        }
+        if (!Arrays.equals(actual.toArray(), expected.stream().toArray())) {
+            failures.add(name + ": values differ");
+        }
+        for (int v = expected.nextSetBit(0); v >= 0; v = expected.nextSetBit(v + 1)) {
+            if (!actual.contains(v)) {
+                failures.add(name + ": missing " + v);
+                return;
+            }
+        }
+    }
+}
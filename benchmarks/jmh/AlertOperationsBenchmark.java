@@ -0,0 +1,66 @@
+package jmh;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.*;
+
+// JMH suite over the alert system's hot operations, each on a fresh synthetic dataset per
+// size with configurable category, urgency and location skew. The work itself is
+// AlertWorkload's, shared with the standalone AlertBenchmark.
+//
+// Build and run from the repository root (see pom.xml):
+//   mvn -B test-compile exec:exec@jmh
+//   mvn -B test-compile exec:exec@jmh -Djmh.args="-p operation=findById,searchText -p size=10000000"
+//
+// Sizes up to 10^7 need a larger heap than the default fork's: add -jvmArgsAppend -Xmx16g.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AlertOperationsBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"submit", "findById", "sortByUrgency", "sortByLocation", "filterByCategory",
+            "searchByLocation", "searchText", "compoundQuery", "facetCounts", "showStatistics", "trends",
+            "resolutionTimes", "claimNext", "bulkImport", "saveAlerts", "loadAlerts"})
+    public String operation;
+
+    // Zipf exponents: 0 is uniform, 1 is typical of real reports
+    @Param("1.0")
+    public double categorySkew;
+
+    @Param("0.5")
+    public double urgencySkew;
+
+    @Param("1.0")
+    public double locationSkew;
+
+    @Param("1000")
+    public int locations;
+
+    private LongSupplier workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        // The alert classes live in the unnamed package, which no named package can refer
+        // to by name, so the workload is looked up once here and called through LongSupplier
+        workload = (LongSupplier) Class.forName("AlertWorkload")
+            .getConstructor(String.class, int.class, int.class, double.class, double.class, double.class)
+            .newInstance(operation, size, locations, categorySkew, urgencySkew, locationSkew);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ((Closeable) workload).close();
+    }
+
+    @Benchmark
+    public long run() {
+        return workload.getAsLong();
+    }
+}
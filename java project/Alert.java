@@ -0,0 +1,160 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Alert class representing a community report. Kept compact because millions may be
+// held at once: status is an enum, the time is epoch milliseconds, and locations and
+// reporter names, which repeat heavily, are shared through dictionaries.
+class Alert {
+    private static final AtomicInteger idCounter = new AtomicInteger(1000);
+    static final DateTimeFormatter DISPLAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    static final StringDictionary LOCATIONS = new StringDictionary();
+    static final StringDictionary REPORTERS = new StringDictionary();
+    
+    // Final fields make alerts safe to hand between threads; only status changes
+    private final int id;
+    private final String title;
+    private final String description;
+    private final AlertCategory category;
+    private final Urgency urgency;
+    private final String location;
+    private final String reportedBy;
+    // Local date-time as epoch milliseconds at UTC, as in the log and snapshots
+    private final long timestamp;
+    private volatile AlertStatus status;
+    // Optional map position; NaN when unknown
+    private final double latitude;
+    private final double longitude;
+    
+    public Alert(String title, String description, AlertCategory category, 
+                 Urgency urgency, String location, String reportedBy) {
+        this(title, description, category, urgency, location, reportedBy, Double.NaN, Double.NaN);
+    }
+    
+    // Alert pinned to a map position; pass NaN for both coordinates when unknown
+    public Alert(String title, String description, AlertCategory category, 
+                 Urgency urgency, String location, String reportedBy,
+                 double latitude, double longitude) {
+        this(nextId(latitude, longitude), title, description, category, urgency, location, reportedBy,
+             AlertLog.toEpochMillis(LocalDateTime.now()), AlertStatus.OPEN, latitude, longitude);
+    }
+    
+    // Validate before taking an ID, so rejected input leaves no gap
+    private static int nextId(double latitude, double longitude) {
+        checkCoordinates(latitude, longitude);
+        return idCounter.getAndIncrement();
+    }
+    
+    // Restore a previously persisted alert
+    Alert(int id, String title, String description, AlertCategory category,
+          Urgency urgency, String location, String reportedBy,
+          LocalDateTime timestamp, String status, double latitude, double longitude) {
+        this(id, title, description, category, urgency, location, reportedBy,
+             AlertLog.toEpochMillis(timestamp), AlertStatus.valueOf(status), latitude, longitude);
+    }
+    
+    // Restore a previously persisted alert from its stored representation
+    Alert(int id, String title, String description, AlertCategory category,
+          Urgency urgency, String location, String reportedBy,
+          long timestampMillis, AlertStatus status, double latitude, double longitude) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.category = category;
+        this.urgency = urgency;
+        this.location = LOCATIONS.intern(location);
+        this.reportedBy = REPORTERS.intern(reportedBy);
+        this.timestamp = timestampMillis;
+        this.status = status;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+    
+    static void checkCoordinates(double latitude, double longitude) {
+        if (Double.isNaN(latitude) && Double.isNaN(longitude)) {
+            return;
+        }
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", " + longitude);
+        }
+    }
+    
+    // Make sure newly created alerts never reuse a restored ID
+    static void reserveId(int id) {
+        idCounter.accumulateAndGet(id + 1, Math::max);
+    }
+    
+    // Hand out a block of consecutive IDs for alerts created elsewhere, e.g. by a bulk
+    // import; returns the first
+    static int reserveIds(int count) {
+        return idCounter.getAndAdd(count);
+    }
+    
+    static int peekNextId() {
+        return idCounter.get();
+    }
+    
+    // Getters
+    public int getId() { return id; }
+    public String getTitle() { return title; }
+    public String getDescription() { return description; }
+    public AlertCategory getCategory() { return category; }
+    public Urgency getUrgency() { return urgency; }
+    public String getLocation() { return location; }
+    public String getReportedBy() { return reportedBy; }
+    public LocalDateTime getTimestamp() { return AlertLog.fromEpochMillis(timestamp); }
+    // The timestamp without allocating, for comparisons; see AlertLog.toEpochMillis
+    public long getTimestampMillis() { return timestamp; }
+    public String getStatus() { return status.name(); }
+    public AlertStatus getAlertStatus() { return status; }
+    public boolean hasCoordinates() { return !Double.isNaN(latitude); }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    
+    public void setStatus(String status) { this.status = AlertStatus.valueOf(status); }
+    public void setStatus(AlertStatus status) { this.status = status; }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(256);
+        appendTo(sb);
+        return sb.toString();
+    }
+    
+    // Human-readable layout shared by the console and text exports, appended
+    // without intermediate strings so large exports stay cheap
+    void appendTo(StringBuilder sb) {
+        AlertStatus currentStatus = status;
+        sb.append("ID: ").append(id).append(" | ").append(title)
+          .append(" [").append(currentStatus).append("]\n");
+        sb.append("Category: ").append(category).append(" | Urgency: ").append(urgency).append('\n');
+        sb.append("Location: ").append(location).append('\n');
+        if (hasCoordinates()) {
+            sb.append("Coordinates: ");
+            appendCoordinate(sb, latitude);
+            sb.append(", ");
+            appendCoordinate(sb, longitude);
+            sb.append('\n');
+        }
+        sb.append("Description: ").append(description).append('\n');
+        sb.append("Reported by: ").append(reportedBy).append(" | Time: ");
+        DISPLAY_FORMAT.formatTo(getTimestamp(), sb);
+        sb.append('\n');
+        sb.append("Status: ").append(currentStatus).append('\n');
+        sb.append("----------------------------------------");
+    }
+    
+    // Coordinate rounded to five decimals (about a metre)
+    private static void appendCoordinate(StringBuilder sb, double value) {
+        long scaled = Math.round(Math.abs(value) * 100_000);
+        if (value < 0 && scaled != 0) {
+            sb.append('-');
+        }
+        sb.append(scaled / 100_000).append('.');
+        long fraction = scaled % 100_000;
+        for (long digit = 10_000; digit > fraction && digit > 1; digit /= 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Cold storage for closed alerts from past months: one gzip-compressed binary snapshot
+// per reporting month, e.g. alerts-2024-03.archive, kept off the heap. Each file starts
+// with a small uncompressed header (magic, version, alert count, lowest and highest ID,
+// uncompressed size), so the archive is listed at startup without decompressing
+// anything. A month is decoded only when a lookup or query reaches it, and the most
+// recently used months stay cached. Archived alerts are read-only. Thread-safe.
+class AlertArchive {
+    static final int MAGIC = 0x43414C41; // "CALA"
+    static final int VERSION = 1;
+
+    private static final String PREFIX = "alerts-";
+    private static final String SUFFIX = ".archive";
+    private static final int HEADER_SIZE = 24;
+    private static final int CACHED_MONTHS = 4;
+
+    private final File directory;
+    private final TreeMap<YearMonth, Partition> partitions = new TreeMap<>();
+    private final Map<YearMonth, List<Alert>> cache =
+        new LinkedHashMap<YearMonth, List<Alert>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<YearMonth, List<Alert>> eldest) {
+                return size() > CACHED_MONTHS;
+            }
+        };
+
+    public AlertArchive(File directory) {
+        this.directory = directory;
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                YearMonth month = YearMonth.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                partitions.put(month, readHeader(month, file));
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error reading archive " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Add alerts reported in the given month to its partition; alerts already there are
+    // replaced, so archiving the same alert twice is harmless
+    public synchronized void add(YearMonth month, Collection<Alert> alerts) throws IOException {
+        Map<Integer, Alert> merged = new TreeMap<>();
+        for (Alert alert : load(month)) {
+            merged.put(alert.getId(), alert);
+        }
+        for (Alert alert : alerts) {
+            merged.put(alert.getId(), alert);
+        }
+        List<Alert> sorted = Collections.unmodifiableList(new ArrayList<>(merged.values()));
+        Partition partition = write(month, sorted);
+        partitions.put(month, partition);
+        cache.put(month, sorted);
+    }
+
+    // Alerts reported in the month in ID order, empty if the month is not archived
+    public synchronized List<Alert> load(YearMonth month) throws IOException {
+        List<Alert> alerts = cache.get(month);
+        if (alerts != null) {
+            return alerts;
+        }
+        Partition partition = partitions.get(month);
+        if (partition == null) {
+            return Collections.emptyList();
+        }
+        alerts = Collections.unmodifiableList(read(partition));
+        cache.put(month, alerts);
+        return alerts;
+    }
+
+    // Alerts of the given months in order, decoded one month at a time as consumed;
+    // a month that cannot be read is reported and skipped
+    public Stream<Alert> stream(List<YearMonth> months) {
+        return months.stream().flatMap(month -> {
+            try {
+                return load(month).stream();
+            } catch (IOException e) {
+                System.out.println("Error reading archived alerts for " + month + ": " + e.getMessage());
+                return Stream.empty();
+            }
+        });
+    }
+
+    // Archived months that may hold alerts reported in the window; either end may be null
+    public synchronized List<YearMonth> months(LocalDateTime from, LocalDateTime to) {
+        if (partitions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        YearMonth first = from == null ? partitions.firstKey() : YearMonth.from(from);
+        YearMonth last = to == null ? partitions.lastKey() : YearMonth.from(to);
+        if (first.isAfter(last)) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(partitions.subMap(first, true, last, true).keySet());
+    }
+
+    public synchronized Alert findById(int id) throws IOException {
+        // Only months whose ID range covers the ID need to be opened
+        for (Partition partition : partitions.values()) {
+            if (id >= partition.minId && id <= partition.maxId) {
+                List<Alert> alerts = load(partition.month);
+                int low = 0;
+                int high = alerts.size() - 1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    int midId = alerts.get(mid).getId();
+                    if (midId < id) {
+                        low = mid + 1;
+                    } else if (midId > id) {
+                        high = mid - 1;
+                    } else {
+                        return alerts.get(mid);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // Alerts in one archived month, known without decompressing it
+    public synchronized int count(YearMonth month) {
+        Partition partition = partitions.get(month);
+        return partition == null ? 0 : partition.count;
+    }
+
+    public synchronized long size() {
+        long size = 0;
+        for (Partition partition : partitions.values()) {
+            size += partition.count;
+        }
+        return size;
+    }
+
+    public synchronized List<YearMonth> months() {
+        return new ArrayList<>(partitions.keySet());
+    }
+
+    // Delete every archived month
+    public synchronized void clear() throws IOException {
+        for (Partition partition : partitions.values()) {
+            Files.deleteIfExists(partition.file.toPath());
+        }
+        partitions.clear();
+        cache.clear();
+    }
+
+    // Compress to a temporary file, fsync it and atomically move it into place
+    private Partition write(YearMonth month, List<Alert> alerts) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create archive directory " + directory);
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        BinaryAlertFormat.write(new DataOutputStream(encoded), alerts, Alert.peekNextId());
+
+        File file = new File(directory, PREFIX + month + SUFFIX);
+        File tmp = new File(file.getPath() + ".tmp");
+        int minId = alerts.isEmpty() ? 0 : alerts.get(0).getId();
+        int maxId = alerts.isEmpty() ? -1 : alerts.get(alerts.size() - 1).getId();
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream header = new DataOutputStream(fos);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(alerts.size());
+            header.writeInt(minId);
+            header.writeInt(maxId);
+            header.writeInt(encoded.size());
+            GZIPOutputStream gzip = new GZIPOutputStream(fos, 1 << 16);
+            encoded.writeTo(gzip);
+            gzip.finish();
+            fos.getChannel().force(false);
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Partition(month, file, alerts.size(), minId, maxId, encoded.size());
+    }
+
+    private static Partition readHeader(YearMonth month, File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an alert archive");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported alert archive version: " + version);
+            }
+            return new Partition(month, file, in.readInt(), in.readInt(), in.readInt(), in.readInt());
+        }
+    }
+
+    private static List<Alert> read(Partition partition) throws IOException {
+        byte[] encoded = new byte[partition.encodedSize];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(partition.file)))) {
+            in.readFully(new byte[HEADER_SIZE]);
+            new DataInputStream(new GZIPInputStream(in, 1 << 16)).readFully(encoded);
+        }
+        return BinaryAlertFormat.decode(ByteBuffer.wrap(encoded));
+    }
+
+    private static final class Partition {
+        final YearMonth month;
+        final File file;
+        final int count;
+        final int minId;
+        final int maxId;
+        final int encodedSize;
+
+        Partition(YearMonth month, File file, int count, int minId, int maxId, int encodedSize) {
+            this.month = month;
+            this.file = file;
+            this.count = count;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.encodedSize = encodedSize;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// One compressed bitmap of alert IDs per category, urgency and status value. Queries
+// made only of those conditions are answered by intersecting and uniting bitmaps, and
+// counts come from bitmap cardinalities, so neither touches Alert objects. IDs are
+// handed out densely in increasing order, so they serve as bitmap positions and stay
+// put when the store compacts its slots. Kept current by store callbacks; safe for
+// concurrent reads.
+class AlertBitmapIndex implements AlertListener {
+    private static final AlertCategory[] CATEGORIES = AlertCategory.values();
+    private static final Urgency[] URGENCIES = Urgency.values();
+    private static final AlertStatus[] STATUSES = AlertStatus.values();
+
+    private final IntBitmap[] byCategory = newBitmaps(CATEGORIES.length);
+    private final IntBitmap[] byUrgency = newBitmaps(URGENCIES.length);
+    private final IntBitmap[] byStatus = newBitmaps(STATUSES.length);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void alertAdded(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            insert(alert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsAdded(List<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            for (Alert alert : alerts) {
+                insert(alert);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void statusChanged(Alert alert, String previousStatus) {
+        lock.writeLock().lock();
+        try {
+            byStatus[AlertStatus.valueOf(previousStatus).ordinal()].remove(alert.getId());
+            byStatus[alert.getAlertStatus().ordinal()].add(alert.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertRemoved(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            byCategory[alert.getCategory().ordinal()].remove(alert.getId());
+            byUrgency[alert.getUrgency().ordinal()].remove(alert.getId());
+            byStatus[alert.getAlertStatus().ordinal()].remove(alert.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsCleared() {
+        lock.writeLock().lock();
+        try {
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsLoaded(Iterable<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (Alert alert : alerts) {
+                insert(alert);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Whether the bitmaps alone decide the query: category, urgency and status
+    // conditions joined with AND and OR
+    static boolean covers(AlertQuery query) {
+        if (query instanceof AlertQuery.And || query instanceof AlertQuery.Or) {
+            List<AlertQuery> parts = query instanceof AlertQuery.And
+                ? ((AlertQuery.And) query).parts : ((AlertQuery.Or) query).parts;
+            for (AlertQuery part : parts) {
+                if (!covers(part)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return query instanceof AlertQuery.All || query instanceof AlertQuery.CategoryIs
+            || query instanceof AlertQuery.UrgencyBetween || query instanceof AlertQuery.StatusIs;
+    }
+
+    // IDs of the alerts matching the query in ascending order, or null if the bitmaps
+    // do not cover it
+    public int[] ids(AlertQuery query) {
+        if (!covers(query)) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            return evaluate(query).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // How many alerts match the query, or -1 if the bitmaps do not cover it
+    public long count(AlertQuery query) {
+        if (!covers(query)) {
+            return -1;
+        }
+        lock.readLock().lock();
+        try {
+            return evaluate(query).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Counts by category, urgency and status among the alerts matching the query, or
+    // null if the bitmaps do not cover it
+    public Facets facets(AlertQuery query) {
+        if (!covers(query)) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            IntBitmap selection = query instanceof AlertQuery.All ? null : evaluate(query);
+            long[] categories = counts(byCategory, selection);
+            long total = 0;
+            for (long count : categories) {
+                total += count;
+            }
+            return new Facets(total, categories, counts(byUrgency, selection), counts(byStatus, selection));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The matching IDs; leaf bitmaps are returned as they are and must not be modified
+    private IntBitmap evaluate(AlertQuery query) {
+        if (query instanceof AlertQuery.CategoryIs) {
+            return byCategory[((AlertQuery.CategoryIs) query).category.ordinal()];
+        }
+        if (query instanceof AlertQuery.StatusIs) {
+            return byStatus[((AlertQuery.StatusIs) query).status.ordinal()];
+        }
+        if (query instanceof AlertQuery.UrgencyBetween) {
+            AlertQuery.UrgencyBetween range = (AlertQuery.UrgencyBetween) query;
+            return union(byUrgency, range.min.ordinal(), range.max.ordinal());
+        }
+        if (query instanceof AlertQuery.And) {
+            // Intersect the smallest sets first so intermediate results stay small
+            List<IntBitmap> sets = new ArrayList<>();
+            for (AlertQuery part : ((AlertQuery.And) query).parts) {
+                sets.add(evaluate(part));
+            }
+            sets.sort(Comparator.comparingLong(IntBitmap::cardinality));
+            IntBitmap result = sets.get(0);
+            for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+                result = IntBitmap.and(result, sets.get(i));
+            }
+            return result;
+        }
+        if (query instanceof AlertQuery.Or) {
+            IntBitmap result = null;
+            for (AlertQuery part : ((AlertQuery.Or) query).parts) {
+                IntBitmap set = evaluate(part);
+                result = result == null ? set : IntBitmap.or(result, set);
+            }
+            return result;
+        }
+        // Every alert has exactly one category
+        return union(byCategory, 0, CATEGORIES.length - 1);
+    }
+
+    private static IntBitmap union(IntBitmap[] bitmaps, int from, int to) {
+        IntBitmap result = bitmaps[from];
+        for (int i = from + 1; i <= to; i++) {
+            result = IntBitmap.or(result, bitmaps[i]);
+        }
+        return result;
+    }
+
+    private static long[] counts(IntBitmap[] bitmaps, IntBitmap selection) {
+        long[] counts = new long[bitmaps.length];
+        for (int i = 0; i < bitmaps.length; i++) {
+            counts[i] = selection == null ? bitmaps[i].cardinality()
+                                          : IntBitmap.andCardinality(bitmaps[i], selection);
+        }
+        return counts;
+    }
+
+    private void insert(Alert alert) {
+        byCategory[alert.getCategory().ordinal()].add(alert.getId());
+        byUrgency[alert.getUrgency().ordinal()].add(alert.getId());
+        byStatus[alert.getAlertStatus().ordinal()].add(alert.getId());
+    }
+
+    private void clear() {
+        for (IntBitmap[] bitmaps : Arrays.asList(byCategory, byUrgency, byStatus)) {
+            for (IntBitmap bitmap : bitmaps) {
+                bitmap.clear();
+            }
+        }
+    }
+
+    private static IntBitmap[] newBitmaps(int count) {
+        IntBitmap[] bitmaps = new IntBitmap[count];
+        for (int i = 0; i < count; i++) {
+            bitmaps[i] = new IntBitmap();
+        }
+        return bitmaps;
+    }
+
+    // Counts by category, urgency and status over some set of alerts
+    static final class Facets {
+        private final long total;
+        private final long[] categories;
+        private final long[] urgencies;
+        private final long[] statuses;
+
+        Facets(long total, long[] categories, long[] urgencies, long[] statuses) {
+            this.total = total;
+            this.categories = categories;
+            this.urgencies = urgencies;
+            this.statuses = statuses;
+        }
+
+        // Facets counted one alert at a time, for sets the bitmaps cannot select
+        static Facets of(Iterable<Alert> alerts) {
+            long total = 0;
+            long[] categories = new long[CATEGORIES.length];
+            long[] urgencies = new long[URGENCIES.length];
+            long[] statuses = new long[STATUSES.length];
+            for (Alert alert : alerts) {
+                total++;
+                categories[alert.getCategory().ordinal()]++;
+                urgencies[alert.getUrgency().ordinal()]++;
+                statuses[alert.getAlertStatus().ordinal()]++;
+            }
+            return new Facets(total, categories, urgencies, statuses);
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        // Non-zero counts in declaration order
+        public Map<AlertCategory, Long> getCategoryCounts() {
+            return toMap(AlertCategory.class, CATEGORIES, categories);
+        }
+
+        public Map<Urgency, Long> getUrgencyCounts() {
+            return toMap(Urgency.class, URGENCIES, urgencies);
+        }
+
+        public Map<AlertStatus, Long> getStatusCounts() {
+            return toMap(AlertStatus.class, STATUSES, statuses);
+        }
+
+        private static <E extends Enum<E>> Map<E, Long> toMap(Class<E> type, E[] keys, long[] counts) {
+            Map<E, Long> map = new EnumMap<>(type);
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] > 0) {
+                    map.put(keys[i], counts[i]);
+                }
+            }
+            return map;
+        }
+    }
+}
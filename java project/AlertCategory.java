@@ -0,0 +1,5 @@
+// Enum for alert categories
+enum AlertCategory {
+    WATER_LEAK, POTHOLE, LOST_PET, POWER_OUTAGE, 
+    STREET_LIGHT, GARBAGE, NOISE, OTHER
+}
@@ -0,0 +1,431 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Groups repeated reports of one incident, such as a street full of POWER_OUTAGE alerts,
+// into clusters as they arrive. A new alert joins the most similar cluster with the same
+// category and normalized location that has a report within the time window of it and
+// whose first title resembles its own (MinHash estimate of the Jaccard similarity of
+// their title trigrams); otherwise it starts a cluster of its own. Clusters are found by
+// a hash lookup on category and location, and only the most recent few under that key
+// are kept for comparison, so linking and removal cost the same however many alerts exist.
+//
+// Clusters are derived from the alerts alone and rebuilt on load, so they need no
+// storage of their own. Kept current by store callbacks; safe for concurrent reads.
+class AlertClusters implements AlertListener {
+    static final Duration DEFAULT_WINDOW = Duration.ofHours(2);
+    static final double DEFAULT_MIN_SIMILARITY = 0.25;
+
+    private static final int SIGNATURE_SIZE = 32;
+    // Clusters compared per new alert, newest first
+    private static final int MAX_CANDIDATES = 16;
+    private static final Map<String, String> ABBREVIATIONS = new HashMap<>();
+
+    static {
+        String[][] pairs = {
+            {"street", "st"}, {"avenue", "ave"}, {"road", "rd"}, {"drive", "dr"}, {"lane", "ln"},
+            {"boulevard", "blvd"}, {"court", "ct"}, {"place", "pl"}, {"square", "sq"},
+            {"north", "n"}, {"south", "s"}, {"east", "e"}, {"west", "w"}
+        };
+        for (String[] pair : pairs) {
+            ABBREVIATIONS.put(pair[0], pair[1]);
+        }
+    }
+
+    private final long windowSeconds;
+    private final double minSimilarity;
+    // The newest MAX_CANDIDATES clusters per key, oldest first; older ones can no longer
+    // be joined and are left to byId
+    private final Map<String, Deque<Cluster>> byKey = new HashMap<>();
+    private final Map<Integer, Cluster> byId = new HashMap<>();
+    private final IntIntHashMap clusterOf = new IntIntHashMap();
+    // Each alert's slot in its cluster's members
+    private final IntIntHashMap slotOf = new IntIntHashMap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long alertCount;
+
+    public AlertClusters() {
+        this(DEFAULT_WINDOW, DEFAULT_MIN_SIMILARITY);
+    }
+
+    public AlertClusters(Duration window, double minSimilarity) {
+        if (window.isNegative() || minSimilarity < 0 || minSimilarity > 1) {
+            throw new IllegalArgumentException("Invalid clustering settings: " + window + ", " + minSimilarity);
+        }
+        this.windowSeconds = window.getSeconds();
+        this.minSimilarity = minSimilarity;
+    }
+
+    @Override
+    public void alertAdded(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            link(alert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsAdded(List<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            for (Alert alert : alerts) {
+                link(alert);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertRemoved(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            int clusterId = clusterOf.remove(alert.getId());
+            if (clusterId < 0) {
+                return;
+            }
+            alertCount--;
+            Cluster cluster = byId.get(clusterId);
+            cluster.remove(alert.getId(), slotOf);
+            if (cluster.size == 0) {
+                byId.remove(clusterId);
+                Deque<Cluster> siblings = byKey.get(cluster.key);
+                if (siblings != null && siblings.remove(cluster) && siblings.isEmpty()) {
+                    byKey.remove(cluster.key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsCleared() {
+        lock.writeLock().lock();
+        try {
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsLoaded(Iterable<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            reset();
+            for (Alert alert : alerts) {
+                link(alert);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Distinct incidents among the clustered alerts
+    public int getIncidentCount() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Alerts linked to an incident someone else reported first
+    public long getDuplicateCount() {
+        lock.readLock().lock();
+        try {
+            return alertCount - byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The incident the alert belongs to, or null for an unknown alert
+    public Incident incidentOf(int alertId) {
+        lock.readLock().lock();
+        try {
+            int clusterId = clusterOf.get(alertId);
+            return clusterId < 0 ? null : byId.get(clusterId).snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Incident incident(int clusterId) {
+        lock.readLock().lock();
+        try {
+            Cluster cluster = byId.get(clusterId);
+            return cluster == null ? null : cluster.snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The largest incidents with at least minSize reports, optionally of one category;
+    // ties go to the most recently reported
+    public List<Incident> largest(AlertCategory category, int minSize, int limit) {
+        Comparator<Cluster> order = Comparator.<Cluster>comparingInt(c -> c.size)
+            .thenComparingLong(c -> c.last).thenComparingInt(c -> c.id);
+        PriorityQueue<Cluster> top = new PriorityQueue<>(order);
+        List<Incident> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Cluster cluster : byId.values()) {
+                if (cluster.size < minSize || (category != null && cluster.category != category)) {
+                    continue;
+                }
+                if (top.size() < limit) {
+                    top.add(cluster);
+                } else if (limit > 0 && order.compare(cluster, top.peek()) > 0) {
+                    top.poll();
+                    top.add(cluster);
+                }
+            }
+            while (!top.isEmpty()) {
+                result.add(top.poll().snapshot());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // Join the best matching recent cluster or start a new one
+    private void link(Alert alert) {
+        String key = key(alert.getCategory(), alert.getLocation());
+        long time = Math.floorDiv(alert.getTimestampMillis(), 1000);
+        int[] signature = signature(alert.getTitle());
+
+        Deque<Cluster> candidates = byKey.computeIfAbsent(key, k -> new ArrayDeque<>());
+        Cluster best = null;
+        double bestSimilarity = -1;
+        for (Iterator<Cluster> newest = candidates.descendingIterator(); newest.hasNext(); ) {
+            Cluster cluster = newest.next();
+            if (time < cluster.first - windowSeconds || time > cluster.last + windowSeconds) {
+                continue;
+            }
+            double similarity = similarity(signature, cluster.signature);
+            if (similarity >= minSimilarity && similarity > bestSimilarity) {
+                best = cluster;
+                bestSimilarity = similarity;
+            }
+        }
+        if (best == null) {
+            best = new Cluster(alert.getId(), key, alert.getCategory(), alert.getLocation(), signature);
+            if (candidates.size() == MAX_CANDIDATES) {
+                candidates.removeFirst();
+            }
+            candidates.addLast(best);
+            byId.put(best.id, best);
+        }
+        best.add(alert.getId(), time, slotOf);
+        clusterOf.put(alert.getId(), best.id);
+        alertCount++;
+    }
+
+    private void reset() {
+        byKey.clear();
+        byId.clear();
+        clusterOf.clear();
+        slotOf.clear();
+        alertCount = 0;
+    }
+
+    private static String key(AlertCategory category, String location) {
+        return category.ordinal() + ":" + normalizeLocation(location);
+    }
+
+    // Lower case, punctuation dropped and common street words abbreviated, so
+    // "12 Main Street." and "12 main st" compare equal
+    static String normalizeLocation(String location) {
+        StringBuilder sb = new StringBuilder(location.length());
+        int i = 0;
+        while (i < location.length()) {
+            if (!Character.isLetterOrDigit(location.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < location.length() && Character.isLetterOrDigit(location.charAt(i))) {
+                i++;
+            }
+            String word = location.substring(start, i).toLowerCase(Locale.ROOT);
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(ABBREVIATIONS.getOrDefault(word, word));
+        }
+        return sb.toString();
+    }
+
+    // MinHash signature over the case-folded character trigrams of the text. Each of the
+    // hash functions is derived from two base hashes of the trigram (h1 + i * h2).
+    static int[] signature(String text) {
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        String folded = " " + TrigramIndex.fold(text.trim()) + " ";
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            long gram = ((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2);
+            long hash = mix(gram);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int k = 0; k < SIGNATURE_SIZE; k++) {
+                int value = (h1 + k * h2) & Integer.MAX_VALUE;
+                if (value < signature[k]) {
+                    signature[k] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    // Estimated Jaccard similarity: the share of hash functions whose minimum agrees
+    static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / a.length;
+    }
+
+    // 64-bit finalizer from MurmurHash3
+    static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    // Mutable cluster state, only touched under the lock. Members stay in arrival order;
+    // a removed one leaves an empty slot, and once half the slots are empty the rest
+    // move up, so removal is O(1) averaged over removals
+    private static final class Cluster {
+        private static final int EMPTY = -1;
+
+        final int id;
+        final String key;
+        final AlertCategory category;
+        final String location;
+        final int[] signature;
+        int[] members = new int[2];
+        // Slots used, and how many of them still hold a member
+        int slots;
+        int size;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+
+        Cluster(int id, String key, AlertCategory category, String location, int[] signature) {
+            this.id = id;
+            this.key = key;
+            this.category = category;
+            this.location = location;
+            this.signature = signature;
+        }
+
+        void add(int alertId, long time, IntIntHashMap slotOf) {
+            if (slots == members.length) {
+                members = Arrays.copyOf(members, slots * 2);
+            }
+            slotOf.put(alertId, slots);
+            members[slots++] = alertId;
+            size++;
+            first = Math.min(first, time);
+            last = Math.max(last, time);
+        }
+
+        // The time span is left as it was; it only decides which later reports may join
+        void remove(int alertId, IntIntHashMap slotOf) {
+            members[slotOf.remove(alertId)] = EMPTY;
+            size--;
+            if (size * 2 < slots) {
+                int to = 0;
+                for (int from = 0; from < slots; from++) {
+                    if (members[from] != EMPTY) {
+                        slotOf.put(members[from], to);
+                        members[to++] = members[from];
+                    }
+                }
+                slots = to;
+            }
+        }
+
+        int[] alertIds() {
+            int[] ids = new int[size];
+            int n = 0;
+            for (int i = 0; i < slots; i++) {
+                if (members[i] != EMPTY) {
+                    ids[n++] = members[i];
+                }
+            }
+            return ids;
+        }
+
+        Incident snapshot() {
+            return new Incident(id, category, location, alertIds(),
+                                LocalDateTime.ofEpochSecond(first, 0, ZoneOffset.UTC),
+                                LocalDateTime.ofEpochSecond(last, 0, ZoneOffset.UTC));
+        }
+    }
+
+    // A cluster as it was when read: its reports in arrival order and their time span
+    static final class Incident {
+        private final int id;
+        private final AlertCategory category;
+        private final String location;
+        private final int[] alertIds;
+        private final LocalDateTime firstReported;
+        private final LocalDateTime lastReported;
+
+        Incident(int id, AlertCategory category, String location, int[] alertIds,
+                 LocalDateTime firstReported, LocalDateTime lastReported) {
+            this.id = id;
+            this.category = category;
+            this.location = location;
+            this.alertIds = alertIds;
+            this.firstReported = firstReported;
+            this.lastReported = lastReported;
+        }
+
+        // The ID of the alert that started the incident
+        public int getId() {
+            return id;
+        }
+
+        public AlertCategory getCategory() {
+            return category;
+        }
+
+        // As given by the first report
+        public String getLocation() {
+            return location;
+        }
+
+        public int[] getAlertIds() {
+            return alertIds.clone();
+        }
+
+        public int getSize() {
+            return alertIds.length;
+        }
+
+        public LocalDateTime getFirstReported() {
+            return firstReported;
+        }
+
+        public LocalDateTime getLastReported() {
+            return lastReported;
+        }
+    }
+}
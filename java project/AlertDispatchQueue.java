@@ -0,0 +1,150 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Live triage queue for admins: every OPEN alert, most urgent first and longest waiting
+// first within an urgency. Unlike the display order of UrgencyComparator, which shows
+// the newest first, the oldest report is the next to be handled here.
+//
+// With an escalation interval, waiting counts towards urgency: each level is worth one
+// interval of age, so a MEDIUM alert reported more than an interval before a HIGH one
+// is handled first. The rank is fixed when the alert joins the queue, so aging needs no
+// re-sorting.
+//
+// Alerts are kept in a concurrent skip list, so any number of admins can take the next
+// alert at once in O(log n) without a lock. Kept current by store callbacks: an alert
+// leaves the queue as soon as it stops being OPEN and rejoins if reopened.
+class AlertDispatchQueue implements AlertListener {
+    static final Duration DEFAULT_ESCALATION = Duration.ofHours(12);
+
+    private static final Comparator<Entry> ORDER = (e1, e2) -> {
+        int compare = Long.compare(e1.rank, e2.rank);
+        if (compare == 0) {
+            compare = Long.compare(e1.tieBreak, e2.tieBreak);
+        }
+        return compare != 0 ? compare : Integer.compare(e1.alert.getId(), e2.alert.getId());
+    };
+
+    private final long escalationMillis;
+    private final ConcurrentSkipListSet<Entry> waiting = new ConcurrentSkipListSet<>(ORDER);
+    // The queued entry of each waiting alert; whoever removes it here owns the alert
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Integer> inProgress = ConcurrentHashMap.newKeySet();
+
+    public AlertDispatchQueue() {
+        this(DEFAULT_ESCALATION);
+    }
+
+    // Duration.ZERO orders strictly by urgency, then age
+    public AlertDispatchQueue(Duration escalation) {
+        if (escalation.isNegative() || escalation.toDays() > 365_000) {
+            throw new IllegalArgumentException("Invalid escalation interval: " + escalation);
+        }
+        this.escalationMillis = escalation.toMillis();
+    }
+
+    @Override
+    public void alertAdded(Alert alert) {
+        track(alert);
+    }
+
+    @Override
+    public void statusChanged(Alert alert, String previousStatus) {
+        untrack(alert.getId());
+        track(alert);
+    }
+
+    @Override
+    public void alertRemoved(Alert alert) {
+        untrack(alert.getId());
+    }
+
+    @Override
+    public void alertsCleared() {
+        entries.clear();
+        waiting.clear();
+        inProgress.clear();
+    }
+
+    @Override
+    public void alertsLoaded(Iterable<Alert> alerts) {
+        alertsCleared();
+        for (Alert alert : alerts) {
+            track(alert);
+        }
+    }
+
+    // Remove and return the next alert to handle, or null when none is waiting. The
+    // alert is still OPEN; the caller is expected to move it on.
+    public Alert poll() {
+        Entry entry;
+        while ((entry = waiting.pollFirst()) != null) {
+            // Lost to a status change or removal that got to the entry first
+            if (entries.remove(entry.alert.getId(), entry)) {
+                return entry.alert;
+            }
+        }
+        return null;
+    }
+
+    // The first waiting alerts in the order they would be handed out
+    public List<Alert> peek(int limit) {
+        List<Alert> next = new ArrayList<>(Math.min(limit, 64));
+        for (Entry entry : waiting) {
+            if (next.size() >= limit) {
+                break;
+            }
+            next.add(entry.alert);
+        }
+        return next;
+    }
+
+    public int getWaitingCount() {
+        return entries.size();
+    }
+
+    public int getInProgressCount() {
+        return inProgress.size();
+    }
+
+    private void track(Alert alert) {
+        AlertStatus status = alert.getAlertStatus();
+        if (status == AlertStatus.OPEN) {
+            Entry entry = new Entry(alert);
+            if (entries.putIfAbsent(alert.getId(), entry) == null) {
+                waiting.add(entry);
+            }
+        } else if (status == AlertStatus.IN_PROGRESS) {
+            inProgress.add(alert.getId());
+        }
+    }
+
+    private void untrack(int id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            waiting.remove(entry);
+        }
+        inProgress.remove(id);
+    }
+
+    // An alert's place in the queue, fixed when it joins
+    private final class Entry {
+        final Alert alert;
+        final long rank;
+        final long tieBreak;
+
+        Entry(Alert alert) {
+            this.alert = alert;
+            int level = alert.getUrgency().getLevel();
+            if (escalationMillis == 0) {
+                rank = -level;
+                tieBreak = alert.getTimestampMillis();
+            } else {
+                // Reported time moved earlier by one interval per urgency level
+                rank = alert.getTimestampMillis() - level * escalationMillis;
+                tieBreak = -level;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Streams alerts as a text report, CSV or JSON Lines, optionally gzip-compressed.
+// Records are rendered into one reusable buffer and written out in large blocks, so
+// exporting millions of alerts is limited by the disk or network, not by formatting.
+class AlertExporter {
+    enum Format {
+        TEXT("txt"), CSV("csv"), JSONL("jsonl");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    static final String CSV_HEADER =
+        "id,title,description,category,urgency,location,reportedBy,timestamp,status,latitude,longitude";
+    private static final int FLUSH_THRESHOLD = 256 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 1024 * 1024;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final Format format;
+    private final Predicate<Alert> filter;
+    private final boolean gzip;
+
+    public AlertExporter(Format format, Predicate<Alert> filter, boolean gzip) {
+        this.format = format;
+        this.filter = filter == null ? alert -> true : filter;
+        this.gzip = gzip;
+    }
+
+    // Alerts matching every given criterion; null criteria match anything and the
+    // time range includes both ends
+    static Predicate<Alert> filter(AlertCategory category, Urgency urgency, AlertStatus status,
+                                   LocalDateTime from, LocalDateTime to) {
+        long fromMillis = from == null ? Long.MIN_VALUE : AlertLog.toEpochMillis(from);
+        long toMillis = to == null ? Long.MAX_VALUE : AlertLog.toEpochMillis(to);
+        return alert -> (category == null || alert.getCategory() == category)
+            && (urgency == null || alert.getUrgency() == urgency)
+            && (status == null || alert.getAlertStatus() == status)
+            && alert.getTimestampMillis() >= fromMillis && alert.getTimestampMillis() <= toMillis;
+    }
+
+    // Write the export to a temporary file and move it into place, so a failed export
+    // never leaves a truncated file behind. Returns the number of alerts written.
+    public long exportTo(File file, Iterable<Alert> alerts) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        long count;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel),
+                                                         OUTPUT_BUFFER_SIZE)) {
+            count = write(out, alerts);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    // Stream the export to an open stream, which is flushed but left open.
+    // Returns the number of alerts written.
+    public long write(OutputStream out, Iterable<Alert> alerts) throws IOException {
+        OutputStream target = gzip ? new FastGzipOutputStream(out) : out;
+        Writer writer = new OutputStreamWriter(target, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder(FLUSH_THRESHOLD + 4096);
+        char[] chunk = new char[0];
+
+        if (format == Format.TEXT) {
+            // The total goes in a trailer, so the records stream in one pass like the
+            // other formats' rather than being gathered first to count them
+            sb.append("====================================\n");
+            sb.append("COMMUNITY ALERT SYSTEM - DATA EXPORT\n");
+            sb.append("Export Date: ").append(LocalDateTime.now()).append('\n');
+            sb.append("====================================\n\n");
+        } else if (format == Format.CSV) {
+            sb.append(CSV_HEADER).append("\r\n");
+        }
+
+        long count = 0;
+        for (Alert alert : alerts) {
+            if (!filter.test(alert)) {
+                continue;
+            }
+            appendRecord(sb, alert);
+            count++;
+            if (sb.length() >= FLUSH_THRESHOLD) {
+                chunk = drain(sb, chunk, writer);
+            }
+        }
+        if (format == Format.TEXT) {
+            sb.append("====================================\n");
+            sb.append("Total Alerts: ").append(count).append('\n');
+            sb.append("====================================\n");
+        }
+        drain(sb, chunk, writer);
+        writer.flush();
+        if (gzip) {
+            ((GZIPOutputStream) target).finish();
+        }
+        out.flush();
+        return count;
+    }
+
+    private void appendRecord(StringBuilder sb, Alert alert) {
+        switch (format) {
+            case TEXT:
+                alert.appendTo(sb);
+                sb.append("\n\n");
+                break;
+            case CSV:
+                appendCsvRecord(sb, alert);
+                break;
+            case JSONL:
+                AlertJson.appendAlert(sb, alert);
+                sb.append('\n');
+                break;
+        }
+    }
+
+    private static void appendCsvRecord(StringBuilder sb, Alert alert) {
+        sb.append(alert.getId()).append(',');
+        appendCsvField(sb, alert.getTitle());
+        sb.append(',');
+        appendCsvField(sb, alert.getDescription());
+        sb.append(',').append(alert.getCategory()).append(',').append(alert.getUrgency()).append(',');
+        appendCsvField(sb, alert.getLocation());
+        sb.append(',');
+        appendCsvField(sb, alert.getReportedBy());
+        sb.append(',');
+        AlertJson.TIMESTAMP_FORMAT.formatTo(alert.getTimestamp(), sb);
+        sb.append(',').append(alert.getStatus()).append(',');
+        if (alert.hasCoordinates()) {
+            sb.append(alert.getLatitude()).append(',').append(alert.getLongitude());
+        } else {
+            sb.append(',');
+        }
+        sb.append("\r\n");
+    }
+
+    // RFC 4180 quoting: fields holding a comma, quote or line break are quoted and
+    // their quotes doubled
+    static void appendCsvField(StringBuilder sb, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    // Hand the buffered text to the writer and empty the buffer, reusing one char array
+    private static char[] drain(StringBuilder sb, char[] chunk, Writer writer) throws IOException {
+        if (chunk.length < sb.length()) {
+            chunk = new char[sb.capacity()];
+        }
+        sb.getChars(0, sb.length(), chunk, 0);
+        writer.write(chunk, 0, sb.length());
+        sb.setLength(0);
+        return chunk;
+    }
+
+    // Exports are large and short-lived, so favour compression speed over ratio
+    private static class FastGzipOutputStream extends GZIPOutputStream {
+        FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Uniform latitude/longitude grid over alerts that have coordinates, supporting radius,
+// bounding-box and k-nearest queries. A query visits only the cells its area overlaps,
+// or every occupied cell when that is cheaper, so cost follows the size of the area and
+// not the number of alerts. Kept current by store callbacks; safe for concurrent reads.
+class AlertGeoIndex implements AlertListener {
+    static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    static final double DEFAULT_CELL_DEGREES = 0.01;
+
+    private final double cellDegrees;
+    private final int latCells;
+    private final int lonCells;
+    private final Map<Long, List<Alert>> cells = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    public AlertGeoIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    public AlertGeoIndex(double cellDegrees) {
+        if (!(cellDegrees > 0 && cellDegrees <= 90)) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellDegrees);
+        }
+        this.cellDegrees = cellDegrees;
+        this.latCells = (int) Math.ceil(180 / cellDegrees);
+        this.lonCells = (int) Math.ceil(360 / cellDegrees);
+    }
+
+    @Override
+    public void alertAdded(Alert alert) {
+        if (!alert.hasCoordinates()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            insert(alert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsAdded(List<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            for (Alert alert : alerts) {
+                if (alert.hasCoordinates()) {
+                    insert(alert);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertRemoved(Alert alert) {
+        if (!alert.hasCoordinates()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long key = cellKey(latCell(alert.getLatitude()), lonCell(alert.getLongitude()));
+            List<Alert> cell = cells.get(key);
+            if (cell != null && cell.remove(alert)) {
+                size--;
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsCleared() {
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsLoaded(Iterable<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            size = 0;
+            for (Alert alert : alerts) {
+                if (alert.hasCoordinates()) {
+                    insert(alert);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Alerts within the given distance of a point, nearest first
+    public List<Alert> withinRadius(double latitude, double longitude, double meters) {
+        Alert.checkCoordinates(latitude, longitude);
+        if (!(meters >= 0)) {
+            throw new IllegalArgumentException("Invalid radius: " + meters);
+        }
+        double dLat = Math.toDegrees(meters / EARTH_RADIUS_METERS);
+        double minLat = Math.max(-90, latitude - dLat);
+        double maxLat = Math.min(90, latitude + dLat);
+        // Widest longitude span of the circle, taken at the latitude furthest from the equator
+        double widest = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        double dLon = widest <= 0 ? 180 : Math.min(180, dLat / widest);
+
+        List<Neighbor> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            visit(minLat, maxLat, longitude - dLon, longitude + dLon, alert -> {
+                double distance = distanceMeters(latitude, longitude,
+                                                 alert.getLatitude(), alert.getLongitude());
+                if (distance <= meters) {
+                    found.add(new Neighbor(alert, distance));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        found.sort(Comparator.comparingDouble(n -> n.distance));
+        return toAlerts(found);
+    }
+
+    // Alerts inside a latitude/longitude box; minLongitude > maxLongitude means the box
+    // crosses the antimeridian
+    public List<Alert> withinBox(double minLatitude, double minLongitude,
+                                 double maxLatitude, double maxLongitude) {
+        Alert.checkCoordinates(minLatitude, minLongitude);
+        Alert.checkCoordinates(maxLatitude, maxLongitude);
+        if (minLatitude > maxLatitude) {
+            throw new IllegalArgumentException("Minimum latitude is above maximum latitude");
+        }
+        boolean wraps = minLongitude > maxLongitude;
+        double lonSpan = wraps ? maxLongitude + 360 : maxLongitude;
+
+        List<Alert> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            visit(minLatitude, maxLatitude, minLongitude, lonSpan, alert -> {
+                double lat = alert.getLatitude();
+                double lon = alert.getLongitude();
+                boolean inLon = wraps
+                    ? lon >= minLongitude || lon <= maxLongitude
+                    : lon >= minLongitude && lon <= maxLongitude;
+                if (inLon && lat >= minLatitude && lat <= maxLatitude) {
+                    found.add(alert);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    // The k alerts closest to a point, nearest first. Searches square rings of cells
+    // outward from the point's cell until no unvisited cell can beat the k-th best.
+    public List<Alert> nearest(double latitude, double longitude, int k) {
+        Alert.checkCoordinates(latitude, longitude);
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Neighbor> best = new PriorityQueue<>(
+            Comparator.comparingDouble((Neighbor n) -> n.distance).reversed());
+        lock.readLock().lock();
+        try {
+            int centerLat = latCell(latitude);
+            int centerLon = lonCell(longitude);
+            double cellMeters = Math.toRadians(cellDegrees) * EARTH_RADIUS_METERS;
+            for (int ring = 0; ; ring++) {
+                int side = 2 * ring + 1;
+                if (k >= size || (long) side * side > cells.size() || side >= lonCells) {
+                    // The ring has grown past the occupied cells; finish with a full pass
+                    best.clear();
+                    for (List<Alert> cell : cells.values()) {
+                        for (Alert alert : cell) {
+                            offer(best, k, alert, latitude, longitude);
+                        }
+                    }
+                    break;
+                }
+                for (int dy = -ring; dy <= ring; dy++) {
+                    int lat = centerLat + dy;
+                    if (lat < 0 || lat >= latCells) {
+                        continue;
+                    }
+                    int step = Math.abs(dy) == ring ? 1 : 2 * ring;
+                    for (int dx = -ring; dx <= ring; dx += Math.max(1, step)) {
+                        List<Alert> cell = cells.get(cellKey(lat, Math.floorMod(centerLon + dx, lonCells)));
+                        if (cell != null) {
+                            for (Alert alert : cell) {
+                                offer(best, k, alert, latitude, longitude);
+                            }
+                        }
+                    }
+                }
+                // Anything outside this ring is at least 'ring' whole cells away; east-west
+                // cells shrink with latitude, so use the narrowest width in reach
+                double edgeLat = Math.min(90, Math.abs(latitude) + (ring + 1) * cellDegrees);
+                double bound = ring * cellMeters * Math.cos(Math.toRadians(edgeLat));
+                if (best.size() == k && best.peek().distance <= bound) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Neighbor> ordered = new ArrayList<>(best);
+        ordered.sort(Comparator.comparingDouble(n -> n.distance));
+        return toAlerts(ordered);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Great-circle distance using the haversine formula
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                 + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                   * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static void offer(PriorityQueue<Neighbor> best, int k, Alert alert,
+                              double latitude, double longitude) {
+        double distance = distanceMeters(latitude, longitude, alert.getLatitude(), alert.getLongitude());
+        if (best.size() < k) {
+            best.add(new Neighbor(alert, distance));
+        } else if (distance < best.peek().distance) {
+            best.poll();
+            best.add(new Neighbor(alert, distance));
+        }
+    }
+
+    // Call the visitor for every alert in cells overlapping the latitude range and the
+    // longitude range [fromLon, toLon], where toLon may exceed 180 to wrap around
+    private void visit(double minLat, double maxLat, double fromLon, double toLon,
+                       Consumer<Alert> visitor) {
+        int lat0 = latCell(minLat);
+        int lat1 = latCell(maxLat);
+        long lonSpan = (long) Math.floor((toLon + 180) / cellDegrees)
+                     - (long) Math.floor((fromLon + 180) / cellDegrees) + 1;
+        lonSpan = Math.min(lonSpan, lonCells);
+        int lon0 = lonCell(fromLon);
+
+        if ((long) (lat1 - lat0 + 1) * lonSpan > cells.size()) {
+            // Cheaper to walk the occupied cells than to probe every cell in range
+            for (List<Alert> cell : cells.values()) {
+                for (Alert alert : cell) {
+                    visitor.accept(alert);
+                }
+            }
+            return;
+        }
+        for (int lat = lat0; lat <= lat1; lat++) {
+            for (long i = 0; i < lonSpan; i++) {
+                List<Alert> cell = cells.get(cellKey(lat, (int) ((lon0 + i) % lonCells)));
+                if (cell != null) {
+                    for (Alert alert : cell) {
+                        visitor.accept(alert);
+                    }
+                }
+            }
+        }
+    }
+
+    private void insert(Alert alert) {
+        long key = cellKey(latCell(alert.getLatitude()), lonCell(alert.getLongitude()));
+        cells.computeIfAbsent(key, k -> new ArrayList<>(4)).add(alert);
+        size++;
+    }
+
+    private int latCell(double latitude) {
+        return Math.min(latCells - 1, Math.max(0, (int) Math.floor((latitude + 90) / cellDegrees)));
+    }
+
+    private int lonCell(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / cellDegrees), lonCells);
+    }
+
+    private long cellKey(int latCell, int lonCell) {
+        return (long) latCell * lonCells + lonCell;
+    }
+
+    private static List<Alert> toAlerts(List<Neighbor> neighbors) {
+        List<Alert> alerts = new ArrayList<>(neighbors.size());
+        for (Neighbor neighbor : neighbors) {
+            alerts.add(neighbor.alert);
+        }
+        return alerts;
+    }
+
+    private static class Neighbor {
+        final Alert alert;
+        final double distance;
+
+        Neighbor(Alert alert, double distance) {
+            this.alert = alert;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,628 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Append-only status history of every alert: its status when first seen and each change
+// after, with when and by whom. Alert only holds its current status; this keeps the
+// rest, for auditing one alert and for measuring how long alerts wait for a response
+// and for resolution.
+//
+// Changes are appended to a file of their own next to the alert log and held in memory
+// as parallel primitive arrays of 17 bytes a change, each alert's changes chained newest
+// first. Response and resolution times go into a LatencyHistogram per category and
+// urgency as they happen, so their percentiles over millions of changes merge a few
+// small histograms and never touch an Alert, on the heap or archived.
+//
+// Record: [byte type][int alert id][long epoch millis][byte status], then
+// [byte category][byte urgency] for a first sighting or [int actor] for a change.
+// Actors are numbered in order of first appearance by an ACTOR record
+// [byte type][int number][int length][UTF-8 name] written before the number is used.
+// A torn tail is truncated on open.
+//
+// Kept current by store callbacks, which run under the store's write lock, so they only
+// append records to a buffer in memory; a writer thread of its own moves the buffer to
+// the file. Safe for concurrent reads.
+class AlertHistory implements AlertListener, Closeable {
+    private static final int MAGIC = 0x414C4853; // "ALHS"
+    private static final int VERSION = 1;
+
+    // An alert first seen, with its status then and its report time
+    private static final byte REPORTED = 1;
+    // A status change as it happened
+    private static final byte CHANGED = 2;
+    // A change only noticed when alerts were loaded: made before history was kept, or
+    // on a leader before this follower's snapshot. Timed when noticed, so never measured.
+    private static final byte RECONCILED = 3;
+    private static final byte ACTOR = 4;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_ACTOR_LENGTH = 64 * 1024;
+    private static final int NO_ACTOR = -1;
+    private static final int NONE = -1;
+    // Flag on a change's status byte
+    private static final int RECONCILED_FLAG = 0x80;
+    // Flags per alert, so only its first response and first resolution are measured
+    private static final byte RESPONDED = 1;
+    private static final byte RESOLVED = 2;
+    private static final int URGENCIES = Urgency.values().length;
+    private static final int CELLS = AlertCategory.values().length * URGENCIES;
+
+    private final File file;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Records not yet handed to the writer; null until opened, or after a write failed,
+    // and history is then kept in memory only
+    private DataOutputStream out;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+    // Whether the writer has been asked to write, and to start the file over first
+    private boolean writeQueued;
+    private boolean restartQueued;
+    // Only touched on the writer thread once opened
+    private FileOutputStream fileOut;
+    private ExecutorService writer;
+
+    // Per alert, by slot
+    private final IntIntHashMap slots = new IntIntHashMap();
+    private int alertCount;
+    private long[] reportedAt = new long[1024];
+    private byte[] cells = new byte[1024];
+    private byte[] alertFlags = new byte[1024];
+    private int[] latest = new int[1024];
+
+    // Per change, in order of arrival
+    private int changeCount;
+    private long[] changedAt = new long[4096];
+    private byte[] statuses = new byte[4096];
+    private int[] changeActors = new int[4096];
+    private int[] previousChanges = new int[4096];
+
+    private final List<String> actors = new ArrayList<>();
+    private final Map<String, Integer> actorNumbers = new HashMap<>();
+
+    // Times from report to first leaving OPEN, and to first RESOLVED or CLOSED, by
+    // category x urgency
+    private final LatencyHistogram[] responseTimes = new LatencyHistogram[CELLS];
+    private final LatencyHistogram[] resolutionTimes = new LatencyHistogram[CELLS];
+
+    public AlertHistory(File file) {
+        this.file = file;
+        for (int i = 0; i < CELLS; i++) {
+            responseTimes[i] = new LatencyHistogram();
+            resolutionTimes[i] = new LatencyHistogram();
+        }
+    }
+
+    // Read back the history written so far and append to it from now on
+    public void open() throws IOException {
+        lock.writeLock().lock();
+        try {
+            long validLength = file.exists() ? replay() : 0;
+            fileOut = new FileOutputStream(file, validLength > 0);
+            out = new DataOutputStream(pending);
+            if (validLength == 0) {
+                writeHeader();
+            }
+            writer = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "alert-history");
+                t.setDaemon(true);
+                return t;
+            });
+            flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertAdded(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            report(alert, alert.getAlertStatus());
+            flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsAdded(List<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            for (Alert alert : alerts) {
+                report(alert, alert.getAlertStatus());
+            }
+            flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void statusChanged(Alert alert, String previousStatus, String actor) {
+        lock.writeLock().lock();
+        try {
+            // Only an alert added while history could not be kept is unknown here
+            report(alert, AlertStatus.valueOf(previousStatus));
+            int actorNumber = actorNumber(actor);
+            long now = now();
+            write(CHANGED, alert.getId(), now, alert.getAlertStatus());
+            writeInt(actorNumber);
+            change(slots.get(alert.getId()), now, alert.getAlertStatus(), actorNumber, false);
+            flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // History outlives deletions and archiving, so removals are not recorded
+    @Override
+    public void alertsCleared() {
+        lock.writeLock().lock();
+        try {
+            reset();
+            if (out != null) {
+                // Records the writer has not taken yet belong to the history cleared
+                pending.reset();
+                restartQueued = true;
+                writeHeader();
+                flush();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Record alerts not seen before, and the current status of any whose history ends
+    // in a different one
+    @Override
+    public void alertsLoaded(Iterable<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            long now = now();
+            for (Alert alert : alerts) {
+                int slot = slots.get(alert.getId());
+                if (slot < 0) {
+                    report(alert, alert.getAlertStatus());
+                } else if ((statuses[latest[slot]] & ~RECONCILED_FLAG) != alert.getAlertStatus().ordinal()) {
+                    write(RECONCILED, alert.getId(), now, alert.getAlertStatus());
+                    writeInt(NO_ACTOR);
+                    change(slot, now, alert.getAlertStatus(), NO_ACTOR, true);
+                }
+            }
+            flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The alert's status history, oldest first; empty if it was never seen
+    public List<Transition> of(int alertId) {
+        lock.readLock().lock();
+        try {
+            int slot = slots.get(alertId);
+            if (slot < 0) {
+                return Collections.emptyList();
+            }
+            List<Transition> transitions = new ArrayList<>();
+            for (int change = latest[slot]; change != NONE; change = previousChanges[change]) {
+                int previous = previousChanges[change];
+                int actor = changeActors[change];
+                transitions.add(new Transition(previous == NONE ? null : status(previous), status(change),
+                                               changedAt[change], actor == NO_ACTOR ? null : actors.get(actor),
+                                               (statuses[change] & RECONCILED_FLAG) != 0));
+            }
+            Collections.reverse(transitions);
+            return transitions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Times from report to the first change out of OPEN, optionally of one category and
+    // urgency, in nanoseconds
+    public LatencyHistogram responseTimes(AlertCategory category, Urgency urgency) {
+        return merge(responseTimes, category, urgency);
+    }
+
+    // Times from report to first becoming RESOLVED or CLOSED, optionally of one category
+    // and urgency, in nanoseconds
+    public LatencyHistogram resolutionTimes(AlertCategory category, Urgency urgency) {
+        return merge(resolutionTimes, category, urgency);
+    }
+
+    public int getAlertCount() {
+        lock.readLock().lock();
+        try {
+            return alertCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Every status change kept, first sightings included
+    public int getChangeCount() {
+        lock.readLock().lock();
+        try {
+            return changeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ExecutorService stopping;
+        lock.writeLock().lock();
+        try {
+            stopping = writer;
+            writer = null;
+            out = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (stopping == null) {
+            return;
+        }
+        // Writes already queued take whatever is pending with them
+        stopping.shutdown();
+        try {
+            stopping.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fileOut.close();
+    }
+
+    // A duration in nanoseconds as e.g. "2d 4h", "3h 25m" or "42s"
+    static String describe(long nanos) {
+        long seconds = nanos / 1_000_000_000L;
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        long minutes = seconds / 60;
+        if (minutes < 60) {
+            return minutes + "m " + seconds % 60 + "s";
+        }
+        long hours = minutes / 60;
+        if (hours < 24) {
+            return hours + "h " + minutes % 60 + "m";
+        }
+        return hours / 24 + "d " + hours % 24 + "h";
+    }
+
+    private LatencyHistogram merge(LatencyHistogram[] histograms, AlertCategory category, Urgency urgency) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (int cell = 0; cell < CELLS; cell++) {
+            if ((category == null || cell / URGENCIES == category.ordinal())
+                    && (urgency == null || cell % URGENCIES == urgency.ordinal())) {
+                merged.add(histograms[cell]);
+            }
+        }
+        return merged;
+    }
+
+    // Record an alert's first sighting unless it has been seen before
+    private void report(Alert alert, AlertStatus status) {
+        if (slots.containsKey(alert.getId())) {
+            return;
+        }
+        write(REPORTED, alert.getId(), alert.getTimestampMillis(), status);
+        if (out != null) {
+            try {
+                out.writeByte(alert.getCategory().ordinal());
+                out.writeByte(alert.getUrgency().ordinal());
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+        reported(alert.getId(), alert.getTimestampMillis(), status,
+                 alert.getCategory().ordinal() * URGENCIES + alert.getUrgency().ordinal());
+    }
+
+    private void reported(int alertId, long millis, AlertStatus status, int cell) {
+        if (alertCount == latest.length) {
+            int capacity = alertCount * 2;
+            reportedAt = Arrays.copyOf(reportedAt, capacity);
+            cells = Arrays.copyOf(cells, capacity);
+            alertFlags = Arrays.copyOf(alertFlags, capacity);
+            latest = Arrays.copyOf(latest, capacity);
+        }
+        int slot = alertCount++;
+        slots.put(alertId, slot);
+        reportedAt[slot] = millis;
+        cells[slot] = (byte) cell;
+        alertFlags[slot] = 0;
+        latest[slot] = NONE;
+        change(slot, millis, status, NO_ACTOR, true);
+    }
+
+    // Chain a change onto the alert's history and measure it if it is the alert's first
+    // response or resolution; first sightings and reconciled changes set the flags only
+    private void change(int slot, long millis, AlertStatus status, int actor, boolean unmeasured) {
+        if (changeCount == changedAt.length) {
+            int capacity = changeCount * 2;
+            changedAt = Arrays.copyOf(changedAt, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            changeActors = Arrays.copyOf(changeActors, capacity);
+            previousChanges = Arrays.copyOf(previousChanges, capacity);
+        }
+        int change = changeCount++;
+        changedAt[change] = millis;
+        boolean reconciled = unmeasured && latest[slot] != NONE;
+        statuses[change] = (byte) (status.ordinal() | (reconciled ? RECONCILED_FLAG : 0));
+        changeActors[change] = actor;
+        previousChanges[change] = latest[slot];
+        latest[slot] = change;
+
+        long waited = (millis - reportedAt[slot]) * 1_000_000L;
+        if (status != AlertStatus.OPEN && (alertFlags[slot] & RESPONDED) == 0) {
+            alertFlags[slot] |= RESPONDED;
+            if (!unmeasured) {
+                responseTimes[cells[slot]].record(waited);
+            }
+        }
+        if ((status == AlertStatus.RESOLVED || status == AlertStatus.CLOSED) && (alertFlags[slot] & RESOLVED) == 0) {
+            alertFlags[slot] |= RESOLVED;
+            if (!unmeasured) {
+                resolutionTimes[cells[slot]].record(waited);
+            }
+        }
+    }
+
+    private AlertStatus status(int change) {
+        return AlertStatus.values()[statuses[change] & ~RECONCILED_FLAG];
+    }
+
+    private int actorNumber(String actor) {
+        if (actor == null) {
+            return NO_ACTOR;
+        }
+        Integer number = actorNumbers.get(actor);
+        if (number != null) {
+            return number;
+        }
+        number = actors.size();
+        actors.add(actor);
+        actorNumbers.put(actor, number);
+        if (out != null) {
+            byte[] name = actor.getBytes(StandardCharsets.UTF_8);
+            try {
+                out.writeByte(ACTOR);
+                out.writeInt(number);
+                out.writeInt(name.length);
+                out.write(name);
+            } catch (IOException e) {
+                failed(e);
+            }
+        }
+        return number;
+    }
+
+    private void reset() {
+        slots.clear();
+        alertCount = 0;
+        changeCount = 0;
+        actors.clear();
+        actorNumbers.clear();
+        for (int i = 0; i < CELLS; i++) {
+            responseTimes[i].reset();
+            resolutionTimes[i].reset();
+        }
+    }
+
+    private void write(byte type, int alertId, long millis, AlertStatus status) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeByte(type);
+            out.writeInt(alertId);
+            out.writeLong(millis);
+            out.writeByte(status.ordinal());
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void writeInt(int value) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void writeHeader() {
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    // Have the writer hand each callback's records to the OS, unless it is already due
+    // to. Unlike the alert log they are not forced to disk, as losing the last moment of
+    // history loses no alert.
+    private void flush() {
+        if (out == null || writeQueued) {
+            return;
+        }
+        writeQueued = true;
+        writer.execute(this::writePending);
+    }
+
+    // On the writer thread: take what is pending and write it outside the lock, so a
+    // slow disk holds up no store mutation
+    private void writePending() {
+        byte[] records;
+        boolean restart;
+        lock.writeLock().lock();
+        try {
+            records = pending.toByteArray();
+            pending.reset();
+            restart = restartQueued;
+            writeQueued = false;
+            restartQueued = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            if (restart) {
+                fileOut.close();
+                fileOut = new FileOutputStream(file);
+            }
+            fileOut.write(records);
+        } catch (IOException e) {
+            lock.writeLock().lock();
+            try {
+                failed(e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Stop writing rather than leave a gap in the middle of the file
+    private void failed(IOException e) {
+        System.out.println("Error saving status history: " + e.getMessage());
+        out = null;
+        pending.reset();
+    }
+
+    // Apply every whole record in the file; returns the length they take up, or 0 when
+    // the file has to be started over
+    private long replay() throws IOException {
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a status history file: " + file.getName());
+            }
+            validLength = HEADER_SIZE;
+            while (true) {
+                byte type = in.readByte();
+                if (type == ACTOR) {
+                    int number = in.readInt();
+                    int length = in.readInt();
+                    if (number != actors.size() || length < 0 || length > MAX_ACTOR_LENGTH) {
+                        break;
+                    }
+                    byte[] name = new byte[length];
+                    in.readFully(name);
+                    String actor = new String(name, StandardCharsets.UTF_8);
+                    actors.add(actor);
+                    actorNumbers.put(actor, number);
+                    validLength += 9 + length;
+                    continue;
+                }
+                if (type != REPORTED && type != CHANGED && type != RECONCILED) {
+                    break;
+                }
+                int alertId = in.readInt();
+                long millis = in.readLong();
+                int status = in.readUnsignedByte();
+                if (status >= AlertStatus.values().length) {
+                    break;
+                }
+                if (type == REPORTED) {
+                    int category = in.readUnsignedByte();
+                    int urgency = in.readUnsignedByte();
+                    if (category >= AlertCategory.values().length || urgency >= URGENCIES) {
+                        break;
+                    }
+                    if (!slots.containsKey(alertId)) {
+                        reported(alertId, millis, AlertStatus.values()[status], category * URGENCIES + urgency);
+                    }
+                    validLength += 16;
+                } else {
+                    int actor = in.readInt();
+                    if (actor < NO_ACTOR || actor >= actors.size()) {
+                        break;
+                    }
+                    int slot = slots.get(alertId);
+                    if (slot >= 0) {
+                        change(slot, millis, AlertStatus.values()[status], actor, type == RECONCILED);
+                    }
+                    validLength += 18;
+                }
+            }
+        } catch (EOFException e) {
+            // The last record was cut short, or there are no more
+        } catch (IOException e) {
+            if (validLength == 0) {
+                System.out.println("Error reading status history, starting it over: " + e.getMessage());
+                reset();
+                return 0;
+            }
+            throw e;
+        }
+
+        if (validLength < file.length()) {
+            System.out.println("Discarding incomplete record at end of " + file.getName());
+            try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+                channel.truncate(validLength);
+            }
+        }
+        return validLength;
+    }
+
+    // Change times are local date-times stored as if UTC, like report times; see
+    // AlertLog.toEpochMillis
+    private static long now() {
+        return AlertLog.toEpochMillis(LocalDateTime.now());
+    }
+
+    // One entry in an alert's history
+    static final class Transition {
+        private final AlertStatus from;
+        private final AlertStatus status;
+        private final long timestampMillis;
+        private final String actor;
+        private final boolean reconciled;
+
+        Transition(AlertStatus from, AlertStatus status, long timestampMillis, String actor, boolean reconciled) {
+            this.from = from;
+            this.status = status;
+            this.timestampMillis = timestampMillis;
+            this.actor = actor;
+            this.reconciled = reconciled;
+        }
+
+        // The status before, or null for the first entry: the alert as first seen
+        public AlertStatus getFrom() {
+            return from;
+        }
+
+        public AlertStatus getStatus() {
+            return status;
+        }
+
+        // When the change was made; for the first entry, when the alert was reported
+        public LocalDateTime getTimestamp() {
+            return AlertLog.fromEpochMillis(timestampMillis);
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        // Who made the change; null when unknown
+        public String getActor() {
+            return actor;
+        }
+
+        // True for a change found only when alerts were loaded, timed when it was found
+        public boolean isReconciled() {
+            return reconciled;
+        }
+    }
+}
@@ -0,0 +1,987 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+// Headless HTTP/JSON front-end over the alert service.
+//
+//   POST /alerts                  submit {title, description, category, urgency, location, reportedBy}
+//                                 plus optional latitude and longitude
+//   GET  /alerts                  list; optional filters category, urgency and status (each
+//                                 comma-separated for any of several values), minUrgency,
+//                                 maxUrgency, from and to (ISO date or date-time), location,
+//                                 reportedBy and q (full-text over title and description), all
+//                                 of which must match; from and to also reach archived months;
+//                                 sort=urgency|location|newest, offset and limit, after={id} to
+//                                 continue a sorted listing from a previously returned alert,
+//                                 and explain to show the query plan
+//   GET  /alerts/nearby           lat, lon and either radius (meters) or k; nearest first
+//   GET  /alerts/area             minLat, minLon, maxLat, maxLon bounding box
+//   GET  /alerts/export           stream every alert; format=csv|jsonl|text, optional category,
+//                                 urgency, status, from and to (ISO date or date-time);
+//                                 gzip-compressed when the client accepts it
+//   GET  /alerts/events           server-sent events for alerts submitted or changing status
+//                                 from now on; optional category (comma-separated), minUrgency
+//                                 and location (substring); slow readers lose the oldest events
+//   GET  /alerts/{id}             a single alert, also when archived
+//   PUT  /alerts/{id}/status      change status with {"status": "RESOLVED"} and an optional
+//                                 "actor" recorded in its history; 409 once archived
+//   GET  /alerts/{id}/history     every status the alert has had, oldest first, with when and
+//                                 by whom; also for archived and deleted alerts
+//   GET  /stats                   counts by category, urgency and status; with the filters of
+//                                 GET /alerts, counts among the matching alerts only
+//   GET  /stats/resolution        times from report to first response and to resolution
+//                                 (count, mean and percentiles in seconds); optional category
+//                                 and urgency
+//   GET  /incidents               duplicate reports grouped by incident, largest first;
+//                                 optional category, minSize (default 2) and limit
+//   GET  /incidents/{id}          one incident with its reports
+//   GET  /queue                   OPEN alerts in dispatch order, most urgent and longest
+//                                 waiting first, with waiting and inProgress counts; limit
+//   POST /queue/claim             take the next alert off the queue and mark it IN_PROGRESS
+//                                 on behalf of the optional actor; 404 when none is waiting
+//   GET  /metrics                 operation counts and latencies plus store sizes in the
+//                                 Prometheus text format
+//   GET  /trends                  reports per hour, oldest first, over the last hours (default
+//                                 24, at most 168); optional category and urgency
+//   GET  /trends/hotspots         locations reported well above their usual rate: the last
+//                                 hours (default 3) against the baseline hours before them
+//                                 (default the rest of the week); limit
+//   GET  /replication             this node's role and, for a follower, its leader, whether
+//                                 connected and how many changes it is behind
+//
+// On a read-only follower every request that would change alerts is refused with 409.
+// Exchanges run on a fixed pool of threads, queueing when all are busy. Event streams
+// hold none of them: once its headers are sent a stream is polled by a few threads
+// shared by every stream, so a subscriber costs a queue rather than a thread. Writes are
+// still blocking, so a client that stops reading ties up one of those threads until its
+// connection fails; virtual threads (JDK 21) would lift that, but the build targets 11.
+class AlertHttpServer {
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+    private static final int REQUEST_THREADS = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+    private static final int EVENT_THREADS = 4;
+    private static final int EVENT_QUEUE_CAPACITY = 256;
+    private static final long EVENT_POLL_MS = 100;
+    private static final long KEEPALIVE_MS = 15_000;
+
+    private final AlertService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService eventExecutor;
+    private final Set<EventStream> eventStreams = ConcurrentHashMap.newKeySet();
+
+    public AlertHttpServer(AlertService service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = Executors.newFixedThreadPool(REQUEST_THREADS, daemonThreads("alert-http"));
+        this.eventExecutor = Executors.newScheduledThreadPool(EVENT_THREADS, daemonThreads("alert-http-events"));
+        server.createContext("/alerts", this::handleAlerts);
+        server.createContext("/stats", this::handleStats);
+        server.createContext("/incidents", this::handleIncidents);
+        server.createContext("/queue", this::handleQueue);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/replication", this::handleReplication);
+        server.createContext("/trends", this::handleTrends);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        eventExecutor.shutdownNow();
+        for (EventStream stream : eventStreams) {
+            stream.close();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private void handleAlerts(HttpExchange exchange) throws IOException {
+        // Set once the exchange belongs to someone else: the server after an aborted
+        // response, or an event stream
+        boolean handedOff = false;
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // path is ["", "alerts", id?, "status" | "history"?]
+            if (path.length == 2) {
+                if (method.equals("POST")) {
+                    submit(exchange);
+                } else if (method.equals("GET")) {
+                    list(exchange);
+                } else {
+                    sendError(exchange, 405, "Method not allowed");
+                }
+            } else if (path.length == 3 && method.equals("GET") && path[2].equals("nearby")) {
+                nearby(exchange);
+            } else if (path.length == 3 && method.equals("GET") && path[2].equals("area")) {
+                area(exchange);
+            } else if (path.length == 3 && method.equals("GET") && path[2].equals("export")) {
+                export(exchange);
+            } else if (path.length == 3 && method.equals("GET") && path[2].equals("events")) {
+                events(exchange);
+                handedOff = true;
+            } else if (path.length == 3 && method.equals("GET")) {
+                get(exchange, parseId(path[2]));
+            } else if (path.length == 4 && path[3].equals("status") && method.equals("PUT")) {
+                updateStatus(exchange, parseId(path[2]));
+            } else if (path.length == 4 && path[3].equals("history") && method.equals("GET")) {
+                history(exchange, parseId(path[2]));
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (AbortedResponse e) {
+            // Propagated so the server drops the connection without closing the exchange
+            handedOff = true;
+            throw e;
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (ReadOnlyException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            if (!handedOff) {
+                exchange.close();
+            }
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // path is ["", "stats", "resolution"?]
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            if (path.length == 3 && path[2].equals("resolution")) {
+                resolutionTimes(exchange);
+                return;
+            } else if (path.length > 2) {
+                sendError(exchange, 404, "Not found");
+                return;
+            }
+            AlertQuery filter = parseFilter(parseQuery(exchange.getRequestURI().getRawQuery()));
+            StringBuilder sb = new StringBuilder();
+            if (filter instanceof AlertQuery.All) {
+                AlertStatistics statistics = service.statistics();
+                sb.append("{\"total\":").append(statistics.getTotal());
+                appendCounts(sb, "byCategory", statistics.getCategoryCounts());
+                appendCounts(sb, "byUrgency", statistics.getUrgencyCounts());
+                appendCounts(sb, "byStatus", statistics.getStatusCounts());
+                sb.append(",\"incidents\":").append(service.clusters().getIncidentCount());
+                sb.append(",\"duplicates\":").append(service.clusters().getDuplicateCount());
+            } else {
+                AlertBitmapIndex.Facets facets = service.facets(filter);
+                sb.append("{\"total\":").append(facets.getTotal());
+                appendCounts(sb, "byCategory", facets.getCategoryCounts());
+                appendCounts(sb, "byUrgency", facets.getUrgencyCounts());
+                appendCounts(sb, "byStatus", facets.getStatusCounts());
+            }
+            sb.append('}');
+            send(exchange, 200, sb);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            StringBuilder sb = new StringBuilder(8192);
+            service.metrics().appendPrometheus(sb);
+            AlertMetrics.appendGauge(sb, "alert_store_alerts", "Alerts held on the heap.", service.size());
+            AlertMetrics.appendGauge(sb, "alert_archived_alerts", "Alerts in the monthly archive.",
+                                     service.archivedSize());
+            AlertMetrics.appendGauge(sb, "alert_queue_waiting", "OPEN alerts waiting to be claimed.",
+                                     service.dispatchQueue().getWaitingCount());
+            send(exchange, 200, sb, "text/plain; version=0.0.4; charset=utf-8");
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleTrends(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // path is ["", "trends", "hotspots"?]
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Method not allowed");
+            } else if (path.length == 2) {
+                int hours = parseInt(query.get("hours"), 1, AlertTrends.HOURS, 24);
+                long[] counts = service.trends().hourly(
+                    query.containsKey("category") ? parseEnum(AlertCategory.class, query.get("category")) : null,
+                    query.containsKey("urgency") ? parseEnum(Urgency.class, query.get("urgency")) : null,
+                    hours);
+                StringBuilder sb = new StringBuilder();
+                sb.append("{\"hours\":").append(hours).append(",\"from\":\"");
+                AlertJson.TIMESTAMP_FORMAT.formatTo(
+                    LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(hours - 1), sb);
+                sb.append("\",\"counts\":[");
+                long total = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(counts[i]);
+                    total += counts[i];
+                }
+                sb.append("],\"total\":").append(total).append('}');
+                send(exchange, 200, sb);
+            } else if (path.length == 3 && path[2].equals("hotspots")) {
+                int hours = parseInt(query.get("hours"), 1, AlertTrends.HOURS - 1, 3);
+                List<AlertTrends.Hotspot> hotspots = service.trends().hotspots(hours,
+                    parseInt(query.get("baseline"), 1, AlertTrends.HOURS - hours, AlertTrends.HOURS - hours),
+                    parseInt(query.get("limit"), 1, MAX_LIMIT, 10));
+                StringBuilder sb = new StringBuilder();
+                sb.append("{\"hotspots\":[");
+                for (int i = 0; i < hotspots.size(); i++) {
+                    AlertTrends.Hotspot hotspot = hotspots.get(i);
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append("{\"location\":");
+                    AlertJson.appendString(sb, hotspot.getLocation());
+                    sb.append(",\"recent\":").append(hotspot.getRecent());
+                    sb.append(",\"expected\":").append(String.format(Locale.ROOT, "%.2f", hotspot.getExpected()));
+                    sb.append(",\"ratio\":").append(String.format(Locale.ROOT, "%.2f", hotspot.getRatio()));
+                    sb.append('}');
+                }
+                sb.append("]}");
+                send(exchange, 200, sb);
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleReplication(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            AlertReplication.Leader leader = service.leader();
+            AlertReplication.Follower follower = service.follower();
+            StringBuilder sb = new StringBuilder();
+            if (leader != null) {
+                sb.append("{\"role\":\"leader\",\"port\":").append(leader.getPort());
+                sb.append(",\"followers\":").append(leader.getFollowerCount());
+                sb.append(",\"sequence\":").append(leader.getSequence());
+            } else if (follower != null) {
+                sb.append("{\"role\":\"follower\",\"leader\":");
+                AlertJson.appendString(sb, follower.getLeader());
+                sb.append(",\"connected\":").append(follower.isConnected());
+                sb.append(",\"sequence\":").append(follower.getAppliedSequence());
+                sb.append(",\"lag\":").append(follower.getLag());
+            } else {
+                sb.append("{\"role\":\"standalone\"");
+            }
+            sb.append(",\"alerts\":").append(service.size()).append('}');
+            send(exchange, 200, sb);
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleIncidents(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // path is ["", "incidents", id?]
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "Method not allowed");
+            } else if (path.length == 2) {
+                listIncidents(exchange);
+            } else if (path.length == 3) {
+                getIncident(exchange, parseId(path[2]));
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleQueue(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // path is ["", "queue", "claim"?]
+            if (path.length == 2 && method.equals("GET")) {
+                listQueue(exchange);
+            } else if (path.length == 3 && path[2].equals("claim") && method.equals("POST")) {
+                Alert alert = service.claimNext(parseQuery(exchange.getRequestURI().getRawQuery()).get("actor"));
+                if (alert == null) {
+                    sendError(exchange, 404, "No open alerts waiting");
+                } else {
+                    sendAlert(exchange, 200, alert);
+                }
+            } else if (path.length <= 3) {
+                sendError(exchange, 405, "Method not allowed");
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (ReadOnlyException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void listQueue(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        AlertDispatchQueue queue = service.dispatchQueue();
+        List<Alert> next = queue.peek(parseInt(query.get("limit"), 1, MAX_LIMIT, DEFAULT_LIMIT));
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"alerts\":[");
+        for (int i = 0; i < next.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            AlertJson.appendAlert(sb, next.get(i));
+        }
+        sb.append("],\"waiting\":").append(queue.getWaitingCount());
+        sb.append(",\"inProgress\":").append(queue.getInProgressCount()).append('}');
+        send(exchange, 200, sb);
+    }
+
+    private void listIncidents(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        List<AlertClusters.Incident> incidents = service.clusters().largest(
+            query.containsKey("category") ? parseEnum(AlertCategory.class, query.get("category")) : null,
+            parseInt(query.get("minSize"), 1, Integer.MAX_VALUE, 2),
+            parseInt(query.get("limit"), 1, MAX_LIMIT, DEFAULT_LIMIT));
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"incidents\":[");
+        for (int i = 0; i < incidents.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendIncident(sb, incidents.get(i));
+            sb.append('}');
+        }
+        sb.append("]}");
+        send(exchange, 200, sb);
+    }
+
+    private void getIncident(HttpExchange exchange, int id) throws IOException {
+        AlertClusters.Incident incident = service.clusters().incident(id);
+        if (incident == null) {
+            sendError(exchange, 404, "Incident not found with ID: " + id);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        appendIncident(sb, incident);
+        sb.append(",\"alerts\":[");
+        boolean first = true;
+        for (Alert alert : service.alertsOf(incident)) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            AlertJson.appendAlert(sb, alert);
+        }
+        sb.append("]}");
+        send(exchange, 200, sb);
+    }
+
+    // The incident's fields, leaving the object open for more
+    private static void appendIncident(StringBuilder sb, AlertClusters.Incident incident) {
+        sb.append("{\"id\":").append(incident.getId());
+        sb.append(",\"category\":\"").append(incident.getCategory()).append('"');
+        sb.append(",\"location\":");
+        AlertJson.appendString(sb, incident.getLocation());
+        sb.append(",\"size\":").append(incident.getSize());
+        sb.append(",\"firstReported\":\"");
+        AlertJson.TIMESTAMP_FORMAT.formatTo(incident.getFirstReported(), sb);
+        sb.append("\",\"lastReported\":\"");
+        AlertJson.TIMESTAMP_FORMAT.formatTo(incident.getLastReported(), sb);
+        sb.append("\",\"alertIds\":[");
+        int[] ids = incident.getAlertIds();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(ids[i]);
+        }
+        sb.append(']');
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        // Refuse before the new Alert takes an ID, so refusals leave no gaps
+        service.checkWritable();
+        Map<String, String> body = AlertJson.parseObject(readBody(exchange));
+        boolean located = body.containsKey("latitude") || body.containsKey("longitude");
+        Alert alert = new Alert(required(body, "title"),
+                                body.getOrDefault("description", ""),
+                                parseEnum(AlertCategory.class, required(body, "category")),
+                                parseEnum(Urgency.class, required(body, "urgency")),
+                                required(body, "location"),
+                                required(body, "reportedBy"),
+                                located ? parseDouble(required(body, "latitude")) : Double.NaN,
+                                located ? parseDouble(required(body, "longitude")) : Double.NaN);
+        service.submit(alert);
+        sendAlert(exchange, 201, alert);
+    }
+
+    private void get(HttpExchange exchange, int id) throws IOException {
+        Alert alert = service.findById(id);
+        if (alert == null) {
+            sendError(exchange, 404, "Alert not found with ID: " + id);
+        } else {
+            sendAlert(exchange, 200, alert);
+        }
+    }
+
+    private void updateStatus(HttpExchange exchange, int id) throws IOException {
+        Map<String, String> body = AlertJson.parseObject(readBody(exchange));
+        AlertStatus status = parseEnum(AlertStatus.class, required(body, "status"));
+        Alert alert = service.updateStatus(id, status, body.get("actor"));
+        if (alert == null && service.isArchived(id)) {
+            sendError(exchange, 409, "Alert ID " + id + " is archived and can no longer change");
+        } else if (alert == null) {
+            sendError(exchange, 404, "Alert not found with ID: " + id);
+        } else {
+            sendAlert(exchange, 200, alert);
+        }
+    }
+
+    private void history(HttpExchange exchange, int id) throws IOException {
+        List<AlertHistory.Transition> transitions = service.history().of(id);
+        if (transitions.isEmpty()) {
+            sendError(exchange, 404, "No status history for alert ID: " + id);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"id\":").append(id).append(",\"history\":[");
+        for (int i = 0; i < transitions.size(); i++) {
+            AlertHistory.Transition transition = transitions.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"from\":");
+            if (transition.getFrom() == null) {
+                sb.append("null");
+            } else {
+                sb.append('"').append(transition.getFrom()).append('"');
+            }
+            sb.append(",\"status\":\"").append(transition.getStatus());
+            sb.append("\",\"timestamp\":\"");
+            AlertJson.TIMESTAMP_FORMAT.formatTo(transition.getTimestamp(), sb);
+            sb.append("\",\"actor\":");
+            if (transition.getActor() == null) {
+                sb.append("null");
+            } else {
+                AlertJson.appendString(sb, transition.getActor());
+            }
+            sb.append(",\"reconciled\":").append(transition.isReconciled()).append('}');
+        }
+        sb.append("]}");
+        send(exchange, 200, sb);
+    }
+
+    private void resolutionTimes(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        AlertCategory category = query.containsKey("category") ? parseEnum(AlertCategory.class, query.get("category")) : null;
+        Urgency urgency = query.containsKey("urgency") ? parseEnum(Urgency.class, query.get("urgency")) : null;
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"response\":");
+        appendTimes(sb, service.history().responseTimes(category, urgency));
+        sb.append(",\"resolution\":");
+        appendTimes(sb, service.history().resolutionTimes(category, urgency));
+        sb.append('}');
+        send(exchange, 200, sb);
+    }
+
+    private static void appendTimes(StringBuilder sb, LatencyHistogram times) {
+        sb.append("{\"count\":").append(times.getCount());
+        sb.append(",\"meanSeconds\":").append(String.format(Locale.ROOT, "%.1f", times.getMeanNanos() / 1e9));
+        for (int percentile : new int[] {50, 90, 99}) {
+            sb.append(",\"p").append(percentile).append("Seconds\":")
+              .append(String.format(Locale.ROOT, "%.1f", times.getPercentileNanos(percentile / 100.0) / 1e9));
+        }
+        sb.append(",\"maxSeconds\":").append(String.format(Locale.ROOT, "%.1f", times.getMaxNanos() / 1e9));
+        sb.append('}');
+    }
+
+    private void list(HttpExchange exchange) throws IOException {
+        long start = AlertMetrics.start();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        AlertQuery filter = parseFilter(query);
+        AlertQueryPlanner.Sort sort = query.containsKey("sort")
+            ? parseEnum(AlertQueryPlanner.Sort.class, query.get("sort")) : AlertQueryPlanner.Sort.NONE;
+        Alert after = null;
+        if (query.containsKey("after")) {
+            int id = parseId(query.get("after"));
+            after = service.findById(id);
+            if (after == null || sort == AlertQueryPlanner.Sort.NONE) {
+                throw new IllegalArgumentException("Invalid cursor: " + id);
+            }
+        }
+
+        // The planner picks the most selective index and streams sorted views where it can
+        AlertQueryPlanner.Plan plan = service.plan(filter, sort, after);
+        if (query.containsKey("explain")) {
+            StringBuilder sb = new StringBuilder("{\"plan\":");
+            AlertJson.appendString(sb, plan.explain());
+            sb.append('}');
+            send(exchange, 200, sb);
+            return;
+        }
+        int offset = parseInt(query.get("offset"), 0, Integer.MAX_VALUE, 0);
+        int limit = parseInt(query.get("limit"), 1, MAX_LIMIT, DEFAULT_LIMIT);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"alerts\":[");
+        long total = plan.knownCount();
+        if (total < 0 && plan.isStreaming()) {
+            // One pass both counts the matches and renders the requested page
+            long[] seen = new long[1];
+            plan.stream().forEachOrdered(alert -> {
+                long position = seen[0]++;
+                if (position >= offset && position < (long) offset + limit) {
+                    if (position > offset) {
+                        sb.append(',');
+                    }
+                    AlertJson.appendAlert(sb, alert);
+                }
+            });
+            total = seen[0];
+        } else {
+            // Only the page itself is visited: the plan already knows the total, or a
+            // sort, which reads every match anyway, counts them while keeping only those
+            // up to the end of the page
+            boolean[] first = {true};
+            plan.stream((long) offset + limit).skip(offset).forEachOrdered(alert -> {
+                if (!first[0]) {
+                    sb.append(',');
+                }
+                first[0] = false;
+                AlertJson.appendAlert(sb, alert);
+            });
+            if (total < 0) {
+                total = plan.sortedCount();
+            }
+        }
+        sb.append("],\"total\":").append(total).append('}');
+        service.metrics().record(AlertMetrics.Operation.QUERY, start);
+        send(exchange, 200, sb);
+    }
+
+    private void nearby(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        double lat = parseDouble(required(query, "lat"));
+        double lon = parseDouble(required(query, "lon"));
+        List<Alert> results;
+        if (query.containsKey("k")) {
+            results = service.nearest(lat, lon, parseInt(query.get("k"), 1, MAX_LIMIT, 0));
+        } else {
+            results = service.withinRadius(lat, lon, parseDouble(required(query, "radius")));
+        }
+        sendAlerts(exchange, results, parseInt(query.get("limit"), 1, MAX_LIMIT, DEFAULT_LIMIT));
+    }
+
+    private void area(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        List<Alert> results = service.withinBox(
+            parseDouble(required(query, "minLat")), parseDouble(required(query, "minLon")),
+            parseDouble(required(query, "maxLat")), parseDouble(required(query, "maxLon")));
+        sendAlerts(exchange, results, parseInt(query.get("limit"), 1, MAX_LIMIT, DEFAULT_LIMIT));
+    }
+
+    private void export(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        AlertExporter.Format format = parseEnum(AlertExporter.Format.class, query.getOrDefault("format", "jsonl"));
+        AlertExporter exporter = new AlertExporter(format, AlertExporter.filter(
+            query.containsKey("category") ? parseEnum(AlertCategory.class, query.get("category")) : null,
+            query.containsKey("urgency") ? parseEnum(Urgency.class, query.get("urgency")) : null,
+            query.containsKey("status") ? parseEnum(AlertStatus.class, query.get("status")) : null,
+            query.containsKey("from") ? parseDateTime(query.get("from"), false) : null,
+            query.containsKey("to") ? parseDateTime(query.get("to"), true) : null), acceptsGzip(exchange));
+
+        // Length unknown up front, so the body is sent chunked as it is produced
+        String[] contentTypes = {"text/plain", "text/csv", "application/x-ndjson"};
+        exchange.getResponseHeaders().set("Content-Type", contentTypes[format.ordinal()] + "; charset=utf-8");
+        if (acceptsGzip(exchange)) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), 64 * 1024);
+        try {
+            service.export(exporter, out);
+        } catch (IOException | RuntimeException e) {
+            // The status is already sent, so the failure can only be signalled by cutting
+            // the response short: closing the stream would send the final chunk and pass
+            // the truncated export off as complete
+            System.out.println("Error exporting alerts: " + e.getMessage());
+            throw new AbortedResponse(e);
+        }
+        out.close();
+    }
+
+    // Sends the headers and hands the exchange to an EventStream, which streams until the
+    // client goes away
+    private void events(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        List<AlertCategory> categories = new ArrayList<>();
+        if (query.containsKey("category")) {
+            for (String value : query.get("category").split(",")) {
+                categories.add(parseEnum(AlertCategory.class, value));
+            }
+        }
+        AlertSubscriptions.Filter filter = new AlertSubscriptions.Filter(categories,
+            query.containsKey("minUrgency") ? parseEnum(Urgency.class, query.get("minUrgency")) : null,
+            query.get("location"));
+
+        AlertSubscriptions.Subscription subscription =
+            service.subscribe(filter, EVENT_QUEUE_CAPACITY, AlertSubscriptions.Overflow.DROP_OLDEST);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        try {
+            exchange.sendResponseHeaders(200, 0);
+            new EventStream(exchange, subscription).start();
+        } catch (IOException | RuntimeException e) {
+            service.unsubscribe(subscription);
+            throw e;
+        }
+    }
+
+    // One client's event stream: polled every EVENT_POLL_MS on the shared event threads,
+    // never by two at once, writing whatever events have arrived. A comment line every
+    // so often detects a client gone away even when nothing matches.
+    private final class EventStream implements Runnable {
+        private final HttpExchange exchange;
+        private final AlertSubscriptions.Subscription subscription;
+        private final OutputStream out;
+        private final StringBuilder sb = new StringBuilder(512);
+        private long reportedDropped;
+        private long lastWrite = System.currentTimeMillis();
+        private volatile ScheduledFuture<?> task;
+
+        EventStream(HttpExchange exchange, AlertSubscriptions.Subscription subscription) {
+            this.exchange = exchange;
+            this.subscription = subscription;
+            this.out = exchange.getResponseBody();
+        }
+
+        void start() {
+            eventStreams.add(this);
+            task = eventExecutor.scheduleWithFixedDelay(this, 0, EVENT_POLL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            try {
+                poll();
+            } catch (IOException e) {
+                // The client disconnected
+                close();
+            } catch (RuntimeException e) {
+                // A failed periodic task is never run again, so end the stream with it
+                System.out.println("Error streaming alert events: " + e.getMessage());
+                close();
+            }
+        }
+
+        private void poll() throws IOException {
+            sb.setLength(0);
+            if (subscription.getDropped() > reportedDropped) {
+                reportedDropped = subscription.getDropped();
+                sb.append("event: dropped\ndata: ").append(reportedDropped).append("\n\n");
+            }
+            for (AlertSubscriptions.Event event = subscription.poll(); event != null; event = subscription.poll()) {
+                sb.append("event: ").append(event.type.name().toLowerCase(Locale.ROOT)).append("\ndata: ");
+                AlertJson.appendAlert(sb, event.alert);
+                sb.append("\n\n");
+            }
+            long now = System.currentTimeMillis();
+            if (sb.length() == 0) {
+                if (now - lastWrite < KEEPALIVE_MS) {
+                    return;
+                }
+                sb.append(": keepalive\n\n");
+            }
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            lastWrite = now;
+        }
+
+        void close() {
+            ScheduledFuture<?> current = task;
+            if (current != null) {
+                current.cancel(false);
+            }
+            if (eventStreams.remove(this)) {
+                service.unsubscribe(subscription);
+                exchange.close();
+            }
+        }
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return accepted != null && accepted.toLowerCase(Locale.ROOT).contains("gzip");
+    }
+
+    // A date-time, or a date meaning the start (or end) of that day
+    private static LocalDateTime parseDateTime(String value, boolean endOfDay) {
+        try {
+            if (value.length() == 10) {
+                LocalDate date = LocalDate.parse(value);
+                return endOfDay ? date.atTime(LocalTime.MAX) : date.atStartOfDay();
+            }
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + value);
+        }
+    }
+
+    private static void sendAlerts(HttpExchange exchange, List<Alert> alerts, int limit) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"alerts\":[");
+        for (int i = 0; i < Math.min(limit, alerts.size()); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            AlertJson.appendAlert(sb, alerts.get(i));
+        }
+        sb.append("],\"total\":").append(alerts.size()).append('}');
+        send(exchange, 200, sb);
+    }
+
+    // Conditions from query parameters, all of which must hold; comma-separated values
+    // for category, urgency and status match any of the listed values
+    private static AlertQuery parseFilter(Map<String, String> query) {
+        List<AlertQuery> conditions = new ArrayList<>();
+        if (query.containsKey("category")) {
+            List<AlertQuery> anyOf = new ArrayList<>();
+            for (String value : query.get("category").split(",")) {
+                anyOf.add(AlertQuery.category(parseEnum(AlertCategory.class, value)));
+            }
+            conditions.add(AlertQuery.or(anyOf.toArray(new AlertQuery[0])));
+        }
+        if (query.containsKey("urgency")) {
+            List<AlertQuery> anyOf = new ArrayList<>();
+            for (String value : query.get("urgency").split(",")) {
+                Urgency urgency = parseEnum(Urgency.class, value);
+                anyOf.add(AlertQuery.urgencyBetween(urgency, urgency));
+            }
+            conditions.add(AlertQuery.or(anyOf.toArray(new AlertQuery[0])));
+        }
+        if (query.containsKey("minUrgency") || query.containsKey("maxUrgency")) {
+            Urgency[] levels = Urgency.values();
+            conditions.add(AlertQuery.urgencyBetween(
+                query.containsKey("minUrgency") ? parseEnum(Urgency.class, query.get("minUrgency")) : levels[0],
+                query.containsKey("maxUrgency") ? parseEnum(Urgency.class, query.get("maxUrgency"))
+                                                : levels[levels.length - 1]));
+        }
+        if (query.containsKey("status")) {
+            List<AlertQuery> anyOf = new ArrayList<>();
+            for (String value : query.get("status").split(",")) {
+                anyOf.add(AlertQuery.status(parseEnum(AlertStatus.class, value)));
+            }
+            conditions.add(AlertQuery.or(anyOf.toArray(new AlertQuery[0])));
+        }
+        if (query.containsKey("from") || query.containsKey("to")) {
+            conditions.add(AlertQuery.reportedBetween(
+                query.containsKey("from") ? parseDateTime(query.get("from"), false) : null,
+                query.containsKey("to") ? parseDateTime(query.get("to"), true) : null));
+        }
+        if (query.containsKey("location")) {
+            conditions.add(AlertQuery.locationContains(query.get("location")));
+        }
+        if (query.containsKey("reportedBy")) {
+            conditions.add(AlertQuery.reportedBy(query.get("reportedBy")));
+        }
+        if (query.containsKey("q")) {
+            conditions.add(AlertQuery.text(query.get("q")));
+        }
+        return AlertQuery.and(conditions.toArray(new AlertQuery[0]));
+    }
+
+    private static void appendCounts(StringBuilder sb, String name, Map<?, Long> counts) {
+        sb.append(",\"").append(name).append("\":{");
+        boolean first = true;
+        for (Map.Entry<?, Long> entry : counts.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            AlertJson.appendString(sb, entry.getKey().toString());
+            sb.append(':').append(entry.getValue());
+        }
+        sb.append('}');
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_SIZE + 1);
+            if (body.length > MAX_BODY_SIZE) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                       URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String required(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing field: " + field);
+        }
+        return value;
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + type.getSimpleName() + ": " + value);
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            double parsed = Double.parseDouble(value);
+            if (Double.isNaN(parsed) || Double.isInfinite(parsed)) {
+                throw new NumberFormatException();
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+
+    private static int parseId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid alert ID: " + value);
+        }
+    }
+
+    private static int parseInt(String value, int min, int max, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < min || parsed > max) {
+                throw new IllegalArgumentException("Value out of range: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+
+    private static void sendAlert(HttpExchange exchange, int code, Alert alert) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        AlertJson.appendAlert(sb, alert);
+        send(exchange, code, sb);
+    }
+
+    private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        AlertJson.appendString(sb, message == null ? "Bad request" : message);
+        sb.append('}');
+        send(exchange, code, sb);
+    }
+
+    private static void send(HttpExchange exchange, int code, CharSequence body) throws IOException {
+        send(exchange, code, body, "application/json; charset=utf-8");
+    }
+
+    private static void send(HttpExchange exchange, int code, CharSequence body, String contentType)
+            throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // A response that failed after its headers were sent. Thrown out of the handler
+    // without closing the exchange, so the server closes the connection instead.
+    private static final class AbortedResponse extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        AbortedResponse(Throwable cause) {
+            super(cause);
+        }
+    }
+}
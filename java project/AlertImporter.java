@@ -0,0 +1,360 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+// Bulk import of alerts from CSV or JSON Lines, as written by AlertExporter or by other
+// systems using the same field names. Records are read sequentially in batches; each
+// batch gets a block of consecutive IDs, is parsed and validated in parallel, and is
+// handed on in input order, so the store updates its indexes and log once per batch.
+// Invalid records are counted and reported but never stored; their IDs stay unused.
+//
+// CSV input starts with a header naming its columns in any order. Required fields are
+// title, category, urgency and location; description, reportedBy, timestamp (ISO date
+// or date-time, default now), status (default OPEN), latitude and longitude are optional.
+// Other fields, including id, are ignored: imported alerts always get fresh IDs.
+// gzip-compressed input is recognised and decompressed.
+class AlertImporter {
+    static final int DEFAULT_BATCH_SIZE = 10_000;
+    // Rejections reported with their reason; any beyond are only counted
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    private static final int INPUT_BUFFER_SIZE = 1024 * 1024;
+    private static final String DEFAULT_REPORTER = "import";
+    private static final String[] REQUIRED_FIELDS = {"title", "category", "urgency", "location"};
+
+    private final AlertExporter.Format format;
+    private final int batchSize;
+
+    // A null format is detected from the input: JSON Lines when it starts with '{'
+    public AlertImporter(AlertExporter.Format format, int batchSize) {
+        if (format == AlertExporter.Format.TEXT) {
+            throw new IllegalArgumentException("Text reports cannot be imported");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.format = format;
+        this.batchSize = batchSize;
+    }
+
+    // Parse the whole input and pass each batch of valid alerts to the sink, in input
+    // order. The stream is read to the end but left open.
+    public Result read(InputStream in, Consumer<List<Alert>> sink) throws IOException {
+        long start = System.nanoTime();
+        RecordReader reader = new RecordReader(decode(in));
+        AlertExporter.Format actual = format != null ? format
+            : reader.peek() == '{' ? AlertExporter.Format.JSONL : AlertExporter.Format.CSV;
+        boolean csv = actual == AlertExporter.Format.CSV;
+
+        Map<String, Integer> columns = null;
+        if (csv) {
+            String header = reader.next(true);
+            if (header == null) {
+                throw new IOException("CSV input is empty");
+            }
+            columns = parseHeader(header);
+        }
+
+        Result result = new Result();
+        String[] records = new String[batchSize];
+        int[] lines = new int[batchSize];
+        while (true) {
+            int count = 0;
+            String record;
+            while (count < batchSize && (record = reader.next(csv)) != null) {
+                lines[count] = reader.recordLine;
+                records[count++] = record;
+            }
+            if (count == 0) {
+                break;
+            }
+            importBatch(records, lines, count, columns, sink, result);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void importBatch(String[] records, int[] lines, int count, Map<String, Integer> columns,
+                             Consumer<List<Alert>> sink, Result result) {
+        int firstId = Alert.reserveIds(count);
+        LocalDateTime now = LocalDateTime.now();
+        Alert[] alerts = new Alert[count];
+        String[] errors = new String[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            try {
+                Map<String, String> fields = columns == null
+                    ? AlertJson.parseObject(records[i]) : csvFields(records[i], columns);
+                alerts[i] = toAlert(firstId + i, fields, now);
+            } catch (IllegalArgumentException | DateTimeException e) {
+                errors[i] = e.getMessage();
+            }
+        });
+
+        List<Alert> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (alerts[i] != null) {
+                batch.add(alerts[i]);
+            } else {
+                result.reject(lines[i], errors[i]);
+            }
+            records[i] = null;
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+            result.imported += batch.size();
+        }
+    }
+
+    private static Alert toAlert(int id, Map<String, String> fields, LocalDateTime now) {
+        String title = required(fields, "title");
+        AlertCategory category = parseEnum(AlertCategory.class, "category", required(fields, "category"));
+        Urgency urgency = parseEnum(Urgency.class, "urgency", required(fields, "urgency"));
+        String location = required(fields, "location");
+        String description = optional(fields, "description");
+        String reportedBy = optional(fields, "reportedBy");
+        String status = optional(fields, "status");
+        String timestamp = optional(fields, "timestamp");
+        String latitude = optional(fields, "latitude");
+        String longitude = optional(fields, "longitude");
+        if (latitude.isEmpty() != longitude.isEmpty()) {
+            throw new IllegalArgumentException("Latitude and longitude must be given together");
+        }
+        double lat = latitude.isEmpty() ? Double.NaN : Double.parseDouble(latitude);
+        double lon = longitude.isEmpty() ? Double.NaN : Double.parseDouble(longitude);
+        Alert.checkCoordinates(lat, lon);
+
+        return new Alert(id, title, description, category, urgency, location,
+                         reportedBy.isEmpty() ? DEFAULT_REPORTER : reportedBy,
+                         timestamp.isEmpty() ? now : parseTimestamp(timestamp),
+                         status.isEmpty() ? AlertStatus.OPEN.name()
+                             : parseEnum(AlertStatus.class, "status", status).name(),
+                         lat, lon);
+    }
+
+    private static String required(Map<String, String> fields, String name) {
+        String value = optional(fields, name);
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    private static String optional(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        return value == null ? "" : value.trim();
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static LocalDateTime parseTimestamp(String value) {
+        return value.length() == 10
+            ? LocalDate.parse(value).atStartOfDay()
+            : LocalDateTime.parse(value, AlertJson.TIMESTAMP_FORMAT);
+    }
+
+    // Column positions by name; every required field must be present
+    private static Map<String, Integer> parseHeader(String header) throws IOException {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = parseCsvRecord(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.putIfAbsent(names.get(i).trim(), i);
+        }
+        for (String field : REQUIRED_FIELDS) {
+            if (!columns.containsKey(field)) {
+                throw new IOException("CSV header has no " + field + " column: " + header);
+            }
+        }
+        return columns;
+    }
+
+    private static Map<String, String> csvFields(String record, Map<String, Integer> columns) {
+        List<String> values = parseCsvRecord(record);
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, Integer> column : columns.entrySet()) {
+            if (column.getValue() < values.size()) {
+                fields.put(column.getKey(), values.get(column.getValue()));
+            }
+        }
+        return fields;
+    }
+
+    // Fields of one RFC 4180 record: quoted fields may hold commas, line breaks and
+    // doubled quotes
+    static List<String> parseCsvRecord(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // UTF-8 text of the input, decompressed when it starts with the gzip magic number
+    private static Reader decode(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, INPUT_BUFFER_SIZE);
+        buffered.mark(2);
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        buffered.reset();
+        InputStream source = b1 == 0x1f && b2 == 0x8b
+            ? new GZIPInputStream(buffered, INPUT_BUFFER_SIZE) : buffered;
+        return new InputStreamReader(source, StandardCharsets.UTF_8);
+    }
+
+    // Splits the input into records, skipping blank lines. A CSV record ends at a line
+    // break outside quotes; a JSON Lines record ends at any line break.
+    private static final class RecordReader {
+        private final Reader in;
+        private final char[] buffer = new char[64 * 1024];
+        private final StringBuilder record = new StringBuilder(256);
+        private int position;
+        private int limit;
+        private int line = 1;
+        // Line on which the last returned record started
+        int recordLine;
+
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        // The first character that is not whitespace, or -1 at the end of the input
+        int peek() throws IOException {
+            while (fill()) {
+                char c = buffer[position];
+                if (!Character.isWhitespace(c)) {
+                    return c;
+                }
+                if (c == '\n') {
+                    line++;
+                }
+                position++;
+            }
+            return -1;
+        }
+
+        String next(boolean csv) throws IOException {
+            while (true) {
+                record.setLength(0);
+                recordLine = line;
+                boolean quoted = false;
+                boolean ended = false;
+                while (!ended && fill()) {
+                    char c = buffer[position++];
+                    if (c == '\n') {
+                        line++;
+                        ended = !quoted;
+                        if (ended) {
+                            break;
+                        }
+                    } else if (c == '"' && csv) {
+                        quoted = !quoted;
+                    }
+                    record.append(c);
+                }
+                int length = record.length();
+                if (length > 0 && record.charAt(length - 1) == '\r') {
+                    record.setLength(length - 1);
+                }
+                if (record.length() > 0 && !isBlank(record)) {
+                    return record.toString();
+                }
+                if (!ended) {
+                    return null;
+                }
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (position < limit) {
+                return true;
+            }
+            limit = in.read(buffer);
+            position = 0;
+            return limit > 0;
+        }
+
+        private static boolean isBlank(CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                if (!Character.isWhitespace(text.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Counts, timing and the first rejected records of an import
+    static final class Result {
+        private final List<String> rejections = new ArrayList<>();
+        private long imported;
+        private long rejected;
+        private long elapsedNanos;
+
+        private void reject(int line, String reason) {
+            if (rejected++ < MAX_REPORTED_REJECTIONS) {
+                rejections.add("line " + line + ": " + reason);
+            }
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        // Line number and reason of the first rejected records
+        public List<String> getRejections() {
+            return Collections.unmodifiableList(rejections);
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+
+        // Records read per second, valid or not
+        public double getRecordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : (imported + rejected) * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d alert(s), rejected %d, in %.1f s (%.0f records/s)",
+                                 imported, rejected, elapsedNanos / 1e9, getRecordsPerSecond());
+        }
+    }
+}
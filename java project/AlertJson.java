@@ -0,0 +1,202 @@
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// Minimal JSON support for the HTTP API: alert encoding and parsing of flat objects
+class AlertJson {
+    static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private AlertJson() {
+    }
+
+    static void appendAlert(StringBuilder sb, Alert alert) {
+        sb.append("{\"id\":").append(alert.getId());
+        sb.append(",\"title\":");
+        appendString(sb, alert.getTitle());
+        sb.append(",\"description\":");
+        appendString(sb, alert.getDescription());
+        sb.append(",\"category\":\"").append(alert.getCategory()).append('"');
+        sb.append(",\"urgency\":\"").append(alert.getUrgency()).append('"');
+        sb.append(",\"location\":");
+        appendString(sb, alert.getLocation());
+        sb.append(",\"reportedBy\":");
+        appendString(sb, alert.getReportedBy());
+        sb.append(",\"timestamp\":\"");
+        TIMESTAMP_FORMAT.formatTo(alert.getTimestamp(), sb);
+        sb.append("\",\"status\":\"").append(alert.getStatus()).append('"');
+        if (alert.hasCoordinates()) {
+            sb.append(",\"latitude\":").append(alert.getLatitude());
+            sb.append(",\"longitude\":").append(alert.getLongitude());
+        }
+        sb.append('}');
+    }
+
+    static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    // Parse a JSON object whose values are strings, numbers, booleans or null.
+    // Non-string values are returned as their literal text; null values are omitted.
+    static Map<String, String> parseObject(String json) {
+        Parser parser = new Parser(json);
+        Map<String, String> result = parser.object();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("Unexpected content after JSON object");
+        }
+        return result;
+    }
+
+    private static class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> object() {
+            Map<String, String> result = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return result;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                String value = peek() == '"' ? string() : literal();
+                if (value != null) {
+                    result.put(key, value);
+                }
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return result;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("Expected ',' or '}' at position " + (pos - 1));
+                }
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escape = next();
+                switch (escape) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append(escape);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("Truncated unicode escape");
+                        }
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid escape: \\" + escape);
+                }
+            }
+        }
+
+        private String literal() {
+            int start = pos;
+            while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String value = text.substring(start, pos);
+            if (value.isEmpty() || value.startsWith("{") || value.startsWith("[")) {
+                throw new IllegalArgumentException("Only flat JSON objects are supported");
+            }
+            return value.equals("null") ? null : value;
+        }
+
+        void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        boolean atEnd() {
+            return pos >= text.length();
+        }
+
+        private char peek() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return text.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            char c = next();
+            if (c != expected) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at position " + (pos - 1));
+            }
+        }
+    }
+}
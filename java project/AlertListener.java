@@ -0,0 +1,51 @@
+import java.time.YearMonth;
+import java.util.List;
+
+// Callbacks for changes made to an AlertStore. They run on the mutating thread while
+// the store's write lock is held, so every listener observes changes in the same
+// order. Implementations must be quick and must not call the store's mutators.
+interface AlertListener {
+    default void alertAdded(Alert alert) {
+    }
+
+    // Several alerts added in one go, e.g. by a bulk import; listeners that can do
+    // the work once per batch override this
+    default void alertsAdded(List<Alert> alerts) {
+        for (Alert alert : alerts) {
+            alertAdded(alert);
+        }
+    }
+
+    default void statusChanged(Alert alert, String previousStatus) {
+    }
+
+    // The same change with who made it (null when unknown); listeners that keep an
+    // audit trail override this one
+    default void statusChanged(Alert alert, String previousStatus, String actor) {
+        statusChanged(alert, previousStatus);
+    }
+
+    default void alertRemoved(Alert alert) {
+    }
+
+    // Several alerts removed in one go, e.g. when archiving; listeners that can do
+    // the work once per batch override this
+    default void alertsRemoved(List<Alert> alerts) {
+        for (Alert alert : alerts) {
+            alertRemoved(alert);
+        }
+    }
+
+    // Alerts of one reporting month moved off the heap into the archive. They leave the
+    // store like removed alerts, which is all most listeners need to know.
+    default void alertsArchived(YearMonth month, List<Alert> alerts) {
+        alertsRemoved(alerts);
+    }
+
+    default void alertsCleared() {
+    }
+
+    // The store's contents were replaced wholesale, e.g. after recovery at startup
+    default void alertsLoaded(Iterable<Alert> alerts) {
+    }
+}
@@ -0,0 +1,498 @@
+import java.io.*;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log of alert mutations on top of a periodic binary snapshot.
+// Each record is [length][op][payload][crc32]; a torn tail is truncated on recovery.
+// Registered as a store listener, so records are appended in the store's mutation order.
+class AlertLog implements AlertListener, Closeable {
+    // A single write against the log, used by callers that report their own errors
+    interface Mutation {
+        void applyTo(AlertLog log) throws IOException;
+    }
+
+    private static final byte OP_CREATE = 1;
+    private static final byte OP_STATUS = 2;
+    private static final byte OP_DELETE = 3;
+
+    private static final long SYNC_INTERVAL_MS = 100;
+    private static final int COMPACT_THRESHOLD = 10_000;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    private final File snapshotFile;
+    private final File legacyFile;
+    private final File logFile;
+    private final File oldLogFile;
+    private final Supplier<List<Alert>> snapshotSource;
+    private final ScheduledExecutorService background;
+    // Compaction has a thread of its own: callers wait for it while holding this log's
+    // monitor, which a sync queued ahead of it on the background thread would need
+    private final ExecutorService compactor;
+    private final Thread shutdownHook = new Thread(this::sync);
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream record = new DataOutputStream(recordBuffer);
+    private final CRC32 crc = new CRC32();
+
+    private FileOutputStream logStream;
+    private DataOutputStream out;
+    private boolean dirty;
+    private int recordsSinceSnapshot;
+    // Alerts in the last snapshot written or started
+    private int snapshotSize;
+    private Future<?> compaction;
+
+    public AlertLog(String snapshotPath, String legacyPath, String logPath,
+                    Supplier<List<Alert>> snapshotSource) {
+        this.snapshotFile = new File(snapshotPath);
+        this.legacyFile = new File(legacyPath);
+        this.logFile = new File(logPath);
+        this.oldLogFile = new File(logPath + ".old");
+        this.snapshotSource = snapshotSource;
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "alert-log");
+            t.setDaemon(true);
+            return t;
+        });
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "alert-log-compaction");
+            t.setDaemon(true);
+            return t;
+        });
+        background.scheduleWithFixedDelay(this::sync, SYNC_INTERVAL_MS,
+                                          SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    // Rebuild the alert list from the snapshot followed by every log record written after it
+    public synchronized List<Alert> recover() throws IOException, ClassNotFoundException {
+        if (!snapshotFile.exists() && legacyFile.exists()) {
+            migrateLegacySnapshot();
+        }
+
+        Map<Integer, Alert> state = new LinkedHashMap<>();
+        if (snapshotFile.exists()) {
+            for (Alert alert : BinaryAlertFormat.read(snapshotFile)) {
+                state.put(alert.getId(), alert);
+            }
+        }
+
+        // A leftover rotated log means the last compaction never finished
+        boolean interrupted = oldLogFile.exists();
+        if (interrupted) {
+            replay(oldLogFile, state);
+        }
+        recordsSinceSnapshot = replay(logFile, state);
+
+        List<Alert> alerts = new ArrayList<>(state.values());
+        if (interrupted) {
+            writeSnapshot(alerts);
+            Files.deleteIfExists(logFile.toPath());
+            Files.deleteIfExists(oldLogFile.toPath());
+            recordsSinceSnapshot = 0;
+        }
+        snapshotSize = alerts.size();
+        openLog(true);
+        return alerts;
+    }
+
+    public synchronized void appendCreate(Alert alert) throws IOException {
+        writeCreate(alert);
+        commitRecord();
+    }
+
+    // Append a create record per alert, checking for compaction once for the batch
+    public synchronized void appendCreates(Collection<Alert> alerts) throws IOException {
+        for (Alert alert : alerts) {
+            writeCreate(alert);
+            writeRecord();
+        }
+        recordsSinceSnapshot += alerts.size();
+        maybeCompact();
+    }
+
+    private void writeCreate(Alert alert) throws IOException {
+        beginRecord(OP_CREATE);
+        record.writeInt(alert.getId());
+        record.writeLong(alert.getTimestampMillis());
+        record.writeByte(alert.getCategory().ordinal());
+        record.writeByte(alert.getUrgency().ordinal());
+        writeString(record, alert.getStatus());
+        writeString(record, alert.getTitle());
+        writeString(record, alert.getDescription());
+        writeString(record, alert.getLocation());
+        writeString(record, alert.getReportedBy());
+        record.writeDouble(alert.getLatitude());
+        record.writeDouble(alert.getLongitude());
+    }
+
+    public synchronized void appendStatus(int id, String status) throws IOException {
+        beginRecord(OP_STATUS);
+        record.writeInt(id);
+        writeString(record, status);
+        commitRecord();
+    }
+
+    public synchronized void appendDelete(int id) throws IOException {
+        beginRecord(OP_DELETE);
+        record.writeInt(id);
+        commitRecord();
+    }
+
+    @Override
+    public void alertAdded(Alert alert) {
+        record(log -> log.appendCreate(alert));
+    }
+
+    @Override
+    public void alertsAdded(List<Alert> alerts) {
+        record(log -> log.appendCreates(alerts));
+    }
+
+    @Override
+    public void statusChanged(Alert alert, String previousStatus) {
+        record(log -> log.appendStatus(alert.getId(), alert.getStatus()));
+    }
+
+    @Override
+    public void alertRemoved(Alert alert) {
+        record(log -> log.appendDelete(alert.getId()));
+    }
+
+    @Override
+    public void alertsCleared() {
+        record(AlertLog::clear);
+    }
+
+    private void record(Mutation mutation) {
+        try {
+            mutation.applyTo(this);
+        } catch (IOException e) {
+            System.out.println("Error saving alerts: " + e.getMessage());
+        }
+    }
+
+    // Write a full snapshot of the given alerts and start an empty log
+    public synchronized void checkpoint(Collection<Alert> alerts) throws IOException {
+        awaitCompaction();
+        writeSnapshot(alerts);
+        openLog(false);
+        Files.deleteIfExists(oldLogFile.toPath());
+        recordsSinceSnapshot = 0;
+        snapshotSize = alerts.size();
+    }
+
+    // Remove the snapshot and all log records
+    public synchronized void clear() throws IOException {
+        awaitCompaction();
+        openLog(false);
+        Files.deleteIfExists(oldLogFile.toPath());
+        Files.deleteIfExists(snapshotFile.toPath());
+        recordsSinceSnapshot = 0;
+        snapshotSize = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            awaitCompaction();
+            closeLog();
+        }
+        background.shutdown();
+        compactor.shutdown();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook finds nothing left to sync
+        }
+    }
+
+    // Flush buffered records and fsync them; runs on the background thread so
+    // that many appends share a single force() call
+    private void sync() {
+        FileChannel channel;
+        synchronized (this) {
+            if (!dirty || out == null) {
+                return;
+            }
+            try {
+                out.flush();
+            } catch (IOException e) {
+                System.out.println("Error flushing alert log: " + e.getMessage());
+                return;
+            }
+            channel = logStream.getChannel();
+            dirty = false;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedChannelException e) {
+            // The log was rotated or closed, which forces it anyway
+        } catch (IOException e) {
+            System.out.println("Error syncing alert log: " + e.getMessage());
+        }
+    }
+
+    private void beginRecord(byte op) throws IOException {
+        if (out == null) {
+            throw new IOException("Alert log is not open");
+        }
+        recordBuffer.reset();
+        record.writeByte(op);
+    }
+
+    private void commitRecord() throws IOException {
+        writeRecord();
+        recordsSinceSnapshot++;
+        maybeCompact();
+    }
+
+    private void writeRecord() throws IOException {
+        crc.reset();
+        crc.update(recordBuffer.toByteArray(), 0, recordBuffer.size());
+        out.writeInt(recordBuffer.size());
+        recordBuffer.writeTo(out);
+        out.writeInt((int) crc.getValue());
+        dirty = true;
+    }
+
+    // Compact once the log holds more records than the snapshot holds alerts (and at
+    // least COMPACT_THRESHOLD), so a growing store, e.g. during a bulk import, rewrites
+    // each alert a bounded number of times instead of once every few thousand records
+    private void maybeCompact() throws IOException {
+        if (recordsSinceSnapshot >= Math.max(COMPACT_THRESHOLD, snapshotSize)) {
+            startCompaction();
+        }
+    }
+
+    // Rotate the active log aside and snapshot the current state in the background.
+    // The copy is taken here, on the mutating thread, so it matches the rotated log exactly.
+    private void startCompaction() throws IOException {
+        if (compaction != null && !compaction.isDone()) {
+            return;
+        }
+        if (oldLogFile.exists()) {
+            return;
+        }
+        List<Alert> snapshot = snapshotSource.get();
+        closeLog();
+        Files.move(logFile.toPath(), oldLogFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        openLog(true);
+        recordsSinceSnapshot = 0;
+        snapshotSize = snapshot.size();
+
+        compaction = compactor.submit(() -> {
+            try {
+                writeSnapshot(snapshot);
+                Files.deleteIfExists(oldLogFile.toPath());
+            } catch (IOException e) {
+                // The rotated log is kept and replayed on the next recovery
+                System.out.println("Error compacting alerts: " + e.getMessage());
+            }
+        });
+    }
+
+    private void awaitCompaction() throws IOException {
+        if (compaction == null) {
+            return;
+        }
+        try {
+            compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compacting alerts");
+        } catch (ExecutionException e) {
+            throw new IOException("Compaction failed", e.getCause());
+        } finally {
+            compaction = null;
+        }
+    }
+
+    private void openLog(boolean append) throws IOException {
+        closeLog();
+        logStream = new FileOutputStream(logFile, append);
+        out = new DataOutputStream(new BufferedOutputStream(logStream, 64 * 1024));
+    }
+
+    private void closeLog() throws IOException {
+        if (out == null) {
+            return;
+        }
+        out.flush();
+        logStream.getChannel().force(false);
+        out.close();
+        out = null;
+        logStream = null;
+        dirty = false;
+    }
+
+    // Convert a Java-serialized alerts_data.ser into the binary format once.
+    // The old file is kept alongside under a .migrated suffix.
+    @SuppressWarnings("unchecked")
+    private void migrateLegacySnapshot() throws IOException, ClassNotFoundException {
+        List<LegacyAlert> legacy;
+        try (ObjectInputStream ois = new LegacyInputStream(
+                new BufferedInputStream(new FileInputStream(legacyFile)))) {
+            legacy = (List<LegacyAlert>) ois.readObject();
+        }
+        List<Alert> alerts = new ArrayList<>(legacy.size());
+        for (LegacyAlert old : legacy) {
+            Alert.reserveId(old.id);
+            alerts.add(old.toAlert());
+        }
+        writeSnapshot(alerts);
+        Files.move(legacyFile.toPath(), new File(legacyFile.getPath() + ".migrated").toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Migrated " + alerts.size() + " alerts to " + snapshotFile.getName());
+    }
+
+    // The serialized form of Alert from before it dropped Serializable. Same field names
+    // and serialVersionUID, so the stream's values land here field by field.
+    private static final class LegacyAlert implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int id;
+        private String title;
+        private String description;
+        private AlertCategory category;
+        private Urgency urgency;
+        private String location;
+        private String reportedBy;
+        private LocalDateTime timestamp;
+        private String status;
+
+        Alert toAlert() {
+            return new Alert(id, title, description, category, urgency, location, reportedBy,
+                             timestamp, status, Double.NaN, Double.NaN);
+        }
+    }
+
+    // Reads class "Alert" from old snapshots as LegacyAlert
+    private static final class LegacyInputStream extends ObjectInputStream {
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass descriptor = super.readClassDescriptor();
+            return descriptor.getName().equals("Alert") ? ObjectStreamClass.lookup(LegacyAlert.class) : descriptor;
+        }
+    }
+
+    private void writeSnapshot(Collection<Alert> alerts) throws IOException {
+        BinaryAlertFormat.write(snapshotFile, alerts, Alert.peekNextId());
+    }
+
+    // Apply every intact record in the file to the state; returns the number applied.
+    // Replay is idempotent, so records already covered by the snapshot are harmless.
+    private int replay(File file, Map<Integer, Alert> state) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        int applied = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] payload;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), state);
+                validLength += payload.length + 8;
+                applied++;
+            }
+        }
+
+        if (validLength < file.length()) {
+            System.out.println("Discarding incomplete record at end of " + file.getName());
+            try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+                channel.truncate(validLength);
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(DataInputStream in, Map<Integer, Alert> state) throws IOException {
+        byte op = in.readByte();
+        switch (op) {
+            case OP_CREATE: {
+                int id = in.readInt();
+                long timestamp = in.readLong();
+                AlertCategory category = AlertCategory.values()[in.readByte()];
+                Urgency urgency = Urgency.values()[in.readByte()];
+                AlertStatus status = AlertStatus.valueOf(readString(in));
+                String title = readString(in);
+                String description = readString(in);
+                String location = readString(in);
+                String reportedBy = readString(in);
+                // Records written before coordinates existed end after the reporter
+                boolean located = in.available() >= 16;
+                double latitude = located ? in.readDouble() : Double.NaN;
+                double longitude = located ? in.readDouble() : Double.NaN;
+                Alert.reserveId(id);
+                state.put(id, new Alert(id, title, description, category, urgency, location,
+                                        reportedBy, timestamp, status, latitude, longitude));
+                break;
+            }
+            case OP_STATUS: {
+                Alert alert = state.get(in.readInt());
+                String status = readString(in);
+                if (alert != null) {
+                    alert.setStatus(status);
+                }
+                break;
+            }
+            case OP_DELETE:
+                state.remove(in.readInt());
+                break;
+            default:
+                throw new IOException("Unknown alert log record type: " + op);
+        }
+    }
+
+    static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                                           Math.floorMod(millis, 1000) * 1_000_000,
+                                           ZoneOffset.UTC);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,166 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+// Call counts and latency histograms for every alert operation, recorded without locks
+// from any thread. Readable as a text report, in the Prometheus text format and over JMX.
+//
+// Callers bracket an operation with start() and record(). Run with
+// -Dalerts.metrics=false to turn recording off: ENABLED is then a constant false that
+// the JIT folds away, so the brackets cost nothing, not even a clock read.
+class AlertMetrics implements AlertMetricsMXBean {
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("alerts.metrics"));
+    static final String OBJECT_NAME = "CommunityAlerts:type=Metrics";
+
+    enum Operation {
+        SUBMIT, UPDATE_STATUS, DELETE, CLAIM, LOOKUP, LIST, SORT, FILTER, SEARCH, QUERY,
+        STATISTICS, EXPORT, IMPORT, ARCHIVE, SAVE, LOAD;
+
+        final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+
+    AlertMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    void record(Operation operation, long start) {
+        if (ENABLED) {
+            histograms[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    LatencyHistogram histogram(Operation operation) {
+        return histograms[operation.ordinal()];
+    }
+
+    // Publish on the platform MBean server for jconsole and other JMX clients
+    void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            counts.put(operation.label, histogram(operation).getCount());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getMeanMillis() {
+        Map<String, Double> means = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            means.put(operation.label, histogram(operation).getMeanNanos() / 1e6);
+        }
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getP50Millis() {
+        return percentileMillis(0.5);
+    }
+
+    @Override
+    public Map<String, Double> getP99Millis() {
+        return percentileMillis(0.99);
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        Map<String, Double> maxima = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            maxima.put(operation.label, histogram(operation).getMaxNanos() / 1e6);
+        }
+        return maxima;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        appendReport(sb);
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    private Map<String, Double> percentileMillis(double share) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            values.put(operation.label, histogram(operation).getPercentileNanos(share) / 1e6);
+        }
+        return values;
+    }
+
+    // One line per operation that has run, times in milliseconds
+    void appendReport(StringBuilder sb) {
+        if (!ENABLED) {
+            sb.append("Metrics are disabled (-Dalerts.metrics=false)\n");
+            return;
+        }
+        sb.append(String.format("%-14s %10s %10s %10s %10s %10s%n",
+                                "operation", "count", "mean ms", "p50 ms", "p99 ms", "max ms"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = histogram(operation);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            sb.append(String.format("%-14s %10d %10.3f %10.3f %10.3f %10.3f%n", operation.label,
+                                    histogram.getCount(), histogram.getMeanNanos() / 1e6,
+                                    histogram.getPercentileNanos(0.5) / 1e6,
+                                    histogram.getPercentileNanos(0.99) / 1e6,
+                                    histogram.getMaxNanos() / 1e6));
+        }
+    }
+
+    // Every operation as a Prometheus summary plus its maximum, times in seconds
+    void appendPrometheus(StringBuilder sb) {
+        String name = "alert_operation_duration_seconds";
+        sb.append("# HELP ").append(name).append(" Time taken by alert operations.\n");
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = histogram(operation);
+            for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+                sb.append(name).append("{operation=\"").append(operation.label)
+                  .append("\",quantile=\"").append(quantile).append("\"} ")
+                  .append(histogram.getPercentileNanos(quantile) / 1e9).append('\n');
+            }
+            sb.append(name).append("_sum{operation=\"").append(operation.label).append("\"} ")
+              .append(histogram.getSumNanos() / 1e9).append('\n');
+            sb.append(name).append("_count{operation=\"").append(operation.label).append("\"} ")
+              .append(histogram.getCount()).append('\n');
+        }
+        String max = "alert_operation_max_seconds";
+        sb.append("# HELP ").append(max).append(" Longest single run of each alert operation.\n");
+        sb.append("# TYPE ").append(max).append(" gauge\n");
+        for (Operation operation : Operation.values()) {
+            sb.append(max).append("{operation=\"").append(operation.label).append("\"} ")
+              .append(histogram(operation).getMaxNanos() / 1e9).append('\n');
+        }
+    }
+
+    static void appendGauge(StringBuilder sb, String name, String help, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,22 @@
+import java.util.Map;
+
+// Management view of AlertMetrics, registered with the platform MBean server as
+// CommunityAlerts:type=Metrics. Maps are keyed by operation name.
+public interface AlertMetricsMXBean {
+    boolean isEnabled();
+
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getMeanMillis();
+
+    Map<String, Double> getP50Millis();
+
+    Map<String, Double> getP99Millis();
+
+    Map<String, Double> getMaxMillis();
+
+    // The same figures as a plain-text table
+    String getReport();
+
+    void reset();
+}
@@ -0,0 +1,154 @@
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Page-at-a-time view over an ordered listing for the console. Pages are read from a
+// stream that continues the listing just past a cursor alert, so moving to the next
+// page, going back or jumping to an alert only ever reads and formats one page, however
+// large the store. Earlier page starts are kept on a stack for going back.
+class AlertPager {
+    static final int DEFAULT_PAGE_SIZE = 10;
+    static final int MAX_PAGE_SIZE = 100;
+
+    private final Function<Alert, Stream<Alert>> after;
+    private final Predicate<Alert> member;
+    private final Deque<Position> previous = new ArrayDeque<>();
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private Position position = Position.START;
+    // 1-based, or 0 once a jump has made it unknown
+    private int pageNumber = 1;
+    private List<Alert> page;
+    private boolean more;
+
+    // after gives the listing continued past an alert (from the top for null); member
+    // tells whether an alert belongs to the listing at all
+    public AlertPager(Function<Alert, Stream<Alert>> after, Predicate<Alert> member) {
+        this.after = after;
+        this.member = member;
+    }
+
+    // The alerts on the current page, read when first asked for
+    public List<Alert> page() {
+        if (page == null) {
+            Stream<Alert> stream = after.apply(position.cursor);
+            if (position.inclusive) {
+                stream = Stream.concat(Stream.of(position.cursor), stream);
+            }
+            // One extra tells whether there is a next page
+            List<Alert> read = stream.limit(pageSize + 1).collect(Collectors.toList());
+            more = read.size() > pageSize;
+            page = more ? read.subList(0, pageSize) : read;
+        }
+        return page;
+    }
+
+    public boolean hasNext() {
+        page();
+        return more;
+    }
+
+    public boolean hasPrevious() {
+        return !previous.isEmpty();
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void next() {
+        if (!hasNext()) {
+            return;
+        }
+        previous.push(position);
+        position = new Position(page.get(page.size() - 1), false);
+        pageNumber = pageNumber == 0 ? 0 : pageNumber + 1;
+        page = null;
+    }
+
+    public void previous() {
+        if (previous.isEmpty()) {
+            return;
+        }
+        position = previous.pop();
+        pageNumber = pageNumber == 0 ? 0 : pageNumber - 1;
+        page = null;
+    }
+
+    // Start the page at the alert; false, leaving the page as it was, when the alert is
+    // not part of this listing
+    public boolean jumpTo(Alert alert) {
+        if (!member.test(alert)) {
+            return false;
+        }
+        previous.push(position);
+        position = new Position(alert, true);
+        pageNumber = 0;
+        page = null;
+        return true;
+    }
+
+    // Keeps the first alert of the current page at the top
+    public void setPageSize(int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be 1 to " + MAX_PAGE_SIZE + ": " + pageSize);
+        }
+        this.pageSize = pageSize;
+        page = null;
+    }
+
+    // Where a page begins: just past the cursor, or at it when inclusive
+    private static final class Position {
+        static final Position START = new Position(null, false);
+
+        final Alert cursor;
+        final boolean inclusive;
+
+        Position(Alert cursor, boolean inclusive) {
+            this.cursor = cursor;
+            this.inclusive = inclusive;
+        }
+    }
+
+    // Formats alerts as Alert.toString does, remembering recent results so paging back
+    // and forth does not format the same alerts again. Status is the only field of an
+    // alert that changes, so an entry stays good while the status matches.
+    static final class Renderer {
+        private static final int CAPACITY = 4 * MAX_PAGE_SIZE;
+
+        private final StringBuilder buffer = new StringBuilder(512);
+        private final Map<Integer, Rendered> cache = new LinkedHashMap<Integer, Rendered>(CAPACITY, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Rendered> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+
+        void append(StringBuilder sb, Alert alert) {
+            AlertStatus status = alert.getAlertStatus();
+            Rendered rendered = cache.get(alert.getId());
+            if (rendered == null || rendered.status != status) {
+                buffer.setLength(0);
+                alert.appendTo(buffer);
+                rendered = new Rendered(status, buffer.toString());
+                cache.put(alert.getId(), rendered);
+            }
+            sb.append(rendered.text);
+        }
+
+        private static final class Rendered {
+            final AlertStatus status;
+            final String text;
+
+            Rendered(AlertStatus status, String text) {
+                this.status = status;
+                this.text = text;
+            }
+        }
+    }
+}
@@ -0,0 +1,307 @@
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Immutable filter over alerts built from simple conditions joined with AND and OR,
+// e.g. and(category(POTHOLE), urgencyBetween(HIGH, CRITICAL), status(OPEN)).
+// A query only says what matches; AlertQueryPlanner decides how to find the matches.
+abstract class AlertQuery {
+    private static final AlertQuery ALL = new All();
+
+    public abstract boolean matches(Alert alert);
+
+    public AlertQuery and(AlertQuery other) {
+        return and(this, other);
+    }
+
+    public AlertQuery or(AlertQuery other) {
+        return or(this, other);
+    }
+
+    public static AlertQuery all() {
+        return ALL;
+    }
+
+    public static AlertQuery category(AlertCategory category) {
+        return new CategoryIs(category);
+    }
+
+    // Urgency from min to max inclusive
+    public static AlertQuery urgencyBetween(Urgency min, Urgency max) {
+        if (min.compareTo(max) > 0) {
+            throw new IllegalArgumentException("Minimum urgency " + min + " is above maximum " + max);
+        }
+        return new UrgencyBetween(min, max);
+    }
+
+    public static AlertQuery status(AlertStatus status) {
+        return new StatusIs(status);
+    }
+
+    // Reported from 'from' to 'to' inclusive; either end may be null for no bound
+    public static AlertQuery reportedBetween(LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("Start of time window is after its end");
+        }
+        return new ReportedBetween(from, to);
+    }
+
+    // Location contains the term, ignoring case
+    public static AlertQuery locationContains(String term) {
+        return new LocationContains(term);
+    }
+
+    // Reporter name equals the given name, ignoring case
+    public static AlertQuery reportedBy(String name) {
+        return new ReportedBy(name);
+    }
+
+    // Title or description contains every whitespace-separated term, ignoring case
+    public static AlertQuery text(String query) {
+        return new TextContains(query);
+    }
+
+    public static AlertQuery and(AlertQuery... queries) {
+        return combine(true, queries);
+    }
+
+    public static AlertQuery or(AlertQuery... queries) {
+        return combine(false, queries);
+    }
+
+    // Flatten nested groups of the same kind; AND drops ALL, OR with ALL is ALL
+    private static AlertQuery combine(boolean conjunction, AlertQuery[] queries) {
+        List<AlertQuery> parts = new ArrayList<>();
+        for (AlertQuery query : queries) {
+            if (query instanceof All) {
+                if (!conjunction) {
+                    return ALL;
+                }
+            } else if (conjunction && query instanceof And) {
+                parts.addAll(((And) query).parts);
+            } else if (!conjunction && query instanceof Or) {
+                parts.addAll(((Or) query).parts);
+            } else {
+                parts.add(query);
+            }
+        }
+        if (parts.isEmpty()) {
+            return ALL;
+        }
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        return conjunction ? new And(parts) : new Or(parts);
+    }
+
+    static final class All extends AlertQuery {
+        @Override
+        public boolean matches(Alert alert) {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "all";
+        }
+    }
+
+    static final class CategoryIs extends AlertQuery {
+        final AlertCategory category;
+
+        CategoryIs(AlertCategory category) {
+            this.category = Objects.requireNonNull(category);
+        }
+
+        @Override
+        public boolean matches(Alert alert) {
+            return alert.getCategory() == category;
+        }
+
+        @Override
+        public String toString() {
+            return "category = " + category;
+        }
+    }
+
+    static final class UrgencyBetween extends AlertQuery {
+        final Urgency min;
+        final Urgency max;
+
+        UrgencyBetween(Urgency min, Urgency max) {
+            this.min = Objects.requireNonNull(min);
+            this.max = Objects.requireNonNull(max);
+        }
+
+        @Override
+        public boolean matches(Alert alert) {
+            int level = alert.getUrgency().ordinal();
+            return level >= min.ordinal() && level <= max.ordinal();
+        }
+
+        @Override
+        public String toString() {
+            return min == max ? "urgency = " + min : "urgency " + min + ".." + max;
+        }
+    }
+
+    static final class StatusIs extends AlertQuery {
+        final AlertStatus status;
+
+        StatusIs(AlertStatus status) {
+            this.status = status;
+        }
+
+        @Override
+        public boolean matches(Alert alert) {
+            return alert.getAlertStatus() == status;
+        }
+
+        @Override
+        public String toString() {
+            return "status = " + status;
+        }
+    }
+
+    static final class ReportedBetween extends AlertQuery {
+        final LocalDateTime from;
+        final LocalDateTime to;
+        private final long fromMillis;
+        private final long toMillis;
+
+        ReportedBetween(LocalDateTime from, LocalDateTime to) {
+            this.from = from;
+            this.to = to;
+            this.fromMillis = from == null ? Long.MIN_VALUE : AlertLog.toEpochMillis(from);
+            this.toMillis = to == null ? Long.MAX_VALUE : AlertLog.toEpochMillis(to);
+        }
+
+        @Override
+        public boolean matches(Alert alert) {
+            long time = alert.getTimestampMillis();
+            return time >= fromMillis && time <= toMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "reported " + (from == null ? "" : from) + ".." + (to == null ? "" : to);
+        }
+    }
+
+    static final class LocationContains extends AlertQuery {
+        final String term;
+        final String folded;
+
+        LocationContains(String term) {
+            this.term = term;
+            this.folded = TrigramIndex.fold(term);
+        }
+
+        @Override
+        public boolean matches(Alert alert) {
+            return TrigramIndex.contains(alert.getLocation(), folded);
+        }
+
+        @Override
+        public String toString() {
+            return "location contains '" + term + "'";
+        }
+    }
+
+    static final class ReportedBy extends AlertQuery {
+        final String name;
+
+        ReportedBy(String name) {
+            this.name = name.trim();
+        }
+
+        @Override
+        public boolean matches(Alert alert) {
+            return alert.getReportedBy().trim().equalsIgnoreCase(name);
+        }
+
+        @Override
+        public String toString() {
+            return "reportedBy = '" + name + "'";
+        }
+    }
+
+    static final class TextContains extends AlertQuery {
+        final String query;
+        final String[] terms;
+
+        TextContains(String query) {
+            this.query = query;
+            this.terms = TrigramIndex.fold(query.trim()).split("\\s+");
+        }
+
+        @Override
+        public boolean matches(Alert alert) {
+            for (String term : terms) {
+                if (!TrigramIndex.contains(alert.getTitle(), term)
+                        && !TrigramIndex.contains(alert.getDescription(), term)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "text contains '" + query + "'";
+        }
+    }
+
+    static final class And extends AlertQuery {
+        final List<AlertQuery> parts;
+
+        And(List<AlertQuery> parts) {
+            this.parts = Collections.unmodifiableList(parts);
+        }
+
+        @Override
+        public boolean matches(Alert alert) {
+            for (AlertQuery part : parts) {
+                if (!part.matches(alert)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return join(parts, " AND ");
+        }
+    }
+
+    static final class Or extends AlertQuery {
+        final List<AlertQuery> parts;
+
+        Or(List<AlertQuery> parts) {
+            this.parts = Collections.unmodifiableList(parts);
+        }
+
+        @Override
+        public boolean matches(Alert alert) {
+            for (AlertQuery part : parts) {
+                if (part.matches(alert)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return join(parts, " OR ");
+        }
+    }
+
+    private static String join(List<AlertQuery> parts, String separator) {
+        StringJoiner joiner = new StringJoiner(separator, "(", ")");
+        for (AlertQuery part : parts) {
+            joiner.add(part.toString());
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,513 @@
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// Chooses how to answer an AlertQuery. Every condition an index can answer offers an
+// access path with a row estimate; the cheapest path supplies candidate alerts, and the
+// full query is then checked against each candidate. When the requested order is the
+// order the path already produces, results stream lazily and a page stops early;
+// otherwise the matches are sorted, or, when the caller wants only the first few, only
+// those few are kept, in a bounded buffer, as they are read. Category, urgency and status
+// conditions are intersected on bitmaps before any alert is read, and a path that
+// yields exactly the matches also gives their count without running the query.
+// Indexes cover the alerts on the heap; a query that limits reporting time also reads
+// the archived months its time window overlaps.
+class AlertQueryPlanner {
+    // Reading the slot array in order costs about a quarter of reaching an alert
+    // through an index, so a scan wins over indexes that keep most alerts
+    private static final double SCAN_ROW_COST = 0.25;
+    private static final int LOOKUP_BATCH = 1024;
+    // Largest number of first matches a sort keeps apart rather than sorting them all
+    private static final int MAX_SELECTED = 1 << 20;
+
+    enum Sort {
+        NONE, URGENCY, LOCATION, NEWEST
+    }
+
+    static final Comparator<Alert> NEWEST_ORDER = (a1, a2) -> {
+        int timeCompare = Long.compare(a2.getTimestampMillis(), a1.getTimestampMillis());
+        return timeCompare != 0 ? timeCompare : Integer.compare(a2.getId(), a1.getId());
+    };
+
+    private final AlertStore store;
+    private final AlertStatistics statistics;
+    private final AlertSortIndex sortIndex;
+    private final AlertTextIndex textIndex;
+    private final AlertBitmapIndex bitmapIndex;
+    private final AlertArchive archive;
+
+    public AlertQueryPlanner(AlertStore store, AlertStatistics statistics, AlertSortIndex sortIndex,
+                             AlertTextIndex textIndex, AlertBitmapIndex bitmapIndex, AlertArchive archive) {
+        this.store = store;
+        this.statistics = statistics;
+        this.sortIndex = sortIndex;
+        this.textIndex = textIndex;
+        this.bitmapIndex = bitmapIndex;
+        this.archive = archive;
+    }
+
+    // Plan the query; with a cursor, results continue just past that alert in the sort order
+    public Plan plan(AlertQuery query, Sort sort, Alert after) {
+        return plan(query, sort, after, Long.MAX_VALUE);
+    }
+
+    // Plan for a caller that stops after the wanted number of matches, which favors
+    // paths that already produce the requested order
+    public Plan plan(AlertQuery query, Sort sort, Alert after, long wanted) {
+        if (after != null && sort == Sort.NONE) {
+            throw new IllegalArgumentException("A cursor needs a sort order");
+        }
+        Alert cursor = sort == Sort.URGENCY ? after : null;
+        Map<AlertQuery, Access> paths = new IdentityHashMap<>();
+        List<Access> considered = new ArrayList<>();
+        considered.add(scan(query, sort, after));
+        // Each conjunct of a top-level AND is a separate candidate, so explain shows them all
+        List<AlertQuery> conjuncts = query instanceof AlertQuery.And
+            ? ((AlertQuery.And) query).parts : Collections.singletonList(query);
+        for (AlertQuery conjunct : conjuncts) {
+            Access access = indexAccess(conjunct, cursor, paths);
+            if (access != null) {
+                considered.add(access);
+            }
+        }
+        if (query instanceof AlertQuery.And) {
+            Access intersection = bitmapIntersection((AlertQuery.And) query);
+            if (intersection != null) {
+                considered.add(intersection);
+            }
+        }
+
+        // A path that yields exactly the matches knows their count; otherwise no path
+        // holds more matches than rows
+        double estimate = statistics.getTotal() * selectivity(query, paths);
+        for (Access access : considered) {
+            if (access.covers == query) {
+                estimate = access.rows;
+                break;
+            }
+            estimate = Math.min(estimate, access.rows);
+        }
+        Access best = considered.get(0);
+        for (Access access : considered) {
+            if (cost(access, sort, estimate, wanted) < cost(best, sort, estimate, wanted)) {
+                best = access;
+            }
+        }
+
+        LocalDateTime[] window = window(query);
+        List<YearMonth> months = window == null
+            ? Collections.emptyList() : archive.months(window[0], window[1]);
+        long archivedRows = 0;
+        for (YearMonth month : months) {
+            archivedRows += archive.count(month);
+        }
+        estimate += archivedRows * selectivity(query, paths);
+        return new Plan(query, sort, after, best, considered, estimate,
+                        months, archivedRows, () -> archive.stream(months));
+    }
+
+    // The reporting time window {from, to} the query's time conditions allow, with null
+    // for an open end, or null when the query does not limit reporting time
+    private static LocalDateTime[] window(AlertQuery query) {
+        if (query instanceof AlertQuery.ReportedBetween) {
+            AlertQuery.ReportedBetween range = (AlertQuery.ReportedBetween) query;
+            return new LocalDateTime[] {range.from, range.to};
+        }
+        if (query instanceof AlertQuery.And) {
+            // Every condition holds, so the windows narrow each other
+            LocalDateTime[] window = null;
+            for (AlertQuery part : ((AlertQuery.And) query).parts) {
+                LocalDateTime[] limit = window(part);
+                if (limit == null) {
+                    continue;
+                }
+                if (window == null) {
+                    window = limit;
+                } else {
+                    window = new LocalDateTime[] {later(window[0], limit[0]), earlier(window[1], limit[1])};
+                }
+            }
+            return window;
+        }
+        if (query instanceof AlertQuery.Or) {
+            // Any branch may match, so the window spans them all, and one unlimited branch
+            // leaves the whole query unlimited
+            LocalDateTime[] window = null;
+            for (AlertQuery part : ((AlertQuery.Or) query).parts) {
+                LocalDateTime[] limit = window(part);
+                if (limit == null) {
+                    return null;
+                }
+                if (window == null) {
+                    window = limit;
+                } else {
+                    window = new LocalDateTime[] {
+                        window[0] == null || limit[0] == null ? null : earlier(window[0], limit[0]),
+                        window[1] == null || limit[1] == null ? null : later(window[1], limit[1])};
+                }
+            }
+            return window;
+        }
+        return null;
+    }
+
+    // Of two optional bounds, the later; null means no bound
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        return a == null ? b : b == null || a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime earlier(LocalDateTime a, LocalDateTime b) {
+        return a == null ? b : b == null || a.isBefore(b) ? a : b;
+    }
+
+    // Weighted rows read to produce the wanted matches. A path that streams in the
+    // requested order stops once it has them, and they are assumed spread evenly
+    // through it; any other path is read in full.
+    private static double cost(Access access, Sort sort, double matches, long wanted) {
+        double rows = access.rows * access.rowCost;
+        if ((sort == Sort.NONE || access.order == sort) && wanted < matches) {
+            return rows * (wanted / matches);
+        }
+        return rows;
+    }
+
+    // The cheapest index path for the query, or null if no index can narrow it.
+    // Paths found are remembered so selectivity estimates can reuse their row counts.
+    private Access indexAccess(AlertQuery query, Alert urgencyCursor, Map<AlertQuery, Access> paths) {
+        Access access = findIndexAccess(query, urgencyCursor, paths);
+        if (access != null) {
+            paths.put(query, access);
+        }
+        return access;
+    }
+
+    private Access findIndexAccess(AlertQuery query, Alert urgencyCursor, Map<AlertQuery, Access> paths) {
+        if (query instanceof AlertQuery.UrgencyBetween) {
+            AlertQuery.UrgencyBetween range = (AlertQuery.UrgencyBetween) query;
+            long rows = count(range);
+            return new Access("urgency index " + range, rows, 1, Sort.URGENCY, query, () -> rows,
+                              () -> sortIndex.byUrgencyBetween(range.min, range.max, urgencyCursor));
+        }
+        if (query instanceof AlertQuery.CategoryIs || query instanceof AlertQuery.StatusIs) {
+            return bitmapAccess(query);
+        }
+        if (query instanceof AlertQuery.LocationContains) {
+            int[] ids = textIndex.locationCandidates(((AlertQuery.LocationContains) query).folded);
+            return ids == null ? null : idAccess("location trigram index", ids);
+        }
+        if (query instanceof AlertQuery.TextContains) {
+            int[] ids = textIndex.textCandidates(((AlertQuery.TextContains) query).terms);
+            return ids == null ? null : idAccess("text trigram index", ids);
+        }
+        if (query instanceof AlertQuery.And) {
+            // Any one conjunct's matches are a superset of the result; take the smallest,
+            // or the bitmap intersection of several when that is smaller still
+            Access best = bitmapIntersection((AlertQuery.And) query);
+            for (AlertQuery part : ((AlertQuery.And) query).parts) {
+                Access access = indexAccess(part, urgencyCursor, paths);
+                if (access != null && (best == null || access.rows < best.rows)) {
+                    best = access;
+                }
+            }
+            return best;
+        }
+        if (query instanceof AlertQuery.Or) {
+            if (AlertBitmapIndex.covers(query)) {
+                return bitmapAccess(query);
+            }
+            // A union only helps when every branch can be answered from an index
+            List<Access> branches = new ArrayList<>();
+            long rows = 0;
+            for (AlertQuery part : ((AlertQuery.Or) query).parts) {
+                Access access = indexAccess(part, null, paths);
+                if (access == null) {
+                    return null;
+                }
+                branches.add(access);
+                rows += access.rows;
+            }
+            String description = branches.stream().map(access -> access.description)
+                                         .collect(Collectors.joining(" + ", "union of ", ""));
+            return new Access(description, rows, 1, Sort.NONE, null, null,
+                              () -> branches.stream().flatMap(access -> access.source.get()).distinct());
+        }
+        return null;
+    }
+
+    private Access idAccess(String name, int[] ids) {
+        return new Access(name, ids.length, 1, Sort.NONE, null, null, () -> store.findAllById(ids).stream());
+    }
+
+    // The intersection of the conjuncts the bitmaps cover, when there are at least two
+    private Access bitmapIntersection(AlertQuery.And query) {
+        List<AlertQuery> covered = new ArrayList<>();
+        for (AlertQuery part : query.parts) {
+            if (AlertBitmapIndex.covers(part)) {
+                covered.add(part);
+            }
+        }
+        if (covered.size() < 2) {
+            return null;
+        }
+        return bitmapAccess(covered.size() == query.parts.size()
+            ? query : AlertQuery.and(covered.toArray(new AlertQuery[0])));
+    }
+
+    // Rows are estimated from the live counts, so planning stays cheap; the bitmaps are
+    // only combined when the path is used, and alerts are looked up a batch at a time
+    private Access bitmapAccess(AlertQuery covered) {
+        long rows = Math.round(statistics.getTotal() * selectivity(covered, Collections.emptyMap()));
+        return new Access("bitmap index " + covered, rows, 1, Sort.NONE, covered,
+                          () -> bitmapIndex.count(covered), () -> lookUp(bitmapIndex.ids(covered)));
+    }
+
+    private Stream<Alert> lookUp(int[] ids) {
+        return IntStream.range(0, (ids.length + LOOKUP_BATCH - 1) / LOOKUP_BATCH)
+                        .mapToObj(batch -> store.findAllById(Arrays.copyOfRange(
+                            ids, batch * LOOKUP_BATCH, Math.min(ids.length, (batch + 1) * LOOKUP_BATCH))))
+                        .flatMap(List::stream);
+    }
+
+    // Reading everything, in the requested order when an index keeps it
+    private Access scan(AlertQuery query, Sort sort, Alert after) {
+        long rows = store.size();
+        AlertQuery covers = query instanceof AlertQuery.All ? query : null;
+        if (sort == Sort.URGENCY) {
+            return new Access("urgency index scan", rows, 1, Sort.URGENCY, covers, () -> rows,
+                              () -> sortIndex.byUrgencyAfter(after));
+        }
+        if (sort == Sort.LOCATION) {
+            return new Access("location index scan", rows, 1, Sort.LOCATION, covers, () -> rows,
+                              () -> sortIndex.byLocationAfter(after));
+        }
+        return new Access("full scan", rows, SCAN_ROW_COST, Sort.NONE, covers, () -> rows, store::stream);
+    }
+
+    // Estimated fraction of alerts matching, treating conditions as independent. Index
+    // paths and maintained counts give the fraction for a condition where known;
+    // anything else is assumed to keep every alert.
+    private double selectivity(AlertQuery query, Map<AlertQuery, Access> paths) {
+        double total = Math.max(1, statistics.getTotal());
+        if (paths.containsKey(query) && !(query instanceof AlertQuery.And)) {
+            return Math.min(1, paths.get(query).rows / total);
+        }
+        if (query instanceof AlertQuery.CategoryIs) {
+            return statistics.getCount(((AlertQuery.CategoryIs) query).category) / total;
+        }
+        if (query instanceof AlertQuery.UrgencyBetween) {
+            return count((AlertQuery.UrgencyBetween) query) / total;
+        }
+        if (query instanceof AlertQuery.StatusIs) {
+            return statistics.getCount(((AlertQuery.StatusIs) query).status) / total;
+        }
+        if (query instanceof AlertQuery.And) {
+            double fraction = 1;
+            for (AlertQuery part : ((AlertQuery.And) query).parts) {
+                fraction *= selectivity(part, paths);
+            }
+            return fraction;
+        }
+        if (query instanceof AlertQuery.Or) {
+            double missed = 1;
+            for (AlertQuery part : ((AlertQuery.Or) query).parts) {
+                missed *= 1 - selectivity(part, paths);
+            }
+            return 1 - missed;
+        }
+        return 1;
+    }
+
+    private long count(AlertQuery.UrgencyBetween range) {
+        long rows = 0;
+        for (int i = range.min.ordinal(); i <= range.max.ordinal(); i++) {
+            rows += statistics.getCount(Urgency.values()[i]);
+        }
+        return rows;
+    }
+
+    static Comparator<Alert> comparator(Sort sort) {
+        switch (sort) {
+            case URGENCY:
+                return AlertSortIndex.URGENCY_ORDER;
+            case LOCATION:
+                return AlertSortIndex.LOCATION_ORDER;
+            case NEWEST:
+                return NEWEST_ORDER;
+            default:
+                return null;
+        }
+    }
+
+    private static final class Access {
+        final String description;
+        final long rows;
+        final double rowCost;
+        final Sort order;
+        // The query this path yields exactly, if any, and how to count its matches
+        final AlertQuery covers;
+        final LongSupplier count;
+        final Supplier<Stream<Alert>> source;
+
+        Access(String description, long rows, double rowCost, Sort order,
+               AlertQuery covers, LongSupplier count, Supplier<Stream<Alert>> source) {
+            this.description = description;
+            this.rows = rows;
+            this.rowCost = rowCost;
+            this.order = order;
+            this.covers = covers;
+            this.count = count;
+            this.source = source;
+        }
+    }
+
+    // A chosen way of answering one query
+    static final class Plan {
+        private final AlertQuery query;
+        private final Sort sort;
+        private final Alert after;
+        private final Access access;
+        private final List<Access> considered;
+        private final double estimatedMatches;
+        private final List<YearMonth> archivedMonths;
+        private final long archivedRows;
+        private final Supplier<Stream<Alert>> archived;
+        // Matches past the cursor, counted by the last sort that had to read them all
+        private long sortedCount = -1;
+
+        private Plan(AlertQuery query, Sort sort, Alert after, Access access, List<Access> considered,
+                     double estimatedMatches, List<YearMonth> archivedMonths, long archivedRows,
+                     Supplier<Stream<Alert>> archived) {
+            this.query = query;
+            this.sort = sort;
+            this.after = after;
+            this.access = access;
+            this.considered = considered;
+            this.estimatedMatches = estimatedMatches;
+            this.archivedMonths = archivedMonths;
+            this.archivedRows = archivedRows;
+            this.archived = archived;
+        }
+
+        // Whether results come straight from the access path, so pages stop early
+        public boolean isStreaming() {
+            return sort == Sort.NONE || (archivedMonths.isEmpty() && access.order == sort);
+        }
+
+        // The number of matches when the access path yields exactly them, known without
+        // running the query; -1 when only running it can tell
+        public long knownCount() {
+            return after == null && access.covers == query && archivedMonths.isEmpty()
+                ? access.count.getAsLong() : -1;
+        }
+
+        // The number of matches past the cursor once a stream has sorted them, which reads
+        // them all even when it yields only the first few; -1 before, or when streaming
+        public long sortedCount() {
+            return sortedCount;
+        }
+
+        // Matching alerts in the requested order, evaluated lazily when streaming
+        public Stream<Alert> stream() {
+            return stream(Long.MAX_VALUE);
+        }
+
+        // The first wanted matches in the requested order. Rather than sorting every
+        // match, a sort collects them in a buffer of twice the wanted number; each time
+        // it fills, it is sorted and cut back, and the last match kept bars every later
+        // one that sorts after it. O(n log wanted) instead of O(n log n), and close to
+        // linear when matches arrive in or against the requested order, as sorting runs
+        // is.
+        public Stream<Alert> stream(long wanted) {
+            Stream<Alert> matches = access.source.get();
+            if (!archivedMonths.isEmpty()) {
+                // Archived months are older than anything on the heap, so they come first
+                matches = Stream.concat(archived.get(), matches);
+            }
+            if (!(query instanceof AlertQuery.All)) {
+                matches = matches.filter(query::matches);
+            }
+            if (isStreaming()) {
+                return wanted < Long.MAX_VALUE ? matches.limit(wanted) : matches;
+            }
+            Comparator<Alert> order = comparator(sort);
+            if (after != null) {
+                matches = matches.filter(alert -> order.compare(alert, after) > 0);
+            }
+            if (wanted > MAX_SELECTED) {
+                List<Alert> sorted = matches.sorted(order).collect(Collectors.toList());
+                sortedCount = sorted.size();
+                return sorted.stream();
+            }
+            if (wanted <= 0) {
+                sortedCount = matches.count();
+                return Stream.empty();
+            }
+            Alert[] first = new Alert[(int) Math.min(2 * wanted, 1024)];
+            int size = 0;
+            Alert bound = null;
+            long count = 0;
+            for (Alert alert : (Iterable<Alert>) matches::iterator) {
+                count++;
+                if (bound != null && order.compare(alert, bound) >= 0) {
+                    continue;
+                }
+                if (size == first.length) {
+                    if (size < 2 * wanted) {
+                        first = Arrays.copyOf(first, (int) Math.min(2 * wanted, 2L * size));
+                    } else {
+                        Arrays.sort(first, order);
+                        Arrays.fill(first, (int) wanted, size, null);
+                        size = (int) wanted;
+                        bound = first[size - 1];
+                        if (order.compare(alert, bound) >= 0) {
+                            continue;
+                        }
+                    }
+                }
+                first[size++] = alert;
+            }
+            sortedCount = count;
+            Arrays.sort(first, 0, size, order);
+            return Arrays.stream(first, 0, (int) Math.min(size, wanted));
+        }
+
+        public String explain() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Query:  ").append(query).append('\n');
+            sb.append("Access: ").append(access.description)
+              .append(" (").append(access.rows).append(" candidate rows)\n");
+            sb.append("Filter: ").append(query instanceof AlertQuery.All ? "none" : query.toString());
+            long known = knownCount();
+            if (known >= 0) {
+                sb.append(" (").append(known).append(" matches, counted by the index)\n");
+            } else {
+                sb.append(String.format(" (~%.0f matches)", estimatedMatches)).append('\n');
+            }
+            if (sort == Sort.NONE) {
+                sb.append("Order:  unordered, streamed\n");
+            } else if (isStreaming()) {
+                sb.append("Order:  ").append(sort).append(" from the access path, streamed\n");
+            } else {
+                sb.append("Order:  sort matches by ").append(sort).append('\n');
+            }
+            if (!archivedMonths.isEmpty()) {
+                sb.append("Archive: ").append(archivedMonths.size()).append(" month(s) ")
+                  .append(archivedMonths.get(0)).append("..").append(archivedMonths.get(archivedMonths.size() - 1))
+                  .append(" (").append(archivedRows).append(" rows, decompressed as read)\n");
+            }
+            if (after != null) {
+                sb.append("Cursor: after alert ").append(after.getId()).append('\n');
+            }
+            sb.append("Considered:");
+            for (Access option : considered) {
+                sb.append("\n  ").append(option.description).append(" (").append(option.rows).append(" rows)");
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,504 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Leader-follower replication of an alert store and its archive over TCP. The leader
+// ships its mutation stream (submissions, status changes, deletions, archiving, clears)
+// to any number of read-only followers, which apply it to their own stores and archives
+// and serve queries and statistics from them, spreading the read load.
+//
+// A follower that connects first receives a snapshot of the whole store and then each
+// archived month, then every mutation after the snapshot in store order. Frames carry
+// the full new state (the alerts added or archived, the new status), so applying a
+// mutation the snapshot already reflects does no harm. Followers that fall too far
+// behind are dropped and, like followers that lose their connection or receive a frame
+// they cannot apply, reconnect and start over from a fresh snapshot.
+//
+// Frame: [int length][byte type][long sequence][payload]; alert batches are encoded
+// in the snapshot format of BinaryAlertFormat, after [int year][int month] for an
+// archived month. Status frames name who made the change for the followers' status
+// history.
+class AlertReplication {
+    static final int MAGIC = 0x414C5250; // "ALRP"
+    static final int VERSION = 3;
+
+    private static final byte SNAPSHOT = 1;
+    private static final byte CREATE = 2;
+    private static final byte STATUS = 3;
+    private static final byte DELETE = 4;
+    private static final byte CLEAR = 5;
+    private static final byte HEARTBEAT = 6;
+    private static final byte ARCHIVE = 7;
+
+    private static final long HEARTBEAT_MS = 1000;
+    // A follower hearing nothing for this long assumes the leader is gone
+    private static final int READ_TIMEOUT_MS = 5000;
+    private static final long RECONNECT_MS = 1000;
+    // Frames queued per follower before it is dropped as too slow
+    private static final int MAX_BACKLOG = 10_000;
+    // Largest frame either side accepts; only whole-store snapshots come near it
+    private static final int MAX_FRAME_SIZE = 1 << 30;
+    // Payloads are read in steps of at most this, growing as the bytes arrive
+    private static final int READ_STEP = 1 << 20;
+
+    private AlertReplication() {
+    }
+
+    // Accepts followers and feeds them the store's mutations. Registered as a store
+    // listener, so its callbacks run under the store's write lock and only queue the
+    // mutation: each follower has a sender thread of its own, and whichever sender
+    // reaches an added batch first encodes it, once, for all of them.
+    static final class Leader implements AlertListener, Closeable {
+        private final AlertStore store;
+        private final AlertArchive archive;
+        private final ServerSocket server;
+        private final List<Peer> peers = new CopyOnWriteArrayList<>();
+        private final Thread acceptor;
+        // Mutations so far; only changed under the store's write lock
+        private volatile long sequence;
+
+        // Listens on the port and starts shipping the store's mutations
+        Leader(AlertStore store, AlertArchive archive, int port) throws IOException {
+            this.store = store;
+            this.archive = archive;
+            this.server = new ServerSocket();
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress(port));
+            store.addListener(this);
+            this.acceptor = new Thread(this::accept, "alert-replication-leader");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        public int getPort() {
+            return server.getLocalPort();
+        }
+
+        public int getFollowerCount() {
+            return peers.size();
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        private void accept() {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    socket.setTcpNoDelay(true);
+                    // Register while no mutation can happen, so the follower gets every
+                    // change after its snapshot and none twice
+                    Peer[] peer = new Peer[1];
+                    store.exclusive(() -> {
+                        peer[0] = new Peer(socket, sequence, store.snapshot());
+                        peers.add(peer[0]);
+                    });
+                    peer[0].start();
+                } catch (IOException e) {
+                    if (!server.isClosed()) {
+                        System.out.println("Error accepting follower: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void alertAdded(Alert alert) {
+            alertsAdded(Collections.singletonList(alert));
+        }
+
+        @Override
+        public void alertsAdded(List<Alert> alerts) {
+            sequence++;
+            if (!peers.isEmpty()) {
+                publish(new Outgoing(CREATE, sequence, null, alerts));
+            }
+        }
+
+        @Override
+        public void statusChanged(Alert alert, String previousStatus, String actor) {
+            sequence++;
+            if (!peers.isEmpty()) {
+                // Length -1 stands for an unknown actor
+                byte[] name = actor == null ? new byte[0] : actor.getBytes(StandardCharsets.UTF_8);
+                publish(new Outgoing(frame(STATUS, sequence, 9 + name.length).putInt(alert.getId())
+                        .put((byte) alert.getAlertStatus().ordinal())
+                        .putInt(actor == null ? -1 : name.length).put(name).array()));
+            }
+        }
+
+        @Override
+        public void alertRemoved(Alert alert) {
+            sequence++;
+            if (!peers.isEmpty()) {
+                publish(new Outgoing(frame(DELETE, sequence, 4).putInt(alert.getId()).array()));
+            }
+        }
+
+        @Override
+        public void alertsArchived(YearMonth month, List<Alert> alerts) {
+            sequence++;
+            if (!peers.isEmpty()) {
+                publish(new Outgoing(ARCHIVE, sequence, month, alerts));
+            }
+        }
+
+        @Override
+        public void alertsCleared() {
+            sequence++;
+            if (!peers.isEmpty()) {
+                publish(new Outgoing(frame(CLEAR, sequence, 0).array()));
+            }
+        }
+
+        private void publish(Outgoing frame) {
+            for (Peer peer : peers) {
+                if (!peer.queue.offer(frame)) {
+                    System.out.println("Follower " + peer.name + " fell too far behind; dropping it");
+                    peer.close();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            store.removeListener(this);
+            server.close();
+            for (Peer peer : peers) {
+                peer.close();
+            }
+        }
+
+        // One connected follower and the frames waiting to be sent to it
+        private final class Peer {
+            final Socket socket;
+            final String name;
+            final long snapshotSequence;
+            final BlockingQueue<Outgoing> queue = new ArrayBlockingQueue<>(MAX_BACKLOG);
+            // Encoded by the sender, outside the store's lock
+            private List<Alert> snapshot;
+
+            Peer(Socket socket, long snapshotSequence, List<Alert> snapshot) {
+                this.socket = socket;
+                this.name = socket.getRemoteSocketAddress().toString();
+                this.snapshotSequence = snapshotSequence;
+                this.snapshot = snapshot;
+            }
+
+            void start() {
+                Thread sender = new Thread(this::send, "alert-replication-" + name);
+                sender.setDaemon(true);
+                sender.start();
+            }
+
+            private void send() {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream(), 64 * 1024))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.write(checkSize(encode(SNAPSHOT, snapshotSequence, null, snapshot)));
+                    int sent = snapshot.size();
+                    snapshot = null;
+                    // Months archived meanwhile may come again in queued frames, which
+                    // replace them whole
+                    long archived = 0;
+                    for (YearMonth month : archive.months()) {
+                        List<Alert> alerts;
+                        try {
+                            alerts = archive.load(month);
+                        } catch (IOException e) {
+                            System.out.println("Error reading archived alerts for " + month + ": " + e.getMessage());
+                            continue;
+                        }
+                        out.write(checkSize(encode(ARCHIVE, snapshotSequence, month, alerts)));
+                        archived += alerts.size();
+                    }
+                    out.flush();
+                    System.out.println("Follower " + name + " connected; sent " + sent + " alerts and "
+                                       + archived + " archived");
+                    while (!socket.isClosed()) {
+                        Outgoing frame = queue.poll(HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+                        out.write(checkSize(frame == null ? frame(HEARTBEAT, sequence, 0).array() : frame.bytes()));
+                        // Write whatever else is ready before flushing once
+                        while ((frame = queue.poll()) != null) {
+                            out.write(checkSize(frame.bytes()));
+                        }
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    if (!socket.isClosed()) {
+                        System.out.println("Follower " + name + " disconnected: " + e.getMessage());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    close();
+                }
+            }
+
+            void close() {
+                peers.remove(this);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Nothing left to release
+                }
+            }
+        }
+    }
+
+    // A frame queued for every follower. Added and archived batches are encoded when
+    // first sent rather than under the store's lock; an alert's status may have moved on
+    // by then, which the status frames queued after it make good on.
+    private static final class Outgoing {
+        private final byte type;
+        private final long sequence;
+        private final YearMonth month;
+        private List<Alert> alerts;
+        private byte[] bytes;
+
+        Outgoing(byte[] bytes) {
+            this(bytes[4], 0, null, null);
+            this.bytes = bytes;
+        }
+
+        Outgoing(byte type, long sequence, YearMonth month, List<Alert> alerts) {
+            this.type = type;
+            this.sequence = sequence;
+            this.month = month;
+            this.alerts = alerts;
+        }
+
+        synchronized byte[] bytes() {
+            if (bytes == null) {
+                bytes = encode(type, sequence, month, alerts);
+                alerts = null;
+            }
+            return bytes;
+        }
+    }
+
+    // Keeps a local store and archive in step with a leader, reconnecting whenever the
+    // connection drops. Neither must be changed by anything else meanwhile.
+    static final class Follower implements Closeable {
+        private final AlertStore store;
+        private final AlertArchive archive;
+        private final String host;
+        private final int port;
+        private final Runnable afterSnapshot;
+        private final Thread receiver;
+        private volatile Socket socket;
+        private volatile boolean closed;
+        private volatile boolean connected;
+        private volatile long appliedSequence;
+        private volatile long leaderSequence;
+
+        // afterSnapshot runs each time the store has been replaced by a leader's snapshot
+        Follower(AlertStore store, AlertArchive archive, String host, int port, Runnable afterSnapshot) {
+            this.store = store;
+            this.archive = archive;
+            this.host = host;
+            this.port = port;
+            this.afterSnapshot = afterSnapshot;
+            this.receiver = new Thread(this::run, "alert-replication-follower");
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+
+        public String getLeader() {
+            return host + ":" + port;
+        }
+
+        public boolean isConnected() {
+            return connected;
+        }
+
+        // The leader's sequence number of the last mutation applied here
+        public long getAppliedSequence() {
+            return appliedSequence;
+        }
+
+        // Mutations the leader has made that are not yet applied here, as of its last frame
+        public long getLag() {
+            return Math.max(0, leaderSequence - appliedSequence);
+        }
+
+        private void run() {
+            while (!closed) {
+                try (Socket s = new Socket()) {
+                    socket = s;
+                    s.connect(new InetSocketAddress(host, port), READ_TIMEOUT_MS);
+                    s.setSoTimeout(READ_TIMEOUT_MS);
+                    s.setTcpNoDelay(true);
+                    receive(new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024)));
+                } catch (SocketTimeoutException e) {
+                    System.out.println("Leader " + getLeader() + " went silent; reconnecting");
+                } catch (EOFException e) {
+                    if (!closed && connected) {
+                        System.out.println("Leader " + getLeader() + " closed the connection; reconnecting");
+                    }
+                } catch (IOException e) {
+                    if (!closed && connected) {
+                        System.out.println("Lost leader " + getLeader() + ": " + e.getMessage());
+                    }
+                } catch (RuntimeException e) {
+                    // A frame this store cannot apply, such as a duplicate ID or a truncated
+                    // payload; the store may be partly changed, so start over from a snapshot
+                    System.out.println("Error applying replication frame from " + getLeader() + ": " + e
+                                       + "; resynchronizing");
+                }
+                connected = false;
+                if (!closed) {
+                    try {
+                        Thread.sleep(RECONNECT_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void receive(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an alert replication leader");
+            }
+            while (!closed) {
+                int length = in.readInt();
+                if (length < 9 || length > MAX_FRAME_SIZE) {
+                    throw new IOException("Corrupt replication frame of " + length + " bytes");
+                }
+                byte type = in.readByte();
+                long sequence = in.readLong();
+                byte[] payload = readPayload(in, length - 9);
+                leaderSequence = sequence;
+                if (type == HEARTBEAT) {
+                    continue;
+                }
+                apply(type, ByteBuffer.wrap(payload));
+                appliedSequence = sequence;
+                if (type == SNAPSHOT) {
+                    connected = true;
+                    System.out.println("Following " + getLeader() + " from " + store.size() + " alerts");
+                    afterSnapshot.run();
+                }
+            }
+        }
+
+        // Grown as the bytes arrive, so a corrupt length costs no more than what is sent
+        private static byte[] readPayload(DataInputStream in, int size) throws IOException {
+            byte[] payload = new byte[Math.min(size, READ_STEP)];
+            int read = 0;
+            while (read < size) {
+                if (read == payload.length) {
+                    payload = Arrays.copyOf(payload, (int) Math.min(size, (long) payload.length * 2));
+                }
+                int n = in.read(payload, read, payload.length - read);
+                if (n < 0) {
+                    throw new EOFException("Replication frame cut short at " + read + " of " + size + " bytes");
+                }
+                read += n;
+            }
+            return payload;
+        }
+
+        private void apply(byte type, ByteBuffer payload) throws IOException {
+            switch (type) {
+                case SNAPSHOT:
+                    // The leader's archived months follow
+                    archive.clear();
+                    store.load(BinaryAlertFormat.decode(payload));
+                    break;
+                case CREATE:
+                    store.addAll(BinaryAlertFormat.decode(payload));
+                    break;
+                case STATUS: {
+                    int id = payload.getInt();
+                    AlertStatus status = AlertStatus.values()[payload.get()];
+                    int length = payload.getInt();
+                    String actor = null;
+                    if (length >= 0) {
+                        byte[] name = new byte[length];
+                        payload.get(name);
+                        actor = new String(name, StandardCharsets.UTF_8);
+                    }
+                    store.updateStatus(id, null, status, actor);
+                    break;
+                }
+                case DELETE:
+                    store.removeById(payload.getInt());
+                    break;
+                case ARCHIVE: {
+                    YearMonth month = YearMonth.of(payload.getInt(), payload.getInt());
+                    List<Alert> archived = BinaryAlertFormat.decode(payload.slice());
+                    archive.add(month, archived);
+                    store.archiveAll(month, archived.stream().mapToInt(Alert::getId).toArray());
+                    break;
+                }
+                case CLEAR:
+                    store.clear();
+                    archive.clear();
+                    break;
+                default:
+                    throw new IOException("Unknown replication frame type: " + type);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            Socket s = socket;
+            if (s != null) {
+                s.close();
+            }
+            receiver.interrupt();
+        }
+    }
+
+    // The frame itself, or an IOException that drops the follower when it is larger
+    // than followers accept
+    private static byte[] checkSize(byte[] frame) throws IOException {
+        if (frame.length - 4 > MAX_FRAME_SIZE) {
+            throw new IOException("Replication frame of " + (frame.length - 4) + " bytes exceeds the limit of "
+                                  + MAX_FRAME_SIZE);
+        }
+        return frame;
+    }
+
+    // A frame with room for a payload of the given size, positioned at the payload
+    private static ByteBuffer frame(byte type, long sequence, int payloadSize) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 9 + payloadSize);
+        buffer.putInt(9 + payloadSize).put(type).putLong(sequence);
+        return buffer;
+    }
+
+    // A frame of alerts, preceded by their month when one is given
+    private static byte[] encode(byte type, long sequence, YearMonth month, Collection<Alert> alerts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + alerts.size() * 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeByte(type);
+            out.writeLong(sequence);
+            if (month != null) {
+                out.writeInt(month.getYear());
+                out.writeInt(month.getMonthValue());
+            }
+            BinaryAlertFormat.write(out, alerts, Alert.peekNextId());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] frame = bytes.toByteArray();
+        ByteBuffer.wrap(frame).putInt(0, frame.length - 4);
+        return frame;
+    }
+}
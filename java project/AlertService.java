@@ -0,0 +1,558 @@
+import java.io.*;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Non-interactive alert engine: owns the store, its derived indexes and persistence,
+// and answers queries without any console I/O. Scans are returned as lazy streams
+// that callers page with offset and limit, so only the alerts actually consumed are
+// visited. Safe for concurrent use; the console and HTTP front-ends sit on top of it.
+//
+// Storage is tiered by reporting month. Open alerts and anything reported in the last
+// HOT_MONTHS months stay on the heap; older RESOLVED and CLOSED alerts move to a
+// compressed monthly archive at startup, after imports and, for a long-running server,
+// once a day. Followers receive their leader's archive instead. Listings, statistics
+// and indexes cover the heap; lookups by ID, exports and queries with a time condition
+// also reach the archive.
+//
+// Every eager operation is timed into metrics(). Listings are handed out as lazy streams,
+// so their callers time them.
+class AlertService implements Closeable {
+    static final String DATA_FILE = "alerts_data.bin";
+    static final String LEGACY_DATA_FILE = "alerts_data.ser";
+    static final String LOG_FILE = "alerts_data.log";
+    static final String ARCHIVE_DIRECTORY = "alerts_archive";
+    static final String HISTORY_FILE = "alerts_history.bin";
+    static final int HOT_MONTHS = 3;
+    static final long ARCHIVE_INTERVAL_HOURS = 24;
+
+    private final AlertMetrics metrics = new AlertMetrics();
+    private final AlertStore alerts = new AlertStore();
+    private final AlertStatistics statistics = new AlertStatistics();
+    private final AlertSortIndex sortIndex = new AlertSortIndex();
+    private final AlertTextIndex textIndex = new AlertTextIndex(alerts);
+    private final AlertGeoIndex geoIndex = new AlertGeoIndex();
+    private final AlertBitmapIndex bitmapIndex = new AlertBitmapIndex();
+    private final AlertClusters clusters = new AlertClusters();
+    private final AlertTrends trends = new AlertTrends();
+    private final AlertSubscriptions subscriptions = new AlertSubscriptions();
+    private final AlertDispatchQueue dispatchQueue = new AlertDispatchQueue();
+    private final AlertHistory history;
+    private final AlertArchive archive;
+    private final AlertQueryPlanner planner;
+    private final AlertLog alertLog;
+    private volatile AlertReplication.Leader leader;
+    private volatile AlertReplication.Follower follower;
+    private ScheduledExecutorService archiver;
+
+    public AlertService() {
+        this(null);
+    }
+
+    // Keep the data files in the given directory; null means the working directory
+    public AlertService(File dataDirectory) {
+        alerts.addListener(statistics);
+        alerts.addListener(sortIndex);
+        alerts.addListener(textIndex);
+        alerts.addListener(geoIndex);
+        alerts.addListener(bitmapIndex);
+        alerts.addListener(clusters);
+        alerts.addListener(trends);
+        alerts.addListener(dispatchQueue);
+        this.history = new AlertHistory(new File(dataDirectory, HISTORY_FILE));
+        try {
+            history.open();
+        } catch (IOException e) {
+            System.out.println("Error loading status history: " + e.getMessage());
+        }
+        alerts.addListener(history);
+        this.archive = new AlertArchive(new File(dataDirectory, ARCHIVE_DIRECTORY));
+        this.planner = new AlertQueryPlanner(alerts, statistics, sortIndex, textIndex, bitmapIndex, archive);
+        this.alertLog = new AlertLog(new File(dataDirectory, DATA_FILE).getPath(),
+                                     new File(dataDirectory, LEGACY_DATA_FILE).getPath(),
+                                     new File(dataDirectory, LOG_FILE).getPath(),
+                                     alerts::snapshot);
+        long start = AlertMetrics.start();
+        try {
+            alerts.load(alertLog.recover());
+        } catch (IOException | ClassNotFoundException e) {
+            System.out.println("Error loading alerts: " + e.getMessage());
+        }
+        metrics.record(AlertMetrics.Operation.LOAD, start);
+        alerts.addListener(alertLog);
+        archive(YearMonth.now().minusMonths(HOT_MONTHS - 1));
+        alerts.addListener(subscriptions);
+    }
+
+    // Ship every later change to followers that connect on the given port
+    public AlertReplication.Leader replicate(int port) throws IOException {
+        if (leader != null || follower != null) {
+            throw new IllegalStateException("Replication is already set up");
+        }
+        leader = new AlertReplication.Leader(alerts, archive, port);
+        return leader;
+    }
+
+    // Mirror a leader's alerts from now on. The service becomes read-only: changes must be
+    // sent to the leader. Each snapshot received is saved, so the local files stay whole.
+    public AlertReplication.Follower follow(String host, int port) {
+        if (leader != null || follower != null) {
+            throw new IllegalStateException("Replication is already set up");
+        }
+        follower = new AlertReplication.Follower(alerts, archive, host, port, this::save);
+        return follower;
+    }
+
+    // The replication roles of this service; null when it has none
+    public AlertReplication.Leader leader() {
+        return leader;
+    }
+
+    public AlertReplication.Follower follower() {
+        return follower;
+    }
+
+    // Throws ReadOnlyException on a read-only follower; front ends call it before
+    // building an alert, since a new Alert takes an ID even if it is then refused
+    void checkWritable() {
+        AlertReplication.Follower current = follower;
+        if (current != null) {
+            throw new ReadOnlyException("Read-only follower of " + current.getLeader()
+                                            + "; send changes to the leader");
+        }
+    }
+
+    public Alert submit(Alert alert) {
+        checkWritable();
+        long start = AlertMetrics.start();
+        try {
+            alerts.add(alert);
+            return alert;
+        } finally {
+            metrics.record(AlertMetrics.Operation.SUBMIT, start);
+        }
+    }
+
+    // The updated alert, or null if there is no alert with this ID
+    public Alert updateStatus(int id, AlertStatus status) {
+        return updateStatus(id, status, null);
+    }
+
+    // The same, recording the actor (null when unknown) in the alert's status history
+    public Alert updateStatus(int id, AlertStatus status, String actor) {
+        checkWritable();
+        long start = AlertMetrics.start();
+        try {
+            return alerts.updateStatus(id, null, status, actor);
+        } finally {
+            metrics.record(AlertMetrics.Operation.UPDATE_STATUS, start);
+        }
+    }
+
+    // Take the most pressing OPEN alert off the dispatch queue and mark it IN_PROGRESS;
+    // null when nothing is waiting. Concurrent callers never get the same alert.
+    public Alert claimNext() {
+        return claimNext(null);
+    }
+
+    // The same, on behalf of the actor (null when unknown)
+    public Alert claimNext(String actor) {
+        checkWritable();
+        long start = AlertMetrics.start();
+        try {
+            Alert alert;
+            while ((alert = dispatchQueue.poll()) != null) {
+                // Fails only if someone changed or deleted the alert since it was queued
+                if (alerts.updateStatus(alert.getId(), AlertStatus.OPEN, AlertStatus.IN_PROGRESS, actor) != null) {
+                    return alert;
+                }
+            }
+            return null;
+        } finally {
+            metrics.record(AlertMetrics.Operation.CLAIM, start);
+        }
+    }
+
+    // The deleted alert, or null if there is no alert with this ID
+    public Alert delete(int id) {
+        checkWritable();
+        long start = AlertMetrics.start();
+        try {
+            return alerts.removeById(id);
+        } finally {
+            metrics.record(AlertMetrics.Operation.DELETE, start);
+        }
+    }
+
+    // Delete every alert along with the data files and the archive; returns how many were removed
+    public int clear() {
+        checkWritable();
+        int count = alerts.size() + (int) archive.size();
+        alerts.clear();
+        try {
+            archive.clear();
+        } catch (IOException e) {
+            System.out.println("Error deleting archived alerts: " + e.getMessage());
+        }
+        return count;
+    }
+
+    // Move RESOLVED and CLOSED alerts reported before the given month into the archive
+    // and snapshot what remains; returns how many moved. The store stays locked
+    // meanwhile, so no archived alert can change on the way out.
+    public int archive(YearMonth before) {
+        long start = AlertMetrics.start();
+        int[] moved = {0};
+        alerts.exclusive(() -> {
+            Map<YearMonth, List<Alert>> byMonth = new TreeMap<>();
+            for (Alert alert : alerts) {
+                YearMonth month = YearMonth.from(alert.getTimestamp());
+                if (month.isBefore(before) && isClosed(alert)) {
+                    byMonth.computeIfAbsent(month, m -> new ArrayList<>()).add(alert);
+                }
+            }
+            for (Map.Entry<YearMonth, List<Alert>> entry : byMonth.entrySet()) {
+                try {
+                    archive.add(entry.getKey(), entry.getValue());
+                } catch (IOException e) {
+                    // These alerts stay on the heap and are tried again next time
+                    System.out.println("Error archiving alerts for " + entry.getKey() + ": " + e.getMessage());
+                    continue;
+                }
+                alerts.archiveAll(entry.getKey(), entry.getValue().stream().mapToInt(Alert::getId).toArray());
+                moved[0] += entry.getValue().size();
+            }
+        });
+        metrics.record(AlertMetrics.Operation.ARCHIVE, start);
+        if (moved[0] > 0) {
+            save();
+        }
+        return moved[0];
+    }
+
+    // Archive what has become old enough every ARCHIVE_INTERVAL_HOURS from now on, on a
+    // thread of its own; a follower skips it, as its leader's archiving reaches it
+    public synchronized void startArchiving() {
+        if (archiver != null) {
+            return;
+        }
+        archiver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "alert-archive");
+            t.setDaemon(true);
+            return t;
+        });
+        archiver.scheduleWithFixedDelay(() -> {
+            if (follower == null) {
+                archive(YearMonth.now().minusMonths(HOT_MONTHS - 1));
+            }
+        }, ARCHIVE_INTERVAL_HOURS, ARCHIVE_INTERVAL_HOURS, TimeUnit.HOURS);
+    }
+
+    private static boolean isClosed(Alert alert) {
+        AlertStatus status = alert.getAlertStatus();
+        return status == AlertStatus.RESOLVED || status == AlertStatus.CLOSED;
+    }
+
+    // Receive later submissions and status changes matching the filter through a queue
+    // of the given capacity
+    public AlertSubscriptions.Subscription subscribe(AlertSubscriptions.Filter filter, int capacity,
+                                                     AlertSubscriptions.Overflow overflow) {
+        return subscriptions.subscribe(filter, capacity, overflow);
+    }
+
+    public void unsubscribe(AlertSubscriptions.Subscription subscription) {
+        subscriptions.unsubscribe(subscription);
+    }
+
+    // Notify the listener of every later change, in mutation order
+    public void addListener(AlertListener listener) {
+        alerts.addListener(listener);
+    }
+
+    // Alerts on the heap
+    public int size() {
+        return alerts.size();
+    }
+
+    public long archivedSize() {
+        return archive.size();
+    }
+
+    // Whether the heap holds no alerts; archived ones may still exist
+    public boolean isEmpty() {
+        return alerts.isEmpty();
+    }
+
+    // Whether any alert exists, on the heap or archived
+    public boolean hasAnyAlerts() {
+        return !alerts.isEmpty() || archive.size() > 0;
+    }
+
+    // The alert on the heap or, failing that, in the archive
+    public Alert findById(int id) {
+        long start = AlertMetrics.start();
+        Alert alert = alerts.findById(id);
+        if (alert == null) {
+            try {
+                alert = archive.findById(id);
+            } catch (IOException e) {
+                System.out.println("Error reading archived alerts: " + e.getMessage());
+            }
+        }
+        metrics.record(AlertMetrics.Operation.LOOKUP, start);
+        return alert;
+    }
+
+    // Whether the alert has moved to the archive, where it can no longer change
+    public boolean isArchived(int id) {
+        return alerts.findById(id) == null && findById(id) != null;
+    }
+
+    // Every alert in submission order
+    public Stream<Alert> all() {
+        return alerts.stream();
+    }
+
+    // The submission order continued just past the given alert
+    public Stream<Alert> allAfter(Alert cursor) {
+        return alerts.streamAfter(cursor);
+    }
+
+    // Alerts in the category in submission order, continued just past the given alert.
+    // Filtered lazily from the store, so reading one page visits only the alerts up to it.
+    public Stream<Alert> byCategoryAfter(AlertCategory category, Alert cursor) {
+        return alerts.streamAfter(cursor).filter(alert -> alert.getCategory() == category);
+    }
+
+    // Most urgent first, newest first within an urgency
+    public Stream<Alert> byUrgency() {
+        return sortIndex.byUrgency();
+    }
+
+    // The urgency order continued just past the given alert
+    public Stream<Alert> byUrgencyAfter(Alert cursor) {
+        return sortIndex.byUrgencyAfter(cursor);
+    }
+
+    // Alphabetical by location, newest first within a location
+    public Stream<Alert> byLocation() {
+        return sortIndex.byLocation();
+    }
+
+    // The location order continued just past the given alert
+    public Stream<Alert> byLocationAfter(Alert cursor) {
+        return sortIndex.byLocationAfter(cursor);
+    }
+
+    // Alerts in the category in submission order, found from its bitmap
+    public Stream<Alert> byCategory(AlertCategory category) {
+        return query(AlertQuery.category(category), AlertQueryPlanner.Sort.NONE);
+    }
+
+    public Stream<Alert> byStatus(AlertStatus status) {
+        return query(AlertQuery.status(status), AlertQueryPlanner.Sort.NONE);
+    }
+
+    // Matches of a compound query in the given order, streamed lazily where the plan allows
+    public Stream<Alert> query(AlertQuery query, AlertQueryPlanner.Sort sort) {
+        return planner.plan(query, sort, null).stream();
+    }
+
+    // The first matches of a compound query, planned for reading only that many
+    public Stream<Alert> query(AlertQuery query, AlertQueryPlanner.Sort sort, int limit) {
+        return planner.plan(query, sort, null, limit).stream(limit);
+    }
+
+    // Counts by category, urgency and status among the alerts matching the query, taken
+    // from bitmaps alone when the query only involves those fields
+    public AlertBitmapIndex.Facets facets(AlertQuery query) {
+        long start = AlertMetrics.start();
+        AlertBitmapIndex.Facets facets = bitmapIndex.facets(query);
+        if (facets == null) {
+            Stream<Alert> matches = query(query, AlertQueryPlanner.Sort.NONE);
+            facets = AlertBitmapIndex.Facets.of(matches::iterator);
+        }
+        metrics.record(AlertMetrics.Operation.STATISTICS, start);
+        return facets;
+    }
+
+    // The plan for a query, for running it from a cursor or explaining how it is answered
+    public AlertQueryPlanner.Plan plan(AlertQuery query, AlertQueryPlanner.Sort sort, Alert after) {
+        return planner.plan(query, sort, after);
+    }
+
+    // Alerts whose location contains the term, ignoring case, in ID order
+    public List<Alert> searchLocation(String term) {
+        long start = AlertMetrics.start();
+        List<Alert> results = textIndex.searchLocation(term);
+        metrics.record(AlertMetrics.Operation.SEARCH, start);
+        return results;
+    }
+
+    // Alerts whose title or description contains every whitespace-separated term
+    public List<Alert> searchText(String query) {
+        long start = AlertMetrics.start();
+        List<Alert> results = textIndex.searchText(query);
+        metrics.record(AlertMetrics.Operation.SEARCH, start);
+        return results;
+    }
+
+    // Alerts within the given distance of a point, nearest first
+    public List<Alert> withinRadius(double latitude, double longitude, double meters) {
+        long start = AlertMetrics.start();
+        List<Alert> results = geoIndex.withinRadius(latitude, longitude, meters);
+        metrics.record(AlertMetrics.Operation.SEARCH, start);
+        return results;
+    }
+
+    // The k alerts closest to a point, nearest first
+    public List<Alert> nearest(double latitude, double longitude, int k) {
+        long start = AlertMetrics.start();
+        List<Alert> results = geoIndex.nearest(latitude, longitude, k);
+        metrics.record(AlertMetrics.Operation.SEARCH, start);
+        return results;
+    }
+
+    public List<Alert> withinBox(double minLatitude, double minLongitude,
+                                 double maxLatitude, double maxLongitude) {
+        long start = AlertMetrics.start();
+        List<Alert> results = geoIndex.withinBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+        metrics.record(AlertMetrics.Operation.SEARCH, start);
+        return results;
+    }
+
+    // Live counts by category, urgency and status
+    public AlertStatistics statistics() {
+        return statistics;
+    }
+
+    // Operation counts and latencies
+    public AlertMetrics metrics() {
+        return metrics;
+    }
+
+    // Reports of the same incident, linked as they arrive; covers the heap
+    public AlertClusters clusters() {
+        return clusters;
+    }
+
+    // Hourly report counts and location hotspots over the last week
+    public AlertTrends trends() {
+        return trends;
+    }
+
+    // Every alert's status changes, with response and resolution times; covers archived
+    // and deleted alerts too
+    public AlertHistory history() {
+        return history;
+    }
+
+    // The incident's reports still on the heap, in arrival order
+    public List<Alert> alertsOf(AlertClusters.Incident incident) {
+        return alerts.findAllById(incident.getAlertIds());
+    }
+
+    // OPEN alerts in the order claimNext hands them out, with waiting and in-progress counts
+    public AlertDispatchQueue dispatchQueue() {
+        return dispatchQueue;
+    }
+
+    // One page of a result; only the alerts up to the end of the page are visited
+    static <T> List<T> page(Stream<T> results, long offset, int limit) {
+        return results.skip(offset).limit(limit).collect(Collectors.toList());
+    }
+
+    // Export archived alerts and a consistent snapshot of the rest to a file; returns
+    // the number written
+    public long export(AlertExporter exporter, File file) throws IOException {
+        long start = AlertMetrics.start();
+        try {
+            return exporter.exportTo(file, withArchive(alerts.snapshot()));
+        } finally {
+            metrics.record(AlertMetrics.Operation.EXPORT, start);
+        }
+    }
+
+    // Stream archived then current alerts to an open output as they are read; returns
+    // the number written
+    public long export(AlertExporter exporter, OutputStream out) throws IOException {
+        long start = AlertMetrics.start();
+        try {
+            return exporter.write(out, withArchive(alerts));
+        } finally {
+            metrics.record(AlertMetrics.Operation.EXPORT, start);
+        }
+    }
+
+    // Every archived month, decoded one at a time, followed by the given alerts
+    private Iterable<Alert> withArchive(Collection<Alert> current) {
+        return () -> Stream.concat(archive.stream(archive.months()), current.stream()).iterator();
+    }
+
+    // Add every valid record of the input a batch at a time, then archive what is old
+    // enough and write a fresh snapshot, so the next start need not replay the import
+    public AlertImporter.Result importAlerts(AlertImporter importer, InputStream in) throws IOException {
+        checkWritable();
+        long start = AlertMetrics.start();
+        try {
+            AlertImporter.Result result = importer.read(in, alerts::addAll);
+            if (result.getImported() > 0 && archive(YearMonth.now().minusMonths(HOT_MONTHS - 1)) == 0) {
+                save();
+            }
+            return result;
+        } finally {
+            metrics.record(AlertMetrics.Operation.IMPORT, start);
+        }
+    }
+
+    // Save a full snapshot of all alerts and reset the log
+    public void save() {
+        long start = AlertMetrics.start();
+        alerts.exclusive(() -> persist(log -> log.checkpoint(alerts.snapshot())));
+        metrics.record(AlertMetrics.Operation.SAVE, start);
+    }
+
+    // Stop archiving and replicating and flush pending log and history records
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (archiver != null) {
+                // A run in progress finishes before the log is closed
+                archiver.shutdown();
+                try {
+                    archiver.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        try {
+            if (leader != null) {
+                leader.close();
+            }
+            if (follower != null) {
+                follower.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Error stopping replication: " + e.getMessage());
+        }
+        persist(AlertLog::close);
+        try {
+            history.close();
+        } catch (IOException e) {
+            System.out.println("Error saving status history: " + e.getMessage());
+        }
+    }
+
+    private void persist(AlertLog.Mutation mutation) {
+        try {
+            mutation.applyTo(alertLog);
+        } catch (IOException e) {
+            System.out.println("Error saving alerts: " + e.getMessage());
+        }
+    }
+}
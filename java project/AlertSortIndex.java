@@ -0,0 +1,109 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+// Secondary indexes that keep alerts permanently in urgency and location order, so the
+// sorted views stream straight out of the index instead of copying and sorting per request.
+// Urgency order is one bucket per level, newest first; location order is case-insensitive,
+// newest first within a location. Both break remaining ties by ID so every alert has a
+// unique position. Updated under the store's write lock; readers need no locking.
+class AlertSortIndex implements AlertListener {
+    // Newest first, then highest ID first; the order within one urgency bucket
+    private static final Comparator<Alert> NEWEST_FIRST = (a1, a2) -> {
+        int timeCompare = Long.compare(a2.getTimestampMillis(), a1.getTimestampMillis());
+        return timeCompare != 0 ? timeCompare : Integer.compare(a2.getId(), a1.getId());
+    };
+
+    static final Comparator<Alert> URGENCY_ORDER =
+        new UrgencyComparator().thenComparing((a1, a2) -> Integer.compare(a2.getId(), a1.getId()));
+    static final Comparator<Alert> LOCATION_ORDER =
+        new LocationComparator().thenComparing((a1, a2) -> Integer.compare(a2.getId(), a1.getId()));
+
+    private final List<NavigableSet<Alert>> urgencyBuckets = new ArrayList<>();
+    private final NavigableSet<Alert> byLocation = new ConcurrentSkipListSet<>(LOCATION_ORDER);
+
+    public AlertSortIndex() {
+        // One bucket per urgency ordinal; views walk them from the highest level down
+        for (int i = 0; i < Urgency.values().length; i++) {
+            urgencyBuckets.add(new ConcurrentSkipListSet<>(NEWEST_FIRST));
+        }
+    }
+
+    @Override
+    public void alertAdded(Alert alert) {
+        bucket(alert).add(alert);
+        byLocation.add(alert);
+    }
+
+    @Override
+    public void alertRemoved(Alert alert) {
+        bucket(alert).remove(alert);
+        byLocation.remove(alert);
+    }
+
+    @Override
+    public void alertsCleared() {
+        for (NavigableSet<Alert> bucket : urgencyBuckets) {
+            bucket.clear();
+        }
+        byLocation.clear();
+    }
+
+    @Override
+    public void alertsLoaded(Iterable<Alert> alerts) {
+        alertsCleared();
+        for (Alert alert : alerts) {
+            alertAdded(alert);
+        }
+    }
+
+    // All alerts in UrgencyComparator order
+    public Stream<Alert> byUrgency() {
+        return byUrgencyAfter(null);
+    }
+
+    // Alerts that come after the cursor in urgency order; a null cursor starts at the top
+    public Stream<Alert> byUrgencyAfter(Alert cursor) {
+        Urgency[] levels = Urgency.values();
+        return byUrgencyBetween(levels[0], levels[levels.length - 1], cursor);
+    }
+
+    // Alerts with urgency from min to max inclusive, in urgency order, starting after
+    // the cursor when one is given
+    public Stream<Alert> byUrgencyBetween(Urgency min, Urgency max, Alert cursor) {
+        int start = max.ordinal();
+        Stream<Alert> head = Stream.empty();
+        if (cursor != null) {
+            int level = cursor.getUrgency().ordinal();
+            if (level < min.ordinal()) {
+                // Every alert in range sorts before the cursor
+                return Stream.empty();
+            }
+            if (level <= start) {
+                start = level;
+                head = urgencyBuckets.get(start).tailSet(cursor, false).stream();
+                start--;
+            }
+        }
+        List<Stream<Alert>> parts = new ArrayList<>();
+        parts.add(head);
+        for (int i = start; i >= min.ordinal(); i--) {
+            parts.add(urgencyBuckets.get(i).stream());
+        }
+        return parts.stream().flatMap(s -> s);
+    }
+
+    // All alerts in LocationComparator order
+    public Stream<Alert> byLocation() {
+        return byLocation.stream();
+    }
+
+    // Alerts that come after the cursor in location order; a null cursor starts at the top
+    public Stream<Alert> byLocationAfter(Alert cursor) {
+        return cursor == null ? byLocation() : byLocation.tailSet(cursor, false).stream();
+    }
+
+    private NavigableSet<Alert> bucket(Alert alert) {
+        return urgencyBuckets.get(alert.getUrgency().ordinal());
+    }
+}
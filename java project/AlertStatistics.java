@@ -0,0 +1,133 @@
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Live alert counts by category, urgency and status, kept current by store callbacks
+// so statistics are O(1) to read no matter how many alerts exist. Counters are indexed
+// by enum ordinal; they are updated under the store's write lock and may be read from
+// any thread.
+class AlertStatistics implements AlertListener {
+    private static final AlertCategory[] CATEGORIES = AlertCategory.values();
+    private static final Urgency[] URGENCIES = Urgency.values();
+    private static final AlertStatus[] STATUSES = AlertStatus.values();
+
+    private final AtomicLongArray byCategory = new AtomicLongArray(CATEGORIES.length);
+    private final AtomicLongArray byUrgency = new AtomicLongArray(URGENCIES.length);
+    private final AtomicLongArray byStatus = new AtomicLongArray(STATUSES.length);
+
+    @Override
+    public void alertAdded(Alert alert) {
+        count(alert, 1);
+    }
+
+    // Tally the batch locally, then touch each shared counter once
+    @Override
+    public void alertsAdded(List<Alert> alerts) {
+        long[] categories = new long[CATEGORIES.length];
+        long[] urgencies = new long[URGENCIES.length];
+        long[] statuses = new long[STATUSES.length];
+        for (Alert alert : alerts) {
+            categories[alert.getCategory().ordinal()]++;
+            urgencies[alert.getUrgency().ordinal()]++;
+            statuses[alert.getAlertStatus().ordinal()]++;
+        }
+        add(byCategory, categories);
+        add(byUrgency, urgencies);
+        add(byStatus, statuses);
+    }
+
+    @Override
+    public void statusChanged(Alert alert, String previousStatus) {
+        byStatus.decrementAndGet(AlertStatus.valueOf(previousStatus).ordinal());
+        byStatus.incrementAndGet(alert.getAlertStatus().ordinal());
+    }
+
+    @Override
+    public void alertRemoved(Alert alert) {
+        count(alert, -1);
+    }
+
+    @Override
+    public void alertsCleared() {
+        reset();
+    }
+
+    @Override
+    public void alertsLoaded(Iterable<Alert> alerts) {
+        reset();
+        for (Alert alert : alerts) {
+            count(alert, 1);
+        }
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (int i = 0; i < byCategory.length(); i++) {
+            total += byCategory.get(i);
+        }
+        return total;
+    }
+
+    public long getCount(AlertCategory category) {
+        return byCategory.get(category.ordinal());
+    }
+
+    public long getCount(Urgency urgency) {
+        return byUrgency.get(urgency.ordinal());
+    }
+
+    public long getCount(AlertStatus status) {
+        return byStatus.get(status.ordinal());
+    }
+
+    // Non-zero counts in declaration order
+    public Map<AlertCategory, Long> getCategoryCounts() {
+        return toMap(AlertCategory.class, CATEGORIES, byCategory);
+    }
+
+    public Map<Urgency, Long> getUrgencyCounts() {
+        return toMap(Urgency.class, URGENCIES, byUrgency);
+    }
+
+    public Map<AlertStatus, Long> getStatusCounts() {
+        return toMap(AlertStatus.class, STATUSES, byStatus);
+    }
+
+    private void count(Alert alert, int delta) {
+        byCategory.addAndGet(alert.getCategory().ordinal(), delta);
+        byUrgency.addAndGet(alert.getUrgency().ordinal(), delta);
+        byStatus.addAndGet(alert.getAlertStatus().ordinal(), delta);
+    }
+
+    private static void add(AtomicLongArray counters, long[] deltas) {
+        for (int i = 0; i < deltas.length; i++) {
+            if (deltas[i] != 0) {
+                counters.addAndGet(i, deltas[i]);
+            }
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            byCategory.set(i, 0);
+        }
+        for (int i = 0; i < URGENCIES.length; i++) {
+            byUrgency.set(i, 0);
+        }
+        for (int i = 0; i < STATUSES.length; i++) {
+            byStatus.set(i, 0);
+        }
+    }
+
+    private static <E extends Enum<E>> Map<E, Long> toMap(Class<E> type, E[] keys, AtomicLongArray counts) {
+        Map<E, Long> map = new EnumMap<>(type);
+        for (int i = 0; i < keys.length; i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                map.put(keys[i], count);
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,4 @@
+// Lifecycle states of an alert
+enum AlertStatus {
+    OPEN, IN_PROGRESS, RESOLVED, CLOSED
+}
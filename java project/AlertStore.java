@@ -0,0 +1,387 @@
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Thread-safe, insertion-ordered alert collection with constant-time lookup and
+// removal by ID. Alerts sit in a dense slot array indexed by an IntIntHashMap of
+// ID -> slot. Removal leaves an empty slot, and the array is compacted once empty
+// slots outnumber live alerts, so deletes stay O(1) amortized and order is kept.
+//
+// Mutations take the write lock and notify listeners before releasing it, so a
+// change and its side effects (such as the log record) are applied atomically.
+// This one lock deliberately serializes writers, listener work included, since the
+// log, the indexes and replication all rely on seeing changes in a single order;
+// readers run in parallel. The price is that a slow listener stalls every writer, so
+// listeners keep their I/O off it: status history and replication only queue work for
+// threads of their own, and the log buffers its records and leaves writing and forcing
+// them to its background sync. benchmarks/AlertStressCheck exercises it under contention.
+// Each mutation holds the lock for amortized O(1) work. Iterators are weakly consistent:
+// compaction and clear() swap in a new array rather than moving alerts in place,
+// so an iterator never throws, never repeats an alert, and may miss concurrent changes.
+class AlertStore extends AbstractCollection<Alert> {
+    private static final int MIN_CAPACITY = 16;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<AlertListener> listeners = new CopyOnWriteArrayList<>();
+    private final IntIntHashMap index = new IntIntHashMap();
+    private volatile Alert[] slots = new Alert[MIN_CAPACITY];
+    private volatile int used;
+    private volatile int size;
+
+    public void addListener(AlertListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(AlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public boolean add(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            insert(alert);
+            for (AlertListener listener : listeners) {
+                listener.alertAdded(alert);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Add the alerts under one acquisition of the write lock and notify listeners once
+    // for the whole batch
+    @Override
+    public boolean addAll(Collection<? extends Alert> alerts) {
+        if (alerts.isEmpty()) {
+            return false;
+        }
+        List<Alert> batch = new ArrayList<>(alerts);
+        lock.writeLock().lock();
+        try {
+            // Reject the batch as a whole rather than leave listeners missing part of it
+            for (Alert alert : batch) {
+                if (index.containsKey(alert.getId())) {
+                    throw new IllegalArgumentException("Duplicate alert ID: " + alert.getId());
+                }
+            }
+            for (Alert alert : batch) {
+                insert(alert);
+            }
+            for (AlertListener listener : listeners) {
+                listener.alertsAdded(batch);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Alert findById(int id) {
+        lock.readLock().lock();
+        try {
+            int slot = index.get(id);
+            return slot < 0 ? null : slots[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Alerts for the given IDs, in the same order, skipping IDs that no longer exist
+    public List<Alert> findAllById(int[] ids) {
+        List<Alert> found = new ArrayList<>(ids.length);
+        lock.readLock().lock();
+        try {
+            for (int id : ids) {
+                int slot = index.get(id);
+                if (slot >= 0) {
+                    found.add(slots[slot]);
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Change an alert's status; returns the alert, or null if no alert has this ID
+    public Alert updateStatus(int id, String status) {
+        return updateStatus(id, null, AlertStatus.valueOf(status), null);
+    }
+
+    // Change an alert's status only if it is still the expected one (any when null),
+    // on behalf of the actor (null when unknown); returns the alert, or null if no alert
+    // has this ID or its status differs
+    public Alert updateStatus(int id, AlertStatus expected, AlertStatus status, String actor) {
+        lock.writeLock().lock();
+        try {
+            int slot = index.get(id);
+            if (slot < 0 || (expected != null && slots[slot].getAlertStatus() != expected)) {
+                return null;
+            }
+            Alert alert = slots[slot];
+            String previous = alert.getStatus();
+            alert.setStatus(status);
+            for (AlertListener listener : listeners) {
+                listener.statusChanged(alert, previous, actor);
+            }
+            return alert;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Alert removeById(int id) {
+        lock.writeLock().lock();
+        try {
+            int slot = index.remove(id);
+            if (slot < 0) {
+                return null;
+            }
+            Alert alert = slots[slot];
+            slots[slot] = null;
+            size--;
+            if (used - size > Math.max(MIN_CAPACITY, size)) {
+                compact(slots.length);
+            }
+            for (AlertListener listener : listeners) {
+                listener.alertRemoved(alert);
+            }
+            return alert;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Remove the alerts with the given IDs under one acquisition of the write lock and
+    // notify listeners once for the whole batch; returns those that existed
+    public List<Alert> removeAllById(int[] ids) {
+        return removeAll(ids, null);
+    }
+
+    // The same for alerts of one reporting month that have moved to the archive, which
+    // listeners are told as such
+    public List<Alert> archiveAll(YearMonth month, int[] ids) {
+        return removeAll(ids, month);
+    }
+
+    private List<Alert> removeAll(int[] ids, YearMonth archivedMonth) {
+        List<Alert> removed = new ArrayList<>(ids.length);
+        lock.writeLock().lock();
+        try {
+            for (int id : ids) {
+                int slot = index.remove(id);
+                if (slot >= 0) {
+                    removed.add(slots[slot]);
+                    slots[slot] = null;
+                    size--;
+                }
+            }
+            if (used - size > Math.max(MIN_CAPACITY, size)) {
+                compact(slots.length);
+            }
+            if (!removed.isEmpty()) {
+                for (AlertListener listener : listeners) {
+                    if (archivedMonth == null) {
+                        listener.alertsRemoved(removed);
+                    } else {
+                        listener.alertsArchived(archivedMonth, removed);
+                    }
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.writeLock().lock();
+        try {
+            return contains(o) && removeById(((Alert) o).getId()) != null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Alert && findById(((Alert) o).getId()) == o;
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset(MIN_CAPACITY);
+            for (AlertListener listener : listeners) {
+                listener.alertsCleared();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Replace the contents with freshly loaded alerts
+    public void load(Collection<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            reset(Math.max(MIN_CAPACITY, alerts.size()));
+            for (Alert alert : alerts) {
+                insert(alert);
+            }
+            for (AlertListener listener : listeners) {
+                listener.alertsLoaded(alerts);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Run an action while no other thread can change the store
+    public void exclusive(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Consistent copy of all alerts in insertion order
+    public List<Alert> snapshot() {
+        lock.readLock().lock();
+        try {
+            List<Alert> copy = new ArrayList<>(size);
+            Alert[] current = slots;
+            for (int i = 0; i < used; i++) {
+                if (current[i] != null) {
+                    copy.add(current[i]);
+                }
+            }
+            return copy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Stream<Alert> streamAfter(Alert cursor) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            iteratorAfter(cursor), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Alert> iterator() {
+        return iteratorAfter(null);
+    }
+
+    // Insertion order continued just past the cursor, found through the index in O(1); a
+    // null cursor starts at the beginning. Should the cursor have been removed meanwhile,
+    // the order resumes at the first alert with a higher ID.
+    public Iterator<Alert> iteratorAfter(Alert cursor) {
+        Alert[] current;
+        int limit;
+        int start = 0;
+        lock.readLock().lock();
+        try {
+            current = slots;
+            limit = used;
+            if (cursor != null) {
+                int slot = index.get(cursor.getId());
+                if (slot >= 0) {
+                    start = slot + 1;
+                } else {
+                    while (start < limit && (current[start] == null || current[start].getId() <= cursor.getId())) {
+                        start++;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int first = start;
+        return new Iterator<Alert>() {
+            private int position = first;
+            private Alert pending;
+
+            @Override
+            public boolean hasNext() {
+                while (pending == null && position < limit) {
+                    pending = current[position++];
+                }
+                return pending != null;
+            }
+
+            @Override
+            public Alert next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Alert alert = pending;
+                pending = null;
+                return alert;
+            }
+        };
+    }
+
+    private void insert(Alert alert) {
+        int id = alert.getId();
+        if (index.containsKey(id)) {
+            throw new IllegalArgumentException("Duplicate alert ID: " + id);
+        }
+        if (used == slots.length) {
+            compact(used - size > size ? slots.length : slots.length * 2);
+        }
+        index.put(id, used);
+        slots[used] = alert;
+        used++;
+        size++;
+    }
+
+    private void reset(int capacity) {
+        slots = new Alert[capacity];
+        used = 0;
+        size = 0;
+        index.clear();
+    }
+
+    // Copy live alerts into a fresh array, dropping empty slots, and repoint the index
+    private void compact(int capacity) {
+        Alert[] current = slots;
+        Alert[] packed = new Alert[capacity];
+        int target = 0;
+        for (int i = 0; i < used; i++) {
+            Alert alert = current[i];
+            if (alert != null) {
+                if (target != i) {
+                    index.put(alert.getId(), target);
+                }
+                packed[target++] = alert;
+            }
+        }
+        slots = packed;
+        used = target;
+    }
+}
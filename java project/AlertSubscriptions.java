@@ -0,0 +1,322 @@
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pushes submitted alerts and status changes to subscribers whose filter matches.
+// Subscriptions are indexed by location term, then by category and minimum urgency.
+// Terms of a trigram or longer are also filed under their first trigram, so a change is
+// routed by looking up each trigram of its location, checking the few terms filed there,
+// and walking only the matching category and urgency sets: the cost grows with the
+// location's length and the number of recipients, not with the number of subscribers or
+// the length of their terms. Each subscriber has a bounded queue; publishing never
+// blocks the store, and a full queue drops events according to the subscriber's policy.
+class AlertSubscriptions implements AlertListener {
+    // What happens to an event arriving at a full queue
+    enum Overflow {
+        DROP_OLDEST, DROP_NEWEST
+    }
+
+    private static final int CATEGORIES = AlertCategory.values().length;
+    private static final int URGENCIES = Urgency.values().length;
+    // Category slot for subscriptions to every category
+    private static final int ANY_CATEGORY = CATEGORIES;
+
+    // Longest location term a filter accepts
+    static final int MAX_TERM_LENGTH = 256;
+    // Terms shorter than this are looked up directly by the location's substrings
+    private static final int GRAM = 3;
+
+    private final Map<String, Bucket> byTerm = new ConcurrentHashMap<>();
+    // Registered terms of GRAM or more characters, by their first GRAM characters
+    private final Map<String, Set<String>> byTrigram = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Subscription subscribe(Filter filter, int capacity, Overflow overflow) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + capacity);
+        }
+        Subscription subscription = new Subscription(nextId.getAndIncrement(), filter, capacity, overflow);
+        byTerm.compute(filter.location, (term, bucket) -> {
+            if (bucket == null) {
+                bucket = new Bucket();
+                if (term.length() >= GRAM) {
+                    // Added inside compute, so an unsubscribe emptying the same set cannot
+                    // drop it from the map between it being found and the term added
+                    byTrigram.compute(term.substring(0, GRAM), (gram, terms) -> {
+                        if (terms == null) {
+                            terms = ConcurrentHashMap.newKeySet();
+                        }
+                        terms.add(term);
+                        return terms;
+                    });
+                }
+            }
+            for (int category : filter.categorySlots()) {
+                bucket.add(category, filter.minUrgency.ordinal(), subscription);
+            }
+            return bucket;
+        });
+        count.incrementAndGet();
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        if (!subscription.active.compareAndSet(true, false)) {
+            return;
+        }
+        Filter filter = subscription.filter;
+        byTerm.computeIfPresent(filter.location, (term, bucket) -> {
+            for (int category : filter.categorySlots()) {
+                bucket.remove(category, filter.minUrgency.ordinal(), subscription);
+            }
+            if (!bucket.isEmpty()) {
+                return bucket;
+            }
+            if (term.length() >= GRAM) {
+                byTrigram.computeIfPresent(term.substring(0, GRAM), (gram, terms) -> {
+                    terms.remove(term);
+                    return terms.isEmpty() ? null : terms;
+                });
+            }
+            return null;
+        });
+        count.decrementAndGet();
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public void alertAdded(Alert alert) {
+        publish(new Event(Event.Type.SUBMITTED, alert, alert.getStatus(), null));
+    }
+
+    // Batches come from bulk imports of past reports, which are not news to subscribers
+    @Override
+    public void alertsAdded(List<Alert> alerts) {
+    }
+
+    @Override
+    public void statusChanged(Alert alert, String previousStatus) {
+        publish(new Event(Event.Type.STATUS_CHANGED, alert, alert.getStatus(), previousStatus));
+    }
+
+    private void publish(Event event) {
+        Alert alert = event.alert;
+        int category = alert.getCategory().ordinal();
+        int urgency = alert.getUrgency().ordinal();
+        // Every registered term the location contains, the empty term included: shorter
+        // ones by their substrings, longer ones through their first trigram
+        String location = TrigramIndex.fold(alert.getLocation());
+        Set<String> terms = new HashSet<>();
+        terms.add("");
+        for (int start = 0; start < location.length(); start++) {
+            for (int end = start + 1; end < start + GRAM && end <= location.length(); end++) {
+                terms.add(location.substring(start, end));
+            }
+            if (start + GRAM <= location.length()) {
+                Set<String> candidates = byTrigram.get(location.substring(start, start + GRAM));
+                if (candidates != null) {
+                    for (String term : candidates) {
+                        if (location.startsWith(term, start)) {
+                            terms.add(term);
+                        }
+                    }
+                }
+            }
+        }
+        for (String term : terms) {
+            Bucket bucket = byTerm.get(term);
+            if (bucket != null) {
+                bucket.deliver(category, urgency, event);
+                bucket.deliver(ANY_CATEGORY, urgency, event);
+            }
+        }
+    }
+
+    // Subscriptions sharing one location term, by category slot and minimum urgency
+    private static final class Bucket {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final Set<Subscription>[][] sets = new Set[CATEGORIES + 1][URGENCIES];
+
+        void add(int category, int minUrgency, Subscription subscription) {
+            if (sets[category][minUrgency] == null) {
+                sets[category][minUrgency] = ConcurrentHashMap.newKeySet();
+            }
+            sets[category][minUrgency].add(subscription);
+        }
+
+        void remove(int category, int minUrgency, Subscription subscription) {
+            Set<Subscription> set = sets[category][minUrgency];
+            if (set != null) {
+                set.remove(subscription);
+            }
+        }
+
+        boolean isEmpty() {
+            for (Set<Subscription>[] byUrgency : sets) {
+                for (Set<Subscription> set : byUrgency) {
+                    if (set != null && !set.isEmpty()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        // Everyone in the category slot whose minimum urgency the alert reaches
+        void deliver(int category, int urgency, Event event) {
+            for (int minUrgency = 0; minUrgency <= urgency; minUrgency++) {
+                Set<Subscription> set = sets[category][minUrgency];
+                if (set != null) {
+                    for (Subscription subscription : set) {
+                        subscription.offer(event);
+                    }
+                }
+            }
+        }
+    }
+
+    // Which alerts a subscriber wants: any of the categories (all when empty), at least
+    // the given urgency, and a location containing the term (ignoring case; any when
+    // empty). Terms are limited to MAX_TERM_LENGTH characters.
+    static final class Filter {
+        private final Set<AlertCategory> categories;
+        private final Urgency minUrgency;
+        private final String location;
+
+        Filter(Collection<AlertCategory> categories, Urgency minUrgency, String location) {
+            this.categories = categories == null || categories.isEmpty()
+                ? EnumSet.noneOf(AlertCategory.class) : EnumSet.copyOf(categories);
+            this.minUrgency = minUrgency == null ? Urgency.LOW : minUrgency;
+            this.location = location == null ? "" : TrigramIndex.fold(location.trim());
+            if (this.location.length() > MAX_TERM_LENGTH) {
+                throw new IllegalArgumentException("Location term longer than " + MAX_TERM_LENGTH + " characters");
+            }
+        }
+
+        public boolean matches(Alert alert) {
+            return (categories.isEmpty() || categories.contains(alert.getCategory()))
+                && alert.getUrgency().compareTo(minUrgency) >= 0
+                && TrigramIndex.contains(alert.getLocation(), location);
+        }
+
+        private int[] categorySlots() {
+            if (categories.isEmpty()) {
+                return new int[] {ANY_CATEGORY};
+            }
+            return categories.stream().mapToInt(Enum::ordinal).toArray();
+        }
+
+        @Override
+        public String toString() {
+            return (categories.isEmpty() ? "any category" : categories.toString())
+                + ", urgency " + minUrgency + " or above"
+                + (location.isEmpty() ? "" : ", location containing \"" + location + "\"");
+        }
+    }
+
+    // A submitted alert or a status change, with the status as it was at that moment
+    static final class Event {
+        enum Type {
+            SUBMITTED, STATUS_CHANGED
+        }
+
+        final Type type;
+        final Alert alert;
+        final String status;
+        final String previousStatus;
+
+        Event(Type type, Alert alert, String status, String previousStatus) {
+            this.type = type;
+            this.alert = alert;
+            this.status = status;
+            this.previousStatus = previousStatus;
+        }
+
+        @Override
+        public String toString() {
+            return type == Type.SUBMITTED
+                ? "New alert " + alert.getId() + ": " + alert.getTitle() + " [" + alert.getUrgency()
+                  + ", " + alert.getCategory() + ", " + alert.getLocation() + "]"
+                : "Alert " + alert.getId() + " (" + alert.getTitle() + "): " + previousStatus + " -> " + status;
+        }
+    }
+
+    // One subscriber's queue. Publishers add from the store's write lock, so offering
+    // never waits; the subscriber takes events from its own thread.
+    static final class Subscription {
+        private final int id;
+        private final Filter filter;
+        private final Overflow overflow;
+        private final BlockingQueue<Event> queue;
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicBoolean active = new AtomicBoolean(true);
+
+        private Subscription(int id, Filter filter, int capacity, Overflow overflow) {
+            this.id = id;
+            this.filter = filter;
+            this.overflow = overflow;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        private void offer(Event event) {
+            if (overflow == Overflow.DROP_NEWEST) {
+                if (!queue.offer(event)) {
+                    dropped.incrementAndGet();
+                }
+                return;
+            }
+            while (!queue.offer(event)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+
+        // The next event, or null if none is waiting
+        public Event poll() {
+            return queue.poll();
+        }
+
+        // The next event, waiting up to the timeout; null if none arrived
+        public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return queue.poll(timeout, unit);
+        }
+
+        // Every waiting event, oldest first
+        public List<Event> drain() {
+            List<Event> events = new ArrayList<>(queue.size());
+            queue.drainTo(events);
+            return events;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Filter getFilter() {
+            return filter;
+        }
+
+        public int getPending() {
+            return queue.size();
+        }
+
+        // Events lost to a full queue so far
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        public boolean isActive() {
+            return active.get();
+        }
+    }
+}
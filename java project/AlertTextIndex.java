@@ -0,0 +1,180 @@
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+// Substring search over alert locations and full-text search over titles and
+// descriptions, answered from trigram indexes kept current by store callbacks.
+// Queries shorter than three characters cannot use a trigram and fall back to a scan.
+class AlertTextIndex implements AlertListener {
+    private final AlertStore store;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex locations = new TrigramIndex();
+    private final TrigramIndex text = new TrigramIndex();
+
+    public AlertTextIndex(AlertStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void alertAdded(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            locations.add(alert.getId(), alert.getLocation());
+            text.add(alert.getId(), fullText(alert));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsAdded(List<Alert> alerts) {
+        int[] ids = new int[alerts.size()];
+        String[] locationTexts = new String[ids.length];
+        String[] fullTexts = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            Alert alert = alerts.get(i);
+            ids[i] = alert.getId();
+            locationTexts[i] = alert.getLocation();
+            fullTexts[i] = fullText(alert);
+        }
+        lock.writeLock().lock();
+        try {
+            locations.addAll(ids, locationTexts);
+            text.addAll(ids, fullTexts);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertRemoved(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            locations.remove(alert.getId(), alert.getLocation());
+            text.remove(alert.getId(), fullText(alert));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsRemoved(List<Alert> alerts) {
+        int[] ids = new int[alerts.size()];
+        String[] locationTexts = new String[ids.length];
+        String[] fullTexts = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            Alert alert = alerts.get(i);
+            ids[i] = alert.getId();
+            locationTexts[i] = alert.getLocation();
+            fullTexts[i] = fullText(alert);
+        }
+        lock.writeLock().lock();
+        try {
+            locations.removeAll(ids, locationTexts);
+            text.removeAll(ids, fullTexts);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsCleared() {
+        lock.writeLock().lock();
+        try {
+            locations.clear();
+            text.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsLoaded(Iterable<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            locations.clear();
+            text.clear();
+            for (Alert alert : alerts) {
+                locations.add(alert.getId(), alert.getLocation());
+                text.add(alert.getId(), fullText(alert));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Alerts whose location contains the term, ignoring case, in ID order
+    public List<Alert> searchLocation(String term) {
+        String folded = TrigramIndex.fold(term);
+        return resolve(locationCandidates(folded),
+                       alert -> TrigramIndex.contains(alert.getLocation(), folded));
+    }
+
+    // Alerts whose title or description contains every whitespace-separated term
+    public List<Alert> searchText(String query) {
+        String[] terms = TrigramIndex.fold(query.trim()).split("\\s+");
+        return resolve(textCandidates(terms), alert -> {
+            for (String term : terms) {
+                if (!TrigramIndex.contains(alert.getTitle(), term)
+                        && !TrigramIndex.contains(alert.getDescription(), term)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    // Sorted IDs of alerts whose location may contain the folded term, or null when
+    // the term is too short for the index to narrow the search
+    int[] locationCandidates(String foldedTerm) {
+        lock.readLock().lock();
+        try {
+            return locations.candidates(foldedTerm);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Sorted IDs of alerts whose text may contain every folded term, or null when
+    // no term is long enough for the index to narrow the search
+    int[] textCandidates(String[] foldedTerms) {
+        int[] candidates = null;
+        lock.readLock().lock();
+        try {
+            for (String term : foldedTerms) {
+                int[] matches = text.candidates(term);
+                if (matches != null) {
+                    candidates = candidates == null ? matches : TrigramIndex.intersect(candidates, matches);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return candidates;
+    }
+
+    // Look up candidate IDs and keep those that really match; null candidates mean
+    // the index could not narrow the query, so every alert is checked
+    private List<Alert> resolve(int[] candidates, Predicate<Alert> matches) {
+        List<Alert> results = new ArrayList<>();
+        if (candidates == null) {
+            for (Alert alert : store) {
+                if (matches.test(alert)) {
+                    results.add(alert);
+                }
+            }
+            return results;
+        }
+        for (Alert alert : store.findAllById(candidates)) {
+            if (matches.test(alert)) {
+                results.add(alert);
+            }
+        }
+        return results;
+    }
+
+    private static String fullText(Alert alert) {
+        return alert.getTitle() + "\n" + alert.getDescription();
+    }
+}
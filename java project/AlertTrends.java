@@ -0,0 +1,363 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Rolling report counts over the last week, by the hour they were reported in: per
+// category, per urgency and per location. Each hour is a slot in a ring buffer of
+// HOURS slots, recycled as time moves on, so memory and every query are bounded by the
+// window rather than by history. Sliding windows sum the latest slots; tumbling windows
+// (such as whole days) sum aligned ones.
+//
+// Locations are open-ended, so each slot keeps them approximately: a Count-Min sketch
+// estimates any location's count (never under, rarely much over), and a Space-Saving
+// summary remembers the locations reported most that hour. Hotspots are the remembered
+// locations whose count in a recent window most exceeds their rate over the week before.
+// Locations are compared in the normalized form used by AlertClusters.
+//
+// Kept current by store callbacks; safe for concurrent reads.
+class AlertTrends implements AlertListener {
+    static final int HOURS = 7 * 24;
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 512;
+    private static final int TOP_LOCATIONS = 32;
+    // Fewer reports than this in the window never count as a spike
+    private static final int MIN_SPIKE_REPORTS = 3;
+
+    private final Slot[] slots = new Slot[HOURS];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public AlertTrends() {
+        for (int i = 0; i < HOURS; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    @Override
+    public void alertAdded(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            count(alert, 1, currentHour());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsAdded(List<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            long now = currentHour();
+            for (Alert alert : alerts) {
+                count(alert, 1, now);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A deleted report no longer counts; the Space-Saving summaries keep it as a candidate
+    @Override
+    public void alertRemoved(Alert alert) {
+        lock.writeLock().lock();
+        try {
+            count(alert, -1, currentHour());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void alertsCleared() {
+        lock.writeLock().lock();
+        try {
+            for (Slot slot : slots) {
+                slot.reset(Long.MIN_VALUE);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Only alerts reported within the window are visited for their counts
+    @Override
+    public void alertsLoaded(Iterable<Alert> alerts) {
+        lock.writeLock().lock();
+        try {
+            for (Slot slot : slots) {
+                slot.reset(Long.MIN_VALUE);
+            }
+            long now = currentHour();
+            for (Alert alert : alerts) {
+                count(alert, 1, now);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Reports in each of the last hours, oldest first, optionally of one category and
+    // urgency; the last entry is the current, unfinished hour
+    public long[] hourly(AlertCategory category, Urgency urgency, int hours) {
+        checkHours(hours);
+        long[] counts = new long[hours];
+        lock.readLock().lock();
+        try {
+            long now = currentHour();
+            for (int i = 0; i < hours; i++) {
+                Slot slot = slot(now - hours + 1 + i);
+                if (slot != null) {
+                    counts[i] = slot.count(category, urgency);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    // Reports over the last hours (a sliding window), optionally of one category and urgency
+    public long count(AlertCategory category, Urgency urgency, int hours) {
+        long total = 0;
+        for (long count : hourly(category, urgency, hours)) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Reports at the location over the last hours; an estimate that may run high when
+    // many locations are busy, but never low
+    public long locationCount(String location, int hours) {
+        checkHours(hours);
+        String key = AlertClusters.normalizeLocation(location);
+        lock.readLock().lock();
+        try {
+            return estimate(key, currentHour(), hours);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Locations reported well above their usual rate: count over the last hours against
+    // the rate over the baseline hours before them, biggest rise first
+    public List<Hotspot> hotspots(int hours, int baselineHours, int limit) {
+        checkHours(hours);
+        if (baselineHours < 1 || hours + baselineHours > HOURS) {
+            throw new IllegalArgumentException("Baseline must be 1 to " + (HOURS - hours) + " hours: " + baselineHours);
+        }
+        List<Hotspot> hotspots = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            long now = currentHour();
+            Set<String> candidates = new HashSet<>();
+            for (int i = 0; i < hours; i++) {
+                Slot slot = slot(now - i);
+                if (slot != null) {
+                    candidates.addAll(slot.topLocations.keySet());
+                }
+            }
+            for (String location : candidates) {
+                long recent = estimate(location, now, hours);
+                if (recent < MIN_SPIKE_REPORTS) {
+                    continue;
+                }
+                double expected = (double) estimate(location, now - hours, baselineHours) * hours / baselineHours;
+                // Laplace smoothing keeps a first-ever report from scoring infinitely high
+                double ratio = (recent + 1) / (expected + 1);
+                if (ratio >= 2) {
+                    hotspots.add(new Hotspot(location, recent, expected, ratio));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hotspots.sort(Comparator.comparingDouble(Hotspot::getRatio).reversed()
+                          .thenComparing(Comparator.comparingLong(Hotspot::getRecent).reversed()));
+        return hotspots.size() > limit ? new ArrayList<>(hotspots.subList(0, limit)) : hotspots;
+    }
+
+    private void count(Alert alert, int delta, long now) {
+        long hour = Math.floorDiv(alert.getTimestampMillis(), HOUR_MS);
+        if (hour <= now - HOURS) {
+            return;
+        }
+        // A report from a clock running ahead counts towards the current hour
+        hour = Math.min(hour, now);
+        Slot slot = slots[(int) Math.floorMod(hour, (long) HOURS)];
+        if (slot.hour != hour) {
+            if (delta < 0) {
+                return;
+            }
+            slot.reset(hour);
+        }
+        slot.add(alert, delta);
+    }
+
+    // The slot holding the hour, or null if it holds an older or newer one
+    private Slot slot(long hour) {
+        Slot slot = slots[(int) Math.floorMod(hour, (long) HOURS)];
+        return slot.hour == hour ? slot : null;
+    }
+
+    // Sketch estimate of a location summed over the hours ending with the given one
+    private long estimate(String location, long lastHour, int hours) {
+        int[] hashes = hashes(location);
+        long total = 0;
+        for (int i = 0; i < hours; i++) {
+            Slot slot = slot(lastHour - i);
+            if (slot != null) {
+                total += slot.estimate(hashes);
+            }
+        }
+        return total;
+    }
+
+    private static void checkHours(int hours) {
+        if (hours < 1 || hours > HOURS) {
+            throw new IllegalArgumentException("Window must be 1 to " + HOURS + " hours: " + hours);
+        }
+    }
+
+    // Report times are local date-times stored as if UTC; see AlertLog.toEpochMillis
+    private static long currentHour() {
+        return Math.floorDiv(AlertLog.toEpochMillis(LocalDateTime.now()), HOUR_MS);
+    }
+
+    // Column of the location in each sketch row, from two halves of one 64-bit hash of
+    // its characters, taken four at a time. Deriving the rows from String.hashCode
+    // instead would put locations whose 32-bit hashes collide, such as "Aa" and "BB",
+    // in the same column of every row.
+    private static int[] hashes(String location) {
+        long hash = location.length();
+        long word = 0;
+        for (int i = 0; i < location.length(); i++) {
+            word = word << 16 | location.charAt(i);
+            if ((i & 3) == 3) {
+                hash = AlertClusters.mix(hash ^ word);
+                word = 0;
+            }
+        }
+        hash = AlertClusters.mix(hash ^ word);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int[] columns = new int[SKETCH_DEPTH];
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            columns[row] = Math.floorMod(h1 + row * h2, SKETCH_WIDTH);
+        }
+        return columns;
+    }
+
+    // Counts for one hour
+    private static final class Slot {
+        long hour = Long.MIN_VALUE;
+        final int[] byCategory = new int[AlertCategory.values().length];
+        final int[] byUrgency = new int[Urgency.values().length];
+        // Category x urgency, so both filters together stay exact
+        final int[] byCategoryAndUrgency = new int[byCategory.length * byUrgency.length];
+        int total;
+        final int[] sketch = new int[SKETCH_DEPTH * SKETCH_WIDTH];
+        final Map<String, Integer> topLocations = new HashMap<>();
+
+        void reset(long hour) {
+            this.hour = hour;
+            Arrays.fill(byCategory, 0);
+            Arrays.fill(byUrgency, 0);
+            Arrays.fill(byCategoryAndUrgency, 0);
+            total = 0;
+            Arrays.fill(sketch, 0);
+            topLocations.clear();
+        }
+
+        void add(Alert alert, int delta) {
+            int category = alert.getCategory().ordinal();
+            int urgency = alert.getUrgency().ordinal();
+            byCategory[category] += delta;
+            byUrgency[urgency] += delta;
+            byCategoryAndUrgency[category * byUrgency.length + urgency] += delta;
+            total += delta;
+
+            String location = AlertClusters.normalizeLocation(alert.getLocation());
+            int[] columns = hashes(location);
+            for (int row = 0; row < SKETCH_DEPTH; row++) {
+                sketch[row * SKETCH_WIDTH + columns[row]] += delta;
+            }
+            if (delta > 0) {
+                offer(location);
+            }
+        }
+
+        // Space-Saving: a new location replaces the least counted one once full and
+        // inherits its count, so a frequent location can only be over-counted
+        private void offer(String location) {
+            Integer count = topLocations.get(location);
+            if (count != null || topLocations.size() < TOP_LOCATIONS) {
+                topLocations.put(location, count == null ? 1 : count + 1);
+                return;
+            }
+            String least = null;
+            int leastCount = Integer.MAX_VALUE;
+            for (Map.Entry<String, Integer> entry : topLocations.entrySet()) {
+                if (entry.getValue() < leastCount) {
+                    least = entry.getKey();
+                    leastCount = entry.getValue();
+                }
+            }
+            topLocations.remove(least);
+            topLocations.put(location, leastCount + 1);
+        }
+
+        long count(AlertCategory category, Urgency urgency) {
+            if (category != null && urgency != null) {
+                return byCategoryAndUrgency[category.ordinal() * byUrgency.length + urgency.ordinal()];
+            }
+            if (category != null) {
+                return byCategory[category.ordinal()];
+            }
+            return urgency != null ? byUrgency[urgency.ordinal()] : total;
+        }
+
+        long estimate(int[] columns) {
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < SKETCH_DEPTH; row++) {
+                min = Math.min(min, sketch[row * SKETCH_WIDTH + columns[row]]);
+            }
+            return Math.max(0, min);
+        }
+    }
+
+    // A location reported more than usual
+    static final class Hotspot {
+        private final String location;
+        private final long recent;
+        private final double expected;
+        private final double ratio;
+
+        Hotspot(String location, long recent, double expected, double ratio) {
+            this.location = location;
+            this.recent = recent;
+            this.expected = expected;
+            this.ratio = ratio;
+        }
+
+        // Normalized: lower case, street words abbreviated
+        public String getLocation() {
+            return location;
+        }
+
+        // Estimated reports in the recent window
+        public long getRecent() {
+            return recent;
+        }
+
+        // Reports the baseline rate would predict for the recent window
+        public double getExpected() {
+            return expected;
+        }
+
+        // (recent + 1) / (expected + 1)
+        public double getRatio() {
+            return ratio;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Versioned fixed-layout binary snapshot of all alerts, read through a memory map.
+//
+// Layout (big-endian):
+//   header    magic, version, alert count, next ID, then offsets of the sections below
+//   records   one fixed-size entry per alert: id, epoch millis, category/urgency/status
+//             ordinals, location and reporter table indexes, offset of its text in the heap,
+//             then latitude and longitude (NaN when unknown; absent in version 1 files)
+//   locations string table of distinct locations
+//   reporters string table of distinct reporter names
+//   heap      title and description of every alert
+// Strings are stored as an int byte length followed by UTF-8 bytes.
+class BinaryAlertFormat {
+    static final int MAGIC = 0x43414C54; // "CALT"
+    static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 40;
+    private static final int RECORD_SIZE = 48;
+    private static final int V1_RECORD_SIZE = 32;
+
+    private BinaryAlertFormat() {
+    }
+
+    // Write all alerts to a temporary file, fsync it and atomically move it into place
+    static void write(File file, Collection<Alert> alerts, int nextId) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            write(out, alerts, nextId);
+            out.flush();
+            fos.getChannel().force(false);
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Encode all alerts onto a stream, e.g. a compressed one
+    static void write(DataOutputStream out, Collection<Alert> alerts, int nextId) throws IOException {
+        Map<String, Integer> locations = new LinkedHashMap<>();
+        Map<String, Integer> reporters = new LinkedHashMap<>();
+        long heapSize = 0;
+        for (Alert alert : alerts) {
+            locations.putIfAbsent(alert.getLocation(), locations.size());
+            reporters.putIfAbsent(alert.getReportedBy(), reporters.size());
+            heapSize += 8 + utf8Length(alert.getTitle()) + utf8Length(alert.getDescription());
+        }
+
+        long locationsOffset = HEADER_SIZE + (long) alerts.size() * RECORD_SIZE;
+        long reportersOffset = locationsOffset + tableSize(locations.keySet());
+        long heapOffset = reportersOffset + tableSize(reporters.keySet());
+        if (heapOffset + heapSize > Integer.MAX_VALUE) {
+            throw new IOException("Alert snapshot exceeds 2 GB");
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(alerts.size());
+        out.writeInt(nextId);
+        out.writeLong(locationsOffset);
+        out.writeLong(reportersOffset);
+        out.writeLong(heapOffset);
+
+        long textOffset = 0;
+        for (Alert alert : alerts) {
+            out.writeInt(alert.getId());
+            out.writeLong(alert.getTimestampMillis());
+            out.writeByte(alert.getCategory().ordinal());
+            out.writeByte(alert.getUrgency().ordinal());
+            out.writeByte(alert.getAlertStatus().ordinal());
+            out.writeByte(0);
+            out.writeInt(locations.get(alert.getLocation()));
+            out.writeInt(reporters.get(alert.getReportedBy()));
+            out.writeLong(textOffset);
+            out.writeDouble(alert.getLatitude());
+            out.writeDouble(alert.getLongitude());
+            textOffset += 8 + utf8Length(alert.getTitle()) + utf8Length(alert.getDescription());
+        }
+
+        writeTable(out, locations.keySet());
+        writeTable(out, reporters.keySet());
+        for (Alert alert : alerts) {
+            writeString(out, alert.getTitle());
+            writeString(out, alert.getDescription());
+        }
+    }
+
+    // Map the file and decode every alert; the ID sequence is restored from the header
+    static List<Alert> read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Alert snapshot exceeds 2 GB");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        }
+    }
+
+    // Decode every alert from an encoded snapshot held in memory
+    static List<Alert> decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an alert snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION && version != 1) {
+            throw new IOException("Unsupported alert snapshot version: " + version);
+        }
+        int recordSize = version == 1 ? V1_RECORD_SIZE : RECORD_SIZE;
+        int count = buffer.getInt(8);
+        int nextId = buffer.getInt(12);
+        int locationsOffset = (int) buffer.getLong(16);
+        int reportersOffset = (int) buffer.getLong(24);
+        int heapOffset = (int) buffer.getLong(32);
+
+        byte[] scratch = new byte[256];
+        String[] locations = readTable(buffer, locationsOffset, scratch);
+        String[] reporters = readTable(buffer, reportersOffset, scratch);
+        AlertCategory[] categories = AlertCategory.values();
+        Urgency[] urgencies = Urgency.values();
+        AlertStatus[] statuses = AlertStatus.values();
+
+        List<Alert> alerts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int record = HEADER_SIZE + i * recordSize;
+            int id = buffer.getInt(record);
+            long millis = buffer.getLong(record + 4);
+            AlertCategory category = categories[buffer.get(record + 12)];
+            Urgency urgency = urgencies[buffer.get(record + 13)];
+            AlertStatus status = statuses[buffer.get(record + 14)];
+            String location = locations[buffer.getInt(record + 16)];
+            String reportedBy = reporters[buffer.getInt(record + 20)];
+
+            buffer.position(heapOffset + (int) buffer.getLong(record + 24));
+            String title = readString(buffer, scratch);
+            String description = readString(buffer, scratch);
+            double latitude = version == 1 ? Double.NaN : buffer.getDouble(record + 32);
+            double longitude = version == 1 ? Double.NaN : buffer.getDouble(record + 40);
+
+            alerts.add(new Alert(id, title, description, category, urgency, location,
+                                 reportedBy, millis, status, latitude, longitude));
+        }
+        Alert.reserveId(nextId - 1);
+        return alerts;
+    }
+
+    private static long tableSize(Collection<String> values) {
+        long size = 4;
+        for (String value : values) {
+            size += 4 + utf8Length(value);
+        }
+        return size;
+    }
+
+    private static void writeTable(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static String[] readTable(ByteBuffer buffer, int offset, byte[] scratch) {
+        buffer.position(offset);
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(buffer, scratch);
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Encoded UTF-8 size without allocating the byte array
+    static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                       && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1; // unpaired surrogates are encoded as '?'
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
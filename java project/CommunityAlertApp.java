@@ -1,122 +1,36 @@
+import javax.management.JMException;
 import java.io.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
 
-// Enum for alert categories
-enum AlertCategory {
-    WATER_LEAK, POTHOLE, LOST_PET, POWER_OUTAGE, 
-    STREET_LIGHT, GARBAGE, NOISE, OTHER
-}
-
-// Enum for urgency levels
-enum Urgency {
-    LOW(1), MEDIUM(2), HIGH(3), CRITICAL(4);
+// Console front-end with the features shared by users and admins; all data handling
+// is delegated to the AlertService
+class AlertSystemBase {
+    protected final AlertService service;
+    protected final Scanner scanner;
+    private static final int HOTSPOT_HOURS = 3;
+    private static final int HOTSPOTS_SHOWN = 5;
     
-    private final int level;
+    private final AlertPager.Renderer renderer = new AlertPager.Renderer();
+    private int pageSize = AlertPager.DEFAULT_PAGE_SIZE;
     
-    Urgency(int level) {
-        this.level = level;
+    public AlertSystemBase(AlertService service, Scanner scanner) {
+        this.service = service;
+        this.scanner = scanner;
     }
     
-    public int getLevel() {
-        return level;
-    }
-}
-
-// Alert class representing a community report
-class Alert implements Serializable {
-    private static final long serialVersionUID = 1L;
-    private static int idCounter = 1000;
-    
-    private int id;
-    private String title;
-    private String description;
-    private AlertCategory category;
-    private Urgency urgency;
-    private String location;
-    private String reportedBy;
-    private LocalDateTime timestamp;
-    private String status;
-    
-    public Alert(String title, String description, AlertCategory category, 
-                 Urgency urgency, String location, String reportedBy) {
-        this.id = idCounter++;
-        this.title = title;
-        this.description = description;
-        this.category = category;
-        this.urgency = urgency;
-        this.location = location;
-        this.reportedBy = reportedBy;
-        this.timestamp = LocalDateTime.now();
-        this.status = "OPEN";
-    }
-    
-    // Getters
-    public int getId() { return id; }
-    public String getTitle() { return title; }
-    public String getDescription() { return description; }
-    public AlertCategory getCategory() { return category; }
-    public Urgency getUrgency() { return urgency; }
-    public String getLocation() { return location; }
-    public String getReportedBy() { return reportedBy; }
-    public LocalDateTime getTimestamp() { return timestamp; }
-    public String getStatus() { return status; }
-    
-    public void setStatus(String status) { this.status = status; }
-    
-    @Override
-    public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-        return String.format("ID: %d | %s [%s]\n" +
-                           "Category: %s | Urgency: %s\n" +
-                           "Location: %s\n" +
-                           "Description: %s\n" +
-                           "Reported by: %s | Time: %s\n" +
-                           "Status: %s\n" +
-                           "----------------------------------------",
-                           id, title, status, category, urgency, 
-                           location, description, reportedBy, 
-                           timestamp.format(formatter), status);
-    }
-}
-
-// Comparator for sorting by urgency
-class UrgencyComparator implements Comparator<Alert> {
-    @Override
-    public int compare(Alert a1, Alert a2) {
-        int urgencyCompare = Integer.compare(a2.getUrgency().getLevel(), 
-                                            a1.getUrgency().getLevel());
-        if (urgencyCompare != 0) {
-            return urgencyCompare;
-        }
-        return a2.getTimestamp().compareTo(a1.getTimestamp());
-    }
-}
-
-// Comparator for sorting by location
-class LocationComparator implements Comparator<Alert> {
-    @Override
-    public int compare(Alert a1, Alert a2) {
-        int locationCompare = a1.getLocation().compareToIgnoreCase(a2.getLocation());
-        if (locationCompare != 0) {
-            return locationCompare;
+    // Pick one of the values, or 0 for no restriction (null)
+    protected <E extends Enum<E>> E getOptionalChoice(String label, E[] values) {
+        System.out.println("\nFilter by " + label + ":");
+        System.out.println("0. Any");
+        for (int i = 0; i < values.length; i++) {
+            System.out.printf("%d. %s\n", i + 1, values[i]);
         }
-        return a2.getTimestamp().compareTo(a1.getTimestamp());
-    }
-}
-
-// Base alert system with common functionality
-class AlertSystemBase {
-    protected List<Alert> alerts;
-    protected final String dataFile = "alerts_data.ser";
-    protected Scanner scanner;
-    
-    public AlertSystemBase() {
-        this.alerts = new ArrayList<>();
-        this.scanner = new Scanner(System.in);
-        loadAlerts();
+        System.out.print("Select " + label + " (0-" + values.length + "): ");
+        int choice = getIntInput(0, values.length);
+        return choice == 0 ? null : values[choice - 1];
     }
     
     // Submit a new alert
@@ -150,65 +64,59 @@ class AlertSystemBase {
         System.out.print("Location (e.g., Main Street, Park Area): ");
         String location = scanner.nextLine();
         
+        double[] coordinates = getCoordinatesInput();
+        
         System.out.print("Your name: ");
         String reportedBy = scanner.nextLine();
         
-        Alert alert = new Alert(title, description, category, urgency, location, reportedBy);
-        alerts.add(alert);
-        saveAlerts();
+        Alert alert = service.submit(new Alert(title, description, category, urgency, location,
+                                               reportedBy, coordinates[0], coordinates[1]));
         
         System.out.println("\n✓ Alert submitted successfully! Alert ID: " + alert.getId());
+        AlertClusters.Incident incident = service.clusters().incidentOf(alert.getId());
+        if (incident != null && incident.getSize() > 1) {
+            System.out.println("This looks like incident #" + incident.getId() + ", already reported "
+                               + (incident.getSize() - 1) + " time(s); your report has been linked to it.");
+        }
     }
     
     // View all alerts
     public void viewAllAlerts() {
-        if (alerts.isEmpty()) {
+        if (!service.hasAnyAlerts()) {
             System.out.println("\nNo alerts in the system.");
             return;
         }
         
         System.out.println("\n=== All Alerts ===");
-        System.out.println("Total alerts: " + alerts.size());
-        System.out.println();
-        
-        for (Alert alert : alerts) {
-            System.out.println(alert);
-            System.out.println();
+        System.out.println("Total alerts: " + service.size());
+        if (service.archivedSize() > 0) {
+            System.out.println("Archived (closed, older than " + AlertService.HOT_MONTHS + " months, not listed): "
+                               + service.archivedSize());
         }
+        browse(new AlertPager(service::allAfter, alert -> true), AlertMetrics.Operation.LIST);
     }
     
     // Sort alerts by urgency
     public void sortByUrgency() {
-        if (alerts.isEmpty()) {
+        if (!service.hasAnyAlerts()) {
             System.out.println("\nNo alerts to sort.");
             return;
         }
         
-        List<Alert> sortedAlerts = new ArrayList<>(alerts);
-        Collections.sort(sortedAlerts, new UrgencyComparator());
-        
+        // The sort index already holds alerts in urgency order and continues it from any alert
         System.out.println("\n=== Alerts Sorted by Urgency ===");
-        for (Alert alert : sortedAlerts) {
-            System.out.println(alert);
-            System.out.println();
-        }
+        browse(new AlertPager(service::byUrgencyAfter, alert -> true), AlertMetrics.Operation.SORT);
     }
     
     // Sort alerts by location
     public void sortByLocation() {
-        if (alerts.isEmpty()) {
+        if (!service.hasAnyAlerts()) {
             System.out.println("\nNo alerts to sort.");
             return;
         }
         
-        List<Alert> sortedAlerts = new ArrayList<>(alerts);
-        Collections.sort(sortedAlerts, new LocationComparator());
-        
         System.out.println("\n=== Alerts Sorted by Location ===");
-        for (Alert alert : sortedAlerts) {
-            System.out.println(alert);
-            System.out.println();
-        }
+        browse(new AlertPager(service::byLocationAfter, alert -> true), AlertMetrics.Operation.SORT);
     }
     
     // Filter alerts by category
@@ -222,22 +130,79 @@ class AlertSystemBase {
         int choice = getIntInput(1, categories.length);
         AlertCategory selectedCategory = categories[choice - 1];
         
-        List<Alert> filtered = alerts.stream()
-            .filter(a -> a.getCategory() == selectedCategory)
-            .collect(Collectors.toList());
+        // Kept current as alerts change, so counting needs no pass over the alerts
+        long found = service.statistics().getCount(selectedCategory);
         
-        if (filtered.isEmpty()) {
+        if (found == 0) {
             System.out.println("\nNo alerts found for category: " + selectedCategory);
             return;
         }
         
         System.out.println("\n=== " + selectedCategory + " Alerts ===");
-        System.out.println("Found " + filtered.size() + " alert(s)");
-        System.out.println();
-        
-        for (Alert alert : filtered) {
-            System.out.println(alert);
-            System.out.println();
+        System.out.println("Found " + found + " alert(s)");
+        browse(new AlertPager(cursor -> service.byCategoryAfter(selectedCategory, cursor),
+                              alert -> alert.getCategory() == selectedCategory),
+               AlertMetrics.Operation.FILTER);
+    }
+    
+    // Show a listing one page at a time until the user quits. Only the visible page is
+    // read and formatted; reading and formatting it is timed as the given operation.
+    protected void browse(AlertPager pager, AlertMetrics.Operation operation) {
+        pager.setPageSize(pageSize);
+        StringBuilder sb = new StringBuilder(4096);
+        while (true) {
+            long start = AlertMetrics.start();
+            List<Alert> page = pager.page();
+            sb.setLength(0);
+            sb.append('\n');
+            if (page.isEmpty()) {
+                sb.append("No alerts on this page.\n");
+            } else if (pager.getPageNumber() > 0) {
+                sb.append("--- Page ").append(pager.getPageNumber()).append(" ---\n\n");
+            } else {
+                sb.append("--- From alert ID ").append(page.get(0).getId()).append(" ---\n\n");
+            }
+            for (Alert alert : page) {
+                renderer.append(sb, alert);
+                sb.append("\n\n");
+            }
+            service.metrics().record(operation, start);
+            System.out.print(sb);
+            
+            if (!pager.hasNext() && !pager.hasPrevious()) {
+                return;
+            }
+            System.out.print((pager.hasNext() ? "[n]ext, " : "") + (pager.hasPrevious() ? "[p]revious, " : "")
+                             + "[j]ump <ID>, [s]ize <1-" + AlertPager.MAX_PAGE_SIZE + ">, [q]uit: ");
+            String[] command = scanner.nextLine().trim().toLowerCase().split("\\s+");
+            try {
+                switch (command[0]) {
+                    case "":
+                    case "n":
+                        pager.next();
+                        break;
+                    case "p":
+                        pager.previous();
+                        break;
+                    case "j":
+                        int id = Integer.parseInt(command[command.length - 1]);
+                        Alert alert = service.findById(id);
+                        if (alert == null || service.isArchived(id) || !pager.jumpTo(alert)) {
+                            System.out.println("Alert ID " + id + " is not in this list.");
+                        }
+                        break;
+                    case "s":
+                        pager.setPageSize(Integer.parseInt(command[command.length - 1]));
+                        pageSize = pager.getPageSize();
+                        break;
+                    case "q":
+                        return;
+                    default:
+                        System.out.println("Unknown command: " + command[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid input: " + e.getMessage());
+            }
         }
     }
     
@@ -246,9 +211,7 @@ class AlertSystemBase {
         System.out.print("\nEnter location to search: ");
         String searchTerm = scanner.nextLine().toLowerCase();
         
-        List<Alert> results = alerts.stream()
-            .filter(a -> a.getLocation().toLowerCase().contains(searchTerm))
-            .collect(Collectors.toList());
+        List<Alert> results = service.searchLocation(searchTerm);
         
         if (results.isEmpty()) {
             System.out.println("\nNo alerts found for location: " + searchTerm);
@@ -267,63 +230,73 @@ class AlertSystemBase {
     
     // Get statistics
     public void showStatistics() {
-        if (alerts.isEmpty()) {
+        if (!service.hasAnyAlerts()) {
             System.out.println("\nNo alerts to analyze.");
             return;
         }
         
+        long start = AlertMetrics.start();
+        AlertStatistics statistics = service.statistics();
         System.out.println("\n=== Community Alert Statistics ===");
-        System.out.println("Total Alerts: " + alerts.size());
-        
-        // Count by category
-        Map<AlertCategory, Long> categoryCount = alerts.stream()
-            .collect(Collectors.groupingBy(Alert::getCategory, Collectors.counting()));
+        System.out.println("Total Alerts: " + statistics.getTotal());
+        if (service.archivedSize() > 0) {
+            System.out.println("Archived (closed, older than " + AlertService.HOT_MONTHS + " months): "
+                               + service.archivedSize());
+        }
+        AlertClusters clusters = service.clusters();
+        System.out.println("Distinct Incidents: " + clusters.getIncidentCount()
+                           + " (" + clusters.getDuplicateCount() + " duplicate reports linked)");
         
+        // Counts are maintained as alerts change, so no pass over the alerts is needed
         System.out.println("\nAlerts by Category:");
-        categoryCount.forEach((cat, count) -> 
+        statistics.getCategoryCounts().forEach((cat, count) -> 
             System.out.printf("  %s: %d\n", cat, count));
         
-        // Count by urgency
-        Map<Urgency, Long> urgencyCount = alerts.stream()
-            .collect(Collectors.groupingBy(Alert::getUrgency, Collectors.counting()));
-        
         System.out.println("\nAlerts by Urgency:");
-        urgencyCount.forEach((urg, count) -> 
+        statistics.getUrgencyCounts().forEach((urg, count) -> 
             System.out.printf("  %s: %d\n", urg, count));
         
-        // Count by status
-        Map<String, Long> statusCount = alerts.stream()
-            .collect(Collectors.groupingBy(Alert::getStatus, Collectors.counting()));
-        
         System.out.println("\nAlerts by Status:");
-        statusCount.forEach((status, count) -> 
+        statistics.getStatusCounts().forEach((status, count) -> 
             System.out.printf("  %s: %d\n", status, count));
-    }
-    
-    // Save alerts to file
-    protected void saveAlerts() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(
-                new FileOutputStream(dataFile))) {
-            oos.writeObject(alerts);
-        } catch (IOException e) {
-            System.out.println("Error saving alerts: " + e.getMessage());
+        
+        AlertTrends trends = service.trends();
+        System.out.println("\nRecent Reports:");
+        System.out.printf("  Last hour: %d | Last 24 hours: %d | Last 7 days: %d\n",
+                          trends.count(null, null, 1), trends.count(null, null, 24),
+                          trends.count(null, null, AlertTrends.HOURS));
+        List<AlertTrends.Hotspot> hotspots = trends.hotspots(HOTSPOT_HOURS, AlertTrends.HOURS - HOTSPOT_HOURS,
+                                                             HOTSPOTS_SHOWN);
+        if (!hotspots.isEmpty()) {
+            System.out.println("\nSpiking Locations (last " + HOTSPOT_HOURS + " hours vs the week before):");
+            for (AlertTrends.Hotspot hotspot : hotspots) {
+                System.out.printf("  %s: %d reports, %.1f expected\n", hotspot.getLocation(),
+                                  hotspot.getRecent(), hotspot.getExpected());
+            }
         }
+        service.metrics().record(AlertMetrics.Operation.STATISTICS, start);
     }
     
-    // Load alerts from file
-    @SuppressWarnings("unchecked")
-    protected void loadAlerts() {
-        File file = new File(dataFile);
-        if (!file.exists()) {
-            return;
-        }
-        
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(dataFile))) {
-            alerts = (List<Alert>) ois.readObject();
-            System.out.println("Loaded " + alerts.size() + " existing alerts.");
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Error loading alerts: " + e.getMessage());
+    // Helper method for optional "latitude,longitude" input; NaN when skipped
+    protected double[] getCoordinatesInput() {
+        System.out.print("Coordinates as latitude,longitude (optional, Enter to skip): ");
+        while (true) {
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return new double[] {Double.NaN, Double.NaN};
+            }
+            try {
+                String[] parts = input.split(",");
+                if (parts.length == 2) {
+                    double latitude = Double.parseDouble(parts[0].trim());
+                    double longitude = Double.parseDouble(parts[1].trim());
+                    Alert.checkCoordinates(latitude, longitude);
+                    return new double[] {latitude, longitude};
+                }
+            } catch (IllegalArgumentException e) {
+                // fall through to the prompt below
+            }
+            System.out.print("Invalid coordinates. Use e.g. 40.7128,-74.0060 or press Enter: ");
         }
     }
     
@@ -345,6 +318,54 @@ class AlertSystemBase {
 
 // USER VERSION - Limited features for regular community members
 class UserAlertSystem extends AlertSystemBase {
+    private static final int NOTIFICATION_CAPACITY = 100;
+    
+    // Alerts the user asked to be told about, shown before each menu
+    private AlertSubscriptions.Subscription watch;
+    
+    public UserAlertSystem(AlertService service, Scanner scanner) {
+        super(service, scanner);
+    }
+    
+    // Subscribe to new alerts and status changes, replacing any earlier subscription
+    public void watchAlerts() {
+        System.out.println("\n=== Watch for New Alerts ===");
+        AlertCategory category = getOptionalChoice("category", AlertCategory.values());
+        Urgency minUrgency = getOptionalChoice("minimum urgency", Urgency.values());
+        System.out.print("Location containing (optional, Enter to skip): ");
+        String location = scanner.nextLine();
+        
+        AlertSubscriptions.Filter filter;
+        try {
+            filter = new AlertSubscriptions.Filter(
+                category == null ? null : Collections.singleton(category), minUrgency, location);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid input: " + e.getMessage());
+            return;
+        }
+        if (watch != null) {
+            service.unsubscribe(watch);
+        }
+        watch = service.subscribe(filter, NOTIFICATION_CAPACITY, AlertSubscriptions.Overflow.DROP_OLDEST);
+        System.out.println("\n✓ Watching for " + filter + ".");
+    }
+    
+    private void showNotifications() {
+        if (watch == null) {
+            return;
+        }
+        List<AlertSubscriptions.Event> events = watch.drain();
+        if (events.isEmpty()) {
+            return;
+        }
+        System.out.println("\n=== Notifications ===");
+        if (watch.getDropped() > 0) {
+            System.out.println("(" + watch.getDropped() + " older notifications were dropped)");
+        }
+        for (AlertSubscriptions.Event event : events) {
+            System.out.println("* " + event);
+        }
+    }
     
     public void showUserMenu() {
         System.out.println("\n=== USER MENU ===");
@@ -355,13 +376,15 @@ class UserAlertSystem extends AlertSystemBase {
         System.out.println("5. Filter by Category");
         System.out.println("6. Search by Location");
         System.out.println("7. View Statistics");
-        System.out.println("8. Exit");
-        System.out.print("\nSelect option (1-8): ");
+        System.out.println("8. Watch for New Alerts");
+        System.out.println("9. Exit");
+        System.out.print("\nSelect option (1-9): ");
     }
     
     public void run() {
         boolean running = true;
         while (running) {
+            showNotifications();
             showUserMenu();
             
             try {
@@ -390,6 +413,9 @@ class UserAlertSystem extends AlertSystemBase {
                         showStatistics();
                         break;
                     case 8:
+                        watchAlerts();
+                        break;
+                    case 9:
                         System.out.println("\nThank you for using Community Alert System!");
                         System.out.println("Stay safe and help your community!");
                         running = false;
@@ -406,21 +432,31 @@ class UserAlertSystem extends AlertSystemBase {
 
 // ADMIN VERSION - Full control with additional management features
 class AdminAlertSystem extends AlertSystemBase {
+    private static final int INCIDENTS_SHOWN = 20;
+    private static final int QUEUE_SHOWN = 10;
+    
+    // Recorded in status history as the one making changes from this console
+    private final String actor = "admin:" + System.getProperty("user.name", "console");
+    
+    public AdminAlertSystem(AlertService service, Scanner scanner) {
+        super(service, scanner);
+    }
     
     // Update alert status (ADMIN ONLY)
     public void updateAlertStatus() {
         System.out.print("\nEnter Alert ID to update: ");
         int id = getIntInput(1000, Integer.MAX_VALUE);
         
-        Alert alert = alerts.stream()
-            .filter(a -> a.getId() == id)
-            .findFirst()
-            .orElse(null);
+        Alert alert = service.findById(id);
         
         if (alert == null) {
             System.out.println("\nAlert not found with ID: " + id);
             return;
         }
+        if (service.isArchived(id)) {
+            System.out.println("\nAlert ID " + id + " is archived and can no longer be changed.");
+            return;
+        }
         
         System.out.println("\nCurrent alert:");
         System.out.println(alert);
@@ -433,16 +469,17 @@ class AdminAlertSystem extends AlertSystemBase {
         System.out.print("Select new status (1-4): ");
         
         int statusChoice = getIntInput(1, 4);
-        String[] statuses = {"OPEN", "IN_PROGRESS", "RESOLVED", "CLOSED"};
-        alert.setStatus(statuses[statusChoice - 1]);
-        saveAlerts();
+        if (service.updateStatus(id, AlertStatus.values()[statusChoice - 1], actor) == null) {
+            System.out.println("\nAlert ID " + id + " was deleted in the meantime.");
+            return;
+        }
         
         System.out.println("\n✓ Alert status updated successfully!");
     }
     
     // Delete specific alert (ADMIN ONLY)
     public void deleteAlert() {
-        if (alerts.isEmpty()) {
+        if (!service.hasAnyAlerts()) {
             System.out.println("\nNo alerts to delete.");
             return;
         }
@@ -450,15 +487,16 @@ class AdminAlertSystem extends AlertSystemBase {
         System.out.print("\nEnter Alert ID to delete: ");
         int id = getIntInput(1000, Integer.MAX_VALUE);
         
-        Alert alert = alerts.stream()
-            .filter(a -> a.getId() == id)
-            .findFirst()
-            .orElse(null);
+        Alert alert = service.findById(id);
         
         if (alert == null) {
             System.out.println("\nAlert not found with ID: " + id);
             return;
         }
+        if (service.isArchived(id)) {
+            System.out.println("\nAlert ID " + id + " is archived and can no longer be changed.");
+            return;
+        }
         
         System.out.println("\nAlert to be deleted:");
         System.out.println(alert);
@@ -467,8 +505,7 @@ class AdminAlertSystem extends AlertSystemBase {
         String confirmation = scanner.nextLine().trim().toLowerCase();
         
         if (confirmation.equals("yes")) {
-            alerts.remove(alert);
-            saveAlerts();
+            service.delete(id);
             System.out.println("\n✓ Alert ID " + id + " has been deleted successfully!");
         } else {
             System.out.println("\nDeletion cancelled.");
@@ -477,28 +514,21 @@ class AdminAlertSystem extends AlertSystemBase {
     
     // Clear all data (ADMIN ONLY)
     public void clearAllData() {
-        if (alerts.isEmpty()) {
+        if (!service.hasAnyAlerts()) {
             System.out.println("\nNo data to clear. System is already empty.");
             return;
         }
         
         System.out.println("\n=== Clear All Data ===");
         System.out.println("WARNING: This will permanently delete ALL alerts!");
-        System.out.println("Total alerts to be deleted: " + alerts.size());
+        System.out.println("Total alerts to be deleted: " + (service.size() + service.archivedSize()));
         System.out.print("\nAre you sure you want to continue? (yes/no): ");
         
         String confirmation = scanner.nextLine().trim().toLowerCase();
         
         if (confirmation.equals("yes")) {
-            int deletedCount = alerts.size();
-            alerts.clear();
-            saveAlerts();
-            
-            // Also delete the data file
-            File file = new File(dataFile);
-            if (file.exists()) {
-                file.delete();
-            }
+            // Also deletes the data file and its log
+            int deletedCount = service.clear();
             
             System.out.println("\n✓ Successfully deleted " + deletedCount + " alert(s)!");
             System.out.println("All data has been cleared from the system.");
@@ -507,33 +537,198 @@ class AdminAlertSystem extends AlertSystemBase {
         }
     }
     
-    // Export alerts to text file (ADMIN ONLY)
+    // Export alerts as a text report, CSV or JSON Lines (ADMIN ONLY)
     public void exportToFile() {
-        if (alerts.isEmpty()) {
+        if (!service.hasAnyAlerts()) {
             System.out.println("\nNo alerts to export.");
             return;
         }
         
-        String exportFile = "alerts_export.txt";
-        try (PrintWriter writer = new PrintWriter(new FileWriter(exportFile))) {
-            writer.println("====================================");
-            writer.println("COMMUNITY ALERT SYSTEM - DATA EXPORT");
-            writer.println("Export Date: " + LocalDateTime.now());
-            writer.println("Total Alerts: " + alerts.size());
-            writer.println("====================================\n");
-            
-            for (Alert alert : alerts) {
-                writer.println(alert);
-                writer.println();
-            }
+        System.out.println("\n=== Export Alerts ===");
+        AlertExporter.Format[] formats = AlertExporter.Format.values();
+        System.out.println("1. Text report");
+        System.out.println("2. CSV");
+        System.out.println("3. JSON Lines");
+        System.out.print("Select format (1-3): ");
+        AlertExporter.Format format = formats[getIntInput(1, formats.length) - 1];
+        
+        System.out.print("Compress with gzip? (yes/no): ");
+        boolean gzip = scanner.nextLine().trim().toLowerCase().equals("yes");
+        
+        AlertCategory category = getOptionalChoice("category", AlertCategory.values());
+        Urgency urgency = getOptionalChoice("urgency", Urgency.values());
+        AlertStatus status = getOptionalChoice("status", AlertStatus.values());
+        LocalDate fromDate = getOptionalDate("From date");
+        LocalDate toDate = getOptionalDate("To date");
+        
+        String exportFile = "alerts_export." + format.extension + (gzip ? ".gz" : "");
+        AlertExporter exporter = new AlertExporter(format, AlertExporter.filter(
+            category, urgency, status,
+            fromDate == null ? null : fromDate.atStartOfDay(),
+            toDate == null ? null : toDate.atTime(LocalTime.MAX)), gzip);
+        try {
+            // A snapshot keeps the report consistent while others keep reporting
+            long exported = service.export(exporter, new File(exportFile));
             
-            System.out.println("\n✓ Successfully exported " + alerts.size() + " alert(s)!");
+            System.out.println("\n✓ Successfully exported " + exported + " alert(s)!");
             System.out.println("File saved as: " + exportFile);
         } catch (IOException e) {
             System.out.println("Error exporting alerts: " + e.getMessage());
         }
     }
     
+    // Incidents reported more than once, largest first, with the reports of a chosen one (ADMIN ONLY)
+    public void viewIncidents() {
+        AlertCategory category = getOptionalChoice("category", AlertCategory.values());
+        List<AlertClusters.Incident> incidents = service.clusters().largest(category, 2, INCIDENTS_SHOWN);
+        if (incidents.isEmpty()) {
+            System.out.println("\nNo incidents with duplicate reports.");
+            return;
+        }
+        
+        System.out.println("\n=== Incidents with Duplicate Reports ===");
+        for (AlertClusters.Incident incident : incidents) {
+            System.out.printf("#%d %s at %s: %d reports, %s to %s\n", incident.getId(), incident.getCategory(),
+                              incident.getLocation(), incident.getSize(),
+                              Alert.DISPLAY_FORMAT.format(incident.getFirstReported()),
+                              Alert.DISPLAY_FORMAT.format(incident.getLastReported()));
+        }
+        
+        System.out.print("\nIncident number to list its reports (Enter to skip): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return;
+        }
+        AlertClusters.Incident incident;
+        try {
+            incident = service.clusters().incident(Integer.parseInt(input.replace("#", "")));
+        } catch (NumberFormatException e) {
+            incident = null;
+        }
+        if (incident == null) {
+            System.out.println("\nIncident not found: " + input);
+            return;
+        }
+        System.out.println();
+        for (Alert alert : service.alertsOf(incident)) {
+            System.out.println(alert);
+            System.out.println();
+        }
+    }
+    
+    // The next OPEN alerts to handle, with the option to claim the first (ADMIN ONLY)
+    public void viewDispatchQueue() {
+        AlertDispatchQueue queue = service.dispatchQueue();
+        System.out.println("\n=== Dispatch Queue ===");
+        System.out.println("Waiting: " + queue.getWaitingCount() + " | In progress: " + queue.getInProgressCount());
+        List<Alert> next = queue.peek(QUEUE_SHOWN);
+        if (next.isEmpty()) {
+            System.out.println("\nNo open alerts waiting.");
+            return;
+        }
+        System.out.println();
+        for (Alert alert : next) {
+            System.out.printf("%d [%s] %s at %s, reported %s\n", alert.getId(), alert.getUrgency(),
+                              alert.getTitle(), alert.getLocation(),
+                              Alert.DISPLAY_FORMAT.format(alert.getTimestamp()));
+        }
+        
+        System.out.print("\nClaim the next alert? (yes/no): ");
+        if (!scanner.nextLine().trim().toLowerCase().equals("yes")) {
+            return;
+        }
+        // Another admin may have taken the one listed first in the meantime
+        Alert claimed = service.claimNext(actor);
+        if (claimed == null) {
+            System.out.println("\nNo open alerts left to claim.");
+            return;
+        }
+        System.out.println("\n✓ Claimed alert ID " + claimed.getId() + ", now IN_PROGRESS:");
+        System.out.println(claimed);
+    }
+    
+    // Response and resolution times by category and urgency, then one alert's status
+    // changes (ADMIN ONLY)
+    public void viewStatusHistory() {
+        AlertHistory history = service.history();
+        System.out.println("\n=== Time to Response / Resolution ===");
+        System.out.printf("%-20s %-10s %8s %10s %10s %8s %10s %10s\n", "Category", "Urgency",
+                          "Answered", "Median", "90%", "Resolved", "Median", "90%");
+        for (AlertCategory category : AlertCategory.values()) {
+            for (Urgency urgency : Urgency.values()) {
+                LatencyHistogram response = history.responseTimes(category, urgency);
+                LatencyHistogram resolution = history.resolutionTimes(category, urgency);
+                if (response.getCount() + resolution.getCount() > 0) {
+                    printTimes(category.toString(), urgency.toString(), response, resolution);
+                }
+            }
+        }
+        printTimes("All", "", history.responseTimes(null, null), history.resolutionTimes(null, null));
+        
+        System.out.print("\nAlert ID to show its status history (Enter to skip): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return;
+        }
+        List<AlertHistory.Transition> transitions;
+        try {
+            transitions = history.of(Integer.parseInt(input));
+        } catch (NumberFormatException e) {
+            transitions = Collections.emptyList();
+        }
+        if (transitions.isEmpty()) {
+            System.out.println("\nNo status history for alert ID: " + input);
+            return;
+        }
+        System.out.println();
+        for (AlertHistory.Transition transition : transitions) {
+            String timestamp = Alert.DISPLAY_FORMAT.format(transition.getTimestamp());
+            if (transition.getFrom() == null) {
+                System.out.printf("%s  reported as %s\n", timestamp, transition.getStatus());
+            } else {
+                System.out.printf("%s  %s -> %s by %s%s\n", timestamp, transition.getFrom(),
+                                  transition.getStatus(),
+                                  transition.getActor() == null ? "unknown" : transition.getActor(),
+                                  transition.isReconciled() ? " (found at load)" : "");
+            }
+        }
+    }
+    
+    private static void printTimes(String category, String urgency, LatencyHistogram response,
+                                   LatencyHistogram resolution) {
+        System.out.printf("%-20s %-10s %8d %10s %10s %8d %10s %10s\n", category, urgency,
+                          response.getCount(), describeTime(response, 0.5), describeTime(response, 0.9),
+                          resolution.getCount(), describeTime(resolution, 0.5), describeTime(resolution, 0.9));
+    }
+    
+    private static String describeTime(LatencyHistogram times, double share) {
+        return times.getCount() == 0 ? "-" : AlertHistory.describe(times.getPercentileNanos(share));
+    }
+    
+    // Counts and latencies of every operation since startup (ADMIN ONLY)
+    public void viewMetrics() {
+        StringBuilder sb = new StringBuilder();
+        service.metrics().appendReport(sb);
+        System.out.println("\n=== Performance Metrics ===");
+        System.out.print(sb);
+    }
+    
+    // Date as yyyy-MM-dd, or null when left empty
+    private LocalDate getOptionalDate(String label) {
+        System.out.print(label + " (yyyy-MM-dd, optional, Enter to skip): ");
+        while (true) {
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(input);
+            } catch (DateTimeParseException e) {
+                System.out.print("Invalid date. Use e.g. 2024-05-31 or press Enter: ");
+            }
+        }
+    }
+    
     public void showAdminMenu() {
         System.out.println("\n=== ADMIN MENU ===");
         System.out.println("1. Submit New Alert");
@@ -545,10 +740,14 @@ class AdminAlertSystem extends AlertSystemBase {
         System.out.println("7. Update Alert Status");
         System.out.println("8. Delete Specific Alert");
         System.out.println("9. View Statistics");
-        System.out.println("10. Export to File");
-        System.out.println("11. Clear All Data");
-        System.out.println("12. Exit");
-        System.out.print("\nSelect option (1-12): ");
+        System.out.println("10. View Incidents");
+        System.out.println("11. Dispatch Queue");
+        System.out.println("12. Performance Metrics");
+        System.out.println("13. Status History");
+        System.out.println("14. Export to File");
+        System.out.println("15. Clear All Data");
+        System.out.println("16. Exit");
+        System.out.print("\nSelect option (1-16): ");
     }
     
     public void run() {
@@ -588,12 +787,24 @@ class AdminAlertSystem extends AlertSystemBase {
                         showStatistics();
                         break;
                     case 10:
-                        exportToFile();
+                        viewIncidents();
                         break;
                     case 11:
-                        clearAllData();
+                        viewDispatchQueue();
                         break;
                     case 12:
+                        viewMetrics();
+                        break;
+                    case 13:
+                        viewStatusHistory();
+                        break;
+                    case 14:
+                        exportToFile();
+                        break;
+                    case 15:
+                        clearAllData();
+                        break;
+                    case 16:
                         System.out.println("\nThank you for using Community Alert System!");
                         System.out.println("Stay safe and help your community!");
                         running = false;
@@ -611,6 +822,15 @@ class AdminAlertSystem extends AlertSystemBase {
 // Main application launcher
 public class CommunityAlertApp {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            runServer(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--import")) {
+            runImport(args[1], args.length > 2 ? args[2] : null);
+            return;
+        }
+        
         Scanner scanner = new Scanner(System.in);
         
         System.out.println("==========================================");
@@ -628,13 +848,15 @@ public class CommunityAlertApp {
             if (userType == 1) {
                 System.out.println("\n>>> Launching USER Version <<<");
                 System.out.println("Features: Submit, View, Search, Filter alerts\n");
-                UserAlertSystem userSystem = new UserAlertSystem();
-                userSystem.run();
+                AlertService service = openService();
+                new UserAlertSystem(service, scanner).run();
+                service.close();
             } else if (userType == 2) {
                 System.out.println("\n>>> Launching ADMIN Version <<<");
                 System.out.println("Features: Full control + Update, Delete, Export, Clear\n");
-                AdminAlertSystem adminSystem = new AdminAlertSystem();
-                adminSystem.run();
+                AlertService service = openService();
+                new AdminAlertSystem(service, scanner).run();
+                service.close();
             } else {
                 System.out.println("\nInvalid choice. Exiting...");
             }
@@ -644,4 +866,116 @@ public class CommunityAlertApp {
         
         scanner.close();
     }
+    
+    // Load the alerts saved in the working directory
+    private static AlertService openService() {
+        return openService(null);
+    }
+    
+    // Data files in the given directory, or the working directory for null
+    private static AlertService openService(File dataDirectory) {
+        AlertService service = new AlertService(dataDirectory);
+        if (!service.isEmpty()) {
+            System.out.println("Loaded " + service.size() + " existing alerts.");
+        }
+        try {
+            service.metrics().register();
+        } catch (JMException e) {
+            System.out.println("Error publishing metrics over JMX: " + e.getMessage());
+        }
+        return service;
+    }
+    
+    // Batch mode: import a CSV or JSON Lines file, or standard input for "-", then exit.
+    // The format is detected unless given as csv or jsonl.
+    private static void runImport(String source, String formatArg) {
+        AlertImporter importer;
+        try {
+            importer = new AlertImporter(formatArg == null ? null
+                : AlertExporter.Format.valueOf(formatArg.toUpperCase(Locale.ROOT)), AlertImporter.DEFAULT_BATCH_SIZE);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid import format: " + formatArg + " (use csv or jsonl)");
+            return;
+        }
+        
+        AlertService service = openService();
+        try (InputStream in = source.equals("-") ? System.in : new FileInputStream(source)) {
+            AlertImporter.Result result = service.importAlerts(importer, in);
+            System.out.println(result);
+            for (String rejection : result.getRejections()) {
+                System.out.println("  Rejected " + rejection);
+            }
+            if (result.getRejected() > result.getRejections().size()) {
+                System.out.println("  ... and " + (result.getRejected() - result.getRejections().size()) + " more");
+            }
+        } catch (IOException e) {
+            System.out.println("Error importing alerts: " + e.getMessage());
+        } finally {
+            service.close();
+        }
+    }
+    
+    // Headless mode: serve the HTTP/JSON API until the process is stopped
+    // --server [port] [--data <dir>] [--replicate <port> | --follow <host:port>]
+    // Several nodes can share a machine as long as each has its own ports and data directory.
+    private static void runServer(String[] args) {
+        int port = 8080;
+        File dataDirectory = null;
+        int replicationPort = -1;
+        String leader = null;
+        int leaderPort = -1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--data") && i + 1 < args.length) {
+                    dataDirectory = new File(args[++i]);
+                } else if (args[i].equals("--replicate") && i + 1 < args.length) {
+                    replicationPort = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--follow") && i + 1 < args.length) {
+                    String address = args[++i];
+                    int colon = address.lastIndexOf(':');
+                    if (colon < 1) {
+                        throw new IllegalArgumentException("Leader must be given as host:port: " + address);
+                    }
+                    leader = address.substring(0, colon);
+                    leaderPort = Integer.parseInt(address.substring(colon + 1));
+                } else if (i == 0) {
+                    port = Integer.parseInt(args[i]);
+                } else {
+                    throw new IllegalArgumentException("Unknown server option: " + args[i]);
+                }
+            }
+            if (replicationPort >= 0 && leader != null) {
+                throw new IllegalArgumentException("A node cannot both replicate and follow");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid server options: " + e.getMessage());
+            return;
+        }
+        if (dataDirectory != null && !dataDirectory.isDirectory() && !dataDirectory.mkdirs()) {
+            System.out.println("Cannot create data directory: " + dataDirectory);
+            return;
+        }
+        
+        AlertService service = openService(dataDirectory);
+        try {
+            if (replicationPort >= 0) {
+                AlertReplication.Leader replication = service.replicate(replicationPort);
+                System.out.println("Replicating to followers on port " + replication.getPort());
+            } else if (leader != null) {
+                AlertReplication.Follower replication = service.follow(leader, leaderPort);
+                System.out.println("Following leader " + replication.getLeader() + " (read-only)");
+            }
+            AlertHttpServer server = new AlertHttpServer(service, port);
+            server.start();
+            service.startArchiving();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                service.close();
+            }));
+            System.out.println("Community Alert API listening on port " + server.getPort());
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+            service.close();
+        }
+    }
 }
\ No newline at end of file
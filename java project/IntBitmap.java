@@ -0,0 +1,504 @@
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+// Compressed set of non-negative ints in the style of Roaring bitmaps. Values are split
+// by their high 16 bits into chunks, and each chunk keeps its low 16 bits either as a
+// sorted char array while sparse or as 1024 words of bits once it holds more than
+// ARRAY_LIMIT values, the point where both take 8 KB. Set operations run chunk by
+// chunk, a word at a time for dense chunks, so intersecting and counting large sets
+// never touches per-value objects. Not thread-safe.
+class IntBitmap {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1024;
+
+    // Sorted high halves and their chunks; chunks are never empty
+    private char[] keys;
+    private Chunk[] chunks;
+    private int count;
+
+    public IntBitmap() {
+        this(4);
+    }
+
+    private IntBitmap(int capacity) {
+        keys = new char[capacity];
+        chunks = new Chunk[capacity];
+    }
+
+    public boolean add(int value) {
+        char key = high(value);
+        int pos = find(key);
+        if (pos < 0) {
+            pos = -pos - 1;
+            insertChunk(pos, key, new Chunk());
+        }
+        return chunks[pos].add((char) value);
+    }
+
+    public boolean remove(int value) {
+        int pos = find(high(value));
+        if (pos < 0 || !chunks[pos].remove((char) value)) {
+            return false;
+        }
+        if (chunks[pos].cardinality == 0) {
+            System.arraycopy(keys, pos + 1, keys, pos, count - pos - 1);
+            System.arraycopy(chunks, pos + 1, chunks, pos, count - pos - 1);
+            chunks[--count] = null;
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        int pos = find(high(value));
+        return pos >= 0 && chunks[pos].contains((char) value);
+    }
+
+    public long cardinality() {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += chunks[i].cardinality;
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void clear() {
+        keys = new char[4];
+        chunks = new Chunk[4];
+        count = 0;
+    }
+
+    public IntBitmap copy() {
+        IntBitmap copy = new IntBitmap(Math.max(4, count));
+        for (int i = 0; i < count; i++) {
+            copy.keys[i] = keys[i];
+            copy.chunks[i] = chunks[i].copy();
+        }
+        copy.count = count;
+        return copy;
+    }
+
+    // Values in both sets
+    public static IntBitmap and(IntBitmap a, IntBitmap b) {
+        IntBitmap result = new IntBitmap(Math.max(4, Math.min(a.count, b.count)));
+        for (int i = 0, j = 0; i < a.count && j < b.count; ) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = Chunk.and(a.chunks[i], b.chunks[j]);
+                if (chunk.cardinality > 0) {
+                    result.keys[result.count] = a.keys[i];
+                    result.chunks[result.count++] = chunk;
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Size of the intersection, without building it
+    public static long andCardinality(IntBitmap a, IntBitmap b) {
+        long total = 0;
+        for (int i = 0, j = 0; i < a.count && j < b.count; ) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                total += Chunk.andCardinality(a.chunks[i], b.chunks[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    // Values in either set
+    public static IntBitmap or(IntBitmap a, IntBitmap b) {
+        IntBitmap result = new IntBitmap(Math.max(4, a.count + b.count));
+        int i = 0;
+        int j = 0;
+        while (i < a.count || j < b.count) {
+            if (j == b.count || (i < a.count && a.keys[i] < b.keys[j])) {
+                result.keys[result.count] = a.keys[i];
+                result.chunks[result.count++] = a.chunks[i++].copy();
+            } else if (i == a.count || b.keys[j] < a.keys[i]) {
+                result.keys[result.count] = b.keys[j];
+                result.chunks[result.count++] = b.chunks[j++].copy();
+            } else {
+                result.keys[result.count] = a.keys[i];
+                result.chunks[result.count++] = Chunk.or(a.chunks[i++], b.chunks[j++]);
+            }
+        }
+        return result;
+    }
+
+    // Values in ascending order
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int chunk;
+            private int position = -1;
+            private int next = advance();
+
+            // The next value after the current position, or -1 at the end
+            private int advance() {
+                while (chunk < count) {
+                    position = chunks[chunk].nextFrom(position + 1);
+                    if (position >= 0) {
+                        return (keys[chunk] << 16) | position;
+                    }
+                    chunk++;
+                    position = -1;
+                }
+                return -1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                int value = next;
+                next = advance();
+                return value;
+            }
+        };
+    }
+
+    // Values in ascending order, produced lazily
+    public IntStream stream() {
+        return StreamSupport.intStream(Spliterators.spliterator(
+            iterator(), cardinality(), Spliterator.ORDERED | Spliterator.DISTINCT
+                                       | Spliterator.SORTED | Spliterator.NONNULL), false);
+    }
+
+    public int[] toArray() {
+        int[] values = new int[(int) cardinality()];
+        int n = 0;
+        for (PrimitiveIterator.OfInt it = iterator(); it.hasNext(); ) {
+            values[n++] = it.nextInt();
+        }
+        return values;
+    }
+
+    private static char high(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        return (char) (value >>> 16);
+    }
+
+    // Position of the chunk for the key, or -(insertion point) - 1; values mostly
+    // arrive in increasing order, so the last chunk is checked first
+    private int find(char key) {
+        if (count > 0 && keys[count - 1] == key) {
+            return count - 1;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else if (keys[mid] > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insertChunk(int pos, char key, Chunk chunk) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            chunks = Arrays.copyOf(chunks, count * 2);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, count - pos);
+        System.arraycopy(chunks, pos, chunks, pos + 1, count - pos);
+        keys[pos] = key;
+        chunks[pos] = chunk;
+        count++;
+    }
+
+    // Low halves of the values sharing one high half: a sorted array while sparse,
+    // bits once dense. Turns back into an array only below half the limit, so values
+    // added and removed around the limit do not convert back and forth.
+    private static final class Chunk {
+        char[] values;
+        long[] words;
+        int cardinality;
+
+        Chunk() {
+            values = new char[4];
+        }
+
+        private Chunk(char[] values, long[] words, int cardinality) {
+            this.values = values;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        Chunk copy() {
+            return words != null
+                ? new Chunk(null, words.clone(), cardinality)
+                : new Chunk(Arrays.copyOf(values, Math.max(4, cardinality)), null, cardinality);
+        }
+
+        boolean contains(char low) {
+            return words != null
+                ? (words[low >>> 6] & (1L << low)) != 0
+                : search(low) >= 0;
+        }
+
+        boolean add(char low) {
+            if (words != null) {
+                long before = words[low >>> 6];
+                words[low >>> 6] = before | (1L << low);
+                if (before == words[low >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+            int pos = cardinality == 0 || values[cardinality - 1] < low ? -cardinality - 1 : search(low);
+            if (pos >= 0) {
+                return false;
+            }
+            pos = -pos - 1;
+            if (cardinality == ARRAY_LIMIT) {
+                toWords();
+                return add(low);
+            }
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(values, pos, values, pos + 1, cardinality - pos);
+            values[pos] = low;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (words != null) {
+                long before = words[low >>> 6];
+                words[low >>> 6] = before & ~(1L << low);
+                if (before == words[low >>> 6]) {
+                    return false;
+                }
+                if (--cardinality < ARRAY_LIMIT / 2) {
+                    toValues();
+                }
+                return true;
+            }
+            int pos = search(low);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(values, pos + 1, values, pos, cardinality - pos - 1);
+            cardinality--;
+            return true;
+        }
+
+        // The smallest low half at or after 'from', or -1 if there is none
+        int nextFrom(int from) {
+            if (words != null) {
+                int word = from >>> 6;
+                if (word >= WORDS) {
+                    return -1;
+                }
+                long bits = words[word] & (-1L << from);
+                while (bits == 0) {
+                    if (++word == WORDS) {
+                        return -1;
+                    }
+                    bits = words[word];
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            int pos = from > Character.MAX_VALUE ? cardinality : search((char) from);
+            if (pos < 0) {
+                pos = -pos - 1;
+            }
+            return pos < cardinality ? values[pos] : -1;
+        }
+
+        private int search(char low) {
+            int lo = 0;
+            int hi = cardinality - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] < low) {
+                    lo = mid + 1;
+                } else if (values[mid] > low) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+
+        private void toWords() {
+            words = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        private void toValues() {
+            values = new char[Math.max(4, cardinality)];
+            int n = 0;
+            for (int word = 0; word < WORDS; word++) {
+                for (long bits = words[word]; bits != 0; bits &= bits - 1) {
+                    values[n++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+            words = null;
+        }
+
+        // Loops below are branch-free where they can be, since whether a value is in
+        // the other chunk is unpredictable
+        static Chunk and(Chunk a, Chunk b) {
+            if (a.words != null && b.words != null) {
+                long[] aw = a.words;
+                long[] bw = b.words;
+                int cardinality = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    cardinality += Long.bitCount(aw[i] & bw[i]);
+                }
+                if (cardinality <= ARRAY_LIMIT) {
+                    char[] values = new char[Math.max(4, cardinality)];
+                    int n = 0;
+                    for (int word = 0; word < WORDS; word++) {
+                        for (long bits = aw[word] & bw[word]; bits != 0; bits &= bits - 1) {
+                            values[n++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+                        }
+                    }
+                    return new Chunk(values, null, cardinality);
+                }
+                long[] words = new long[WORDS];
+                for (int i = 0; i < WORDS; i++) {
+                    words[i] = aw[i] & bw[i];
+                }
+                return new Chunk(null, words, cardinality);
+            }
+            if (a.words != null) {
+                return and(b, a);
+            }
+            char[] av = a.values;
+            char[] values;
+            int n = 0;
+            if (b.words != null) {
+                // Every value of a is written before its bit decides whether it stays, and
+                // a bitmap chunk shrunk by removals may hold fewer values than a, so size
+                // for all of a
+                values = new char[Math.max(4, a.cardinality)];
+                long[] bw = b.words;
+                for (int i = 0; i < a.cardinality; i++) {
+                    char v = av[i];
+                    values[n] = v;
+                    n += (int) ((bw[v >>> 6] >>> v) & 1);
+                }
+            } else {
+                // Each match consumes a value of both, so the shorter one runs out before
+                // n can pass its length
+                values = new char[Math.max(4, Math.min(a.cardinality, b.cardinality))];
+                char[] bv = b.values;
+                for (int i = 0, j = 0; i < a.cardinality && j < b.cardinality; ) {
+                    char x = av[i];
+                    char y = bv[j];
+                    values[n] = x;
+                    n += x == y ? 1 : 0;
+                    i += x <= y ? 1 : 0;
+                    j += y <= x ? 1 : 0;
+                }
+            }
+            return new Chunk(values, null, n);
+        }
+
+        static int andCardinality(Chunk a, Chunk b) {
+            if (a.words != null && b.words != null) {
+                long[] aw = a.words;
+                long[] bw = b.words;
+                int cardinality = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    cardinality += Long.bitCount(aw[i] & bw[i]);
+                }
+                return cardinality;
+            }
+            if (a.words != null) {
+                return andCardinality(b, a);
+            }
+            char[] av = a.values;
+            int n = 0;
+            if (b.words != null) {
+                long[] bw = b.words;
+                for (int i = 0; i < a.cardinality; i++) {
+                    char v = av[i];
+                    n += (int) ((bw[v >>> 6] >>> v) & 1);
+                }
+            } else {
+                char[] bv = b.values;
+                for (int i = 0, j = 0; i < a.cardinality && j < b.cardinality; ) {
+                    char x = av[i];
+                    char y = bv[j];
+                    n += x == y ? 1 : 0;
+                    i += x <= y ? 1 : 0;
+                    j += y <= x ? 1 : 0;
+                }
+            }
+            return n;
+        }
+
+        static Chunk or(Chunk a, Chunk b) {
+            if (a.words == null && b.words == null && a.cardinality + b.cardinality <= ARRAY_LIMIT) {
+                char[] values = new char[Math.max(4, a.cardinality + b.cardinality)];
+                int n = 0;
+                int i = 0;
+                int j = 0;
+                while (i < a.cardinality || j < b.cardinality) {
+                    if (j == b.cardinality || (i < a.cardinality && a.values[i] < b.values[j])) {
+                        values[n++] = a.values[i++];
+                    } else if (i == a.cardinality || b.values[j] < a.values[i]) {
+                        values[n++] = b.values[j++];
+                    } else {
+                        values[n++] = a.values[i++];
+                        j++;
+                    }
+                }
+                return new Chunk(values, null, n);
+            }
+            Chunk result = a.copy();
+            if (result.words == null) {
+                result.toWords();
+            }
+            if (b.words != null) {
+                int cardinality = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    result.words[i] |= b.words[i];
+                    cardinality += Long.bitCount(result.words[i]);
+                }
+                result.cardinality = cardinality;
+            } else {
+                for (int i = 0; i < b.cardinality; i++) {
+                    result.add(b.values[i]);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+// Open-addressing int -> int hash map with linear probing, so lookups by alert ID
+// never box an Integer. Values must be non-negative; get and remove return -1 when
+// the key is absent. Deletion shifts later entries back instead of leaving tombstones.
+class IntIntHashMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    // Stored as value + 1 so that 0 marks a free slot
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public IntIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntIntHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) >= 0;
+    }
+
+    public int get(int key) {
+        for (int i = hash(key) & mask; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    // Returns the previous value, or -1 if the key was absent
+    public int put(int key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        int i = hash(key) & mask;
+        for (; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                int previous = values[i] - 1;
+                values[i] = value + 1;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value + 1;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return -1;
+    }
+
+    public int remove(int key) {
+        int i = hash(key) & mask;
+        for (; values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                int previous = values[i] - 1;
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+        }
+        return -1;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    // Close the gap at 'hole' by moving back any later entry of the same probe run
+    // whose home slot does not lie cyclically within (hole, current]
+    private void shiftBack(int hole) {
+        int current = hole;
+        while (true) {
+            current = (current + 1) & mask;
+            if (values[current] == 0) {
+                break;
+            }
+            int home = hash(keys[current]) & mask;
+            boolean stays = hole <= current
+                ? hole < home && home <= current
+                : hole < home || home <= current;
+            if (!stays) {
+                keys[hole] = keys[current];
+                values[hole] = values[current];
+                hole = current;
+            }
+        }
+        values[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int j = hash(oldKeys[i]) & mask;
+                while (values[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free histogram of durations in nanoseconds with log-linear buckets, in the manner
+// of HdrHistogram: every power of two is split into SUB_BUCKETS equal buckets, so any
+// recorded value is known to within 1/SUB_BUCKETS (6%) over the whole range from 1 ns
+// to centuries, in under a thousand counters. Recording is a few atomic increments;
+// reads see a moment's counts, possibly missing values recorded meanwhile.
+class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        total.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry; another thread raised the maximum meanwhile
+        }
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    // The value below which the given share (0..1) of recordings fall, reported as the
+    // middle of its bucket; 0 when nothing was recorded
+    public long getPercentileNanos(double share) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(share * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(lowerBound(i) + bucketWidth(i) / 2, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Fold another histogram's recordings into this one, e.g. to combine per-group ones
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        total.add(other.total.sum());
+        sum.add(other.sum.sum());
+        long value = other.max.get();
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry; another thread raised the maximum meanwhile
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    // Values below SUB_BUCKETS count exactly; above, the leading SUB_BITS + 1 bits pick
+    // the bucket within the value's power of two
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    private static long bucketWidth(int index) {
+        return index < SUB_BUCKETS ? 1 : 1L << (index / SUB_BUCKETS - 1);
+    }
+}
@@ -0,0 +1,13 @@
+import java.util.Comparator;
+
+// Comparator for sorting by location
+class LocationComparator implements Comparator<Alert> {
+    @Override
+    public int compare(Alert a1, Alert a2) {
+        int locationCompare = a1.getLocation().compareToIgnoreCase(a2.getLocation());
+        if (locationCompare != 0) {
+            return locationCompare;
+        }
+        return Long.compare(a2.getTimestampMillis(), a1.getTimestampMillis());
+    }
+}
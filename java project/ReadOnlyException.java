@@ -0,0 +1,10 @@
+// Thrown when a change is sent to a read-only follower, which only applies its leader's
+// changes. Front ends report it as a conflict rather than a failure: the same request
+// succeeds when sent to the leader.
+class ReadOnlyException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    ReadOnlyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,26 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+// Canonical instances of strings that repeat across many alerts, such as locations and
+// reporter names, so a million alerts from a few thousand streets hold a few thousand
+// strings. Entries are never evicted: the dictionary grows with the number of distinct
+// values seen, which is small next to the copies it saves. Safe for concurrent use.
+class StringDictionary {
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+
+    // The shared instance equal to the value, adopting the value itself if it is new
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = values.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        existing = values.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,218 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Inverted index from case-folded character trigrams to the sorted IDs of the alerts
+// whose text contains them. A substring query can only match alerts that hold every
+// trigram of the query, so intersecting those posting lists yields a small candidate
+// set that is then verified against the actual text. Not thread-safe on its own.
+class TrigramIndex {
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    public void add(int id, String text) {
+        for (long gram : trigrams(text)) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(id);
+        }
+    }
+
+    // Index several texts at once; trigram extraction, the costly part, runs in parallel
+    public void addAll(int[] ids, String[] texts) {
+        long[][] grams = new long[ids.length][];
+        IntStream.range(0, ids.length).parallel().forEach(i -> grams[i] = trigrams(texts[i]));
+        for (int i = 0; i < ids.length; i++) {
+            for (long gram : grams[i]) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(ids[i]);
+            }
+        }
+    }
+
+    public void remove(int id, String text) {
+        for (long gram : trigrams(text)) {
+            Postings list = postings.get(gram);
+            if (list != null) {
+                list.remove(id);
+                if (list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    // Unindex several texts at once: the IDs are gathered per trigram first, so each
+    // posting list is filtered in a single pass rather than shifted once per ID
+    public void removeAll(int[] ids, String[] texts) {
+        long[][] grams = new long[ids.length][];
+        IntStream.range(0, ids.length).parallel().forEach(i -> grams[i] = trigrams(texts[i]));
+        Map<Long, Postings> removed = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            for (long gram : grams[i]) {
+                removed.computeIfAbsent(gram, g -> new Postings()).add(ids[i]);
+            }
+        }
+        for (Map.Entry<Long, Postings> entry : removed.entrySet()) {
+            Postings list = postings.get(entry.getKey());
+            if (list != null) {
+                list.removeAll(entry.getValue());
+                if (list.size == 0) {
+                    postings.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+    }
+
+    // Sorted IDs that contain every trigram of the folded term, or null when the term
+    // is shorter than a trigram and the index cannot narrow the search
+    public int[] candidates(String foldedTerm) {
+        long[] grams = trigrams(foldedTerm);
+        if (grams.length == 0) {
+            return null;
+        }
+        Postings[] lists = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+        int[] result = Arrays.copyOf(lists[0].ids, lists[0].size);
+        for (int i = 1; i < lists.length && result.length > 0; i++) {
+            result = lists[i].retain(result);
+        }
+        return result;
+    }
+
+    // Intersection of two sorted ID arrays
+    static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Case folding shared by indexing and verification, so both agree on what matches
+    static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    // Whether the text contains the already folded term, ignoring case, without allocating
+    static boolean contains(String text, String foldedTerm) {
+        int last = text.length() - foldedTerm.length();
+        outer:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < foldedTerm.length(); j++) {
+                if (fold(text.charAt(i + j)) != foldedTerm.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Distinct trigrams of the text, each packed as three 16-bit chars in a long
+    private static long[] trigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] grams = new long[text.length() - 2];
+        long c0 = fold(text.charAt(0));
+        long c1 = fold(text.charAt(1));
+        for (int i = 2; i < text.length(); i++) {
+            long c2 = fold(text.charAt(i));
+            grams[i - 2] = (c0 << 32) | (c1 << 16) | c2;
+            c0 = c1;
+            c1 = c2;
+        }
+        Arrays.sort(grams);
+        int n = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (n == 0 || grams[n - 1] != grams[i]) {
+                grams[n++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, n);
+    }
+
+    // Sorted, growable array of alert IDs. IDs are handed out in increasing order,
+    // so adds are almost always appends.
+    private static class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            int pos = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0 && pos < size) {
+                return;
+            }
+            if (pos < 0) {
+                pos = -pos - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+
+        // Drop every ID of the other list, keeping the rest in order
+        void removeAll(Postings other) {
+            int n = 0;
+            for (int i = 0, j = 0; i < size; i++) {
+                while (j < other.size && other.ids[j] < ids[i]) {
+                    j++;
+                }
+                if (j == other.size || other.ids[j] != ids[i]) {
+                    ids[n++] = ids[i];
+                }
+            }
+            size = n;
+            if (size < ids.length / 4) {
+                ids = Arrays.copyOf(ids, Math.max(4, size));
+            }
+        }
+
+        // The given sorted IDs that are also in this list
+        int[] retain(int[] sorted) {
+            int[] out = new int[sorted.length];
+            int n = 0;
+            for (int id : sorted) {
+                if (Arrays.binarySearch(ids, 0, size, id) >= 0) {
+                    out[n++] = id;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+// Enum for urgency levels
+enum Urgency {
+    LOW(1), MEDIUM(2), HIGH(3), CRITICAL(4);
+    
+    private final int level;
+    
+    Urgency(int level) {
+        this.level = level;
+    }
+    
+    public int getLevel() {
+        return level;
+    }
+}
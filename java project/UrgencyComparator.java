@@ -0,0 +1,14 @@
+import java.util.Comparator;
+
+// Comparator for sorting by urgency
+class UrgencyComparator implements Comparator<Alert> {
+    @Override
+    public int compare(Alert a1, Alert a2) {
+        int urgencyCompare = Integer.compare(a2.getUrgency().getLevel(), 
+                                            a1.getUrgency().getLevel());
+        if (urgencyCompare != 0) {
+            return urgencyCompare;
+        }
+        return Long.compare(a2.getTimestampMillis(), a1.getTimestampMillis());
+    }
+}